@@ -0,0 +1,75 @@
+package com.jeetatl.datamasking;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+import java.io.File;
+
+/**
+ * <p>Runs the benchmarks once per thread count, with the GC profiler unless the command line
+ * already adds it, and writes the results of
+ * each run as JSON so that runs can be compared.  The arguments are the usual JMH command line,
+ * typically a regular expression selecting benchmarks; the options below override it.</p>
+ *
+ * <pre>
+ * -Dthreads=1,8             thread counts to run (default: 1 and the number of processors)
+ * -Dresults=target/results  directory of the result files, named jmh-result-&lt;threads&gt;t.json
+ * </pre>
+ *
+ * <p>These are system properties, so they go before {@code -jar}.</p>
+ *
+ * <p>The plain JMH launcher is still available with
+ * {@code java -cp target/benchmarks.jar org.openjdk.jmh.Main}.</p>
+ *
+ * @since 0.4.0
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() { }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        int processors = Runtime.getRuntime().availableProcessors();
+        String threads = System.getProperty("threads", processors > 1 ? "1," + processors : "1");
+        File results = new File(System.getProperty("results", "target/results"));
+        if (!results.isDirectory() && !results.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + results);
+        }
+
+        boolean gcProfiled = hasGcProfiler(commandLine);
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count.trim());
+            OptionsBuilder builder = new OptionsBuilder();
+            builder.parent(commandLine)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "jmh-result-" + threadCount + "t.json").getPath());
+            if (!gcProfiled) {
+                builder.addProfiler(GCProfiler.class);
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+
+    /**
+     * A helper method that checks whether the command line adds the GC profiler, by its alias
+     * or its class name.  JMH fails every iteration if it is added twice.
+     * @param commandLine Parsed command line.
+     * @return true if {@code -prof gc} was given.
+     */
+    private static boolean hasGcProfiler(Options commandLine) {
+        for (ProfilerConfig profiler : commandLine.getProfilers()) {
+            if ("gc".equals(profiler.getKlass()) || GCProfiler.class.getName().equals(profiler.getKlass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
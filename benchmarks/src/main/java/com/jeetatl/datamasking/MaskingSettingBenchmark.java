@@ -0,0 +1,80 @@
+package com.jeetatl.datamasking;
+
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MaskingSetting#apply(String)} and the allocation-free paths across value
+ * lengths and rule mixes.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar MaskingSettingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskingSettingBenchmark {
+
+    @Param({"8", "64", "1024"})
+    public int length;
+
+    @Param({"+4", "-4", "~7-12", "+2,-30%", "+5,~7,~9-10,-30%", "+100%"})
+    public String rule;
+
+    private MaskingSetting setting;
+    private String value;
+
+    @Setup
+    public void setUp() {
+        setting = new MaskingConfiguration("value:" + rule).getMaskingSetting("value");
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'a');
+        value = new String(chars);
+    }
+
+    @State(Scope.Thread)
+    public static class Buffers {
+        private char[] chars;
+        private StringBuilder out;
+
+        @Setup
+        public void setUp(MaskingSettingBenchmark benchmark) {
+            chars = new char[benchmark.length];
+            out = new StringBuilder(benchmark.length);
+        }
+    }
+
+    @Benchmark
+    public String applyString() {
+        return setting.apply(value);
+    }
+
+    @Benchmark
+    public char[] applyCharArray(Buffers buffers) {
+        value.getChars(0, length, buffers.chars, 0);
+        setting.compile().apply(buffers.chars, 0, length);
+        return buffers.chars;
+    }
+
+    @Benchmark
+    public StringBuilder applyAppendable(Buffers buffers) throws IOException {
+        buffers.out.setLength(0);
+        setting.apply(value, buffers.out);
+        return buffers.out;
+    }
+}
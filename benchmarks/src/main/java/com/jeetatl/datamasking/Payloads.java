@@ -0,0 +1,101 @@
+package com.jeetatl.datamasking;
+
+/**
+ * Builds the payloads and configurations shared by the masker benchmarks.  A payload has
+ * {@code fieldCount} fields with 16 character values; {@code densityPercent} percent of them,
+ * spread evenly, are configured to be masked.
+ *
+ * @since 0.4.0
+ */
+public final class Payloads {
+    /**
+     * The setting of the masked fields.
+     */
+    public static final String SETTING = "+2,-30%";
+
+    private static final String VALUE = "4111111111111111";
+
+    private Payloads() { }
+
+    /**
+     * @param index Index of a field.
+     * @param densityPercent Percentage of the fields that are masked.
+     * @return true if the field is masked: one field each time the running total of
+     *         {@code densityPercent} percent of the fields reaches a whole field, so any number of
+     *         fields has as many masked fields as the percentage allows, spread evenly.
+     */
+    public static boolean isMasked(int index, int densityPercent) {
+        return (index + 1) * densityPercent / 100 > index * densityPercent / 100;
+    }
+
+    /**
+     * @param index Index of a field.
+     * @param densityPercent Percentage of the fields that are masked.
+     * @return The name of the field.
+     */
+    public static String fieldName(int index, int densityPercent) {
+        return (isMasked(index, densityPercent) ? "secret" : "field") + index;
+    }
+
+    /**
+     * @param fieldCount Number of fields in the payload.
+     * @param densityPercent Percentage of the fields that are masked.
+     * @return A configuration string masking the masked fields, or a rule for a field that is
+     *         not in the payload if there are none.
+     */
+    public static String configString(int fieldCount, int densityPercent) {
+        StringBuilder sb = new StringBuilder("unused:" + SETTING);
+        for (int i = 0; i < fieldCount; i++) {
+            if (isMasked(i, densityPercent)) {
+                sb.append('|').append(fieldName(i, densityPercent)).append(':').append(SETTING);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param fieldCount Number of fields in the payload.
+     * @param densityPercent Percentage of the fields that are masked.
+     * @return A JSON object.
+     */
+    public static String json(int fieldCount, int densityPercent) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(fieldName(i, densityPercent)).append("\":\"").append(VALUE).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * @param fieldCount Number of fields in the payload.
+     * @param densityPercent Percentage of the fields that are masked.
+     * @return An XML document.
+     */
+    public static String xml(int fieldCount, int densityPercent) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><record>");
+        for (int i = 0; i < fieldCount; i++) {
+            String name = fieldName(i, densityPercent);
+            sb.append('<').append(name).append('>').append(VALUE).append("</").append(name).append('>');
+        }
+        return sb.append("</record>").toString();
+    }
+
+    /**
+     * @param fieldCount Number of fields in the payload.
+     * @param densityPercent Percentage of the fields that are masked.
+     * @return A query string.
+     */
+    public static String query(int fieldCount, int densityPercent) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append(fieldName(i, densityPercent)).append('=').append(VALUE);
+        }
+        return sb.toString();
+    }
+}
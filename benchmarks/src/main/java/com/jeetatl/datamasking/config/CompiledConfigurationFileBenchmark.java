@@ -0,0 +1,75 @@
+package com.jeetatl.datamasking.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cold-start time of loading a configuration from its text file and from its
+ * compiled binary file.  Every measurement runs once in a fresh JVM.  Run with
+ * {@code java -jar benchmarks/target/benchmarks.jar CompiledConfigurationFileBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class CompiledConfigurationFileBenchmark {
+    private static final String[] SETTINGS = {"+4", "-4", "~7-12", "+50%", "+2,-30%", "+5,~7,~9-10,-30%"};
+
+    @Param({"1000", "10000", "50000"})
+    public int ruleCount;
+
+    private Path textFile;
+    private Path binaryFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append("tenant").append(i / 100).append("Field").append(i).append(':')
+                    .append(SETTINGS[i % SETTINGS.length]);
+        }
+        textFile = Files.createTempFile("masking", ".conf");
+        Files.write(textFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+        binaryFile = Files.createTempFile("masking", ".bin");
+        CompiledConfigurationFile.write(new MaskingConfiguration(sb.toString()), binaryFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(textFile);
+        Files.deleteIfExists(binaryFile);
+    }
+
+    @Benchmark
+    public Object loadText() throws IOException {
+        String configString = new String(Files.readAllBytes(textFile), StandardCharsets.UTF_8);
+        return new MaskingConfiguration(configString).snapshot();
+    }
+
+    @Benchmark
+    public Object loadBinary() throws IOException {
+        return CompiledConfigurationFile.read(binaryFile).snapshot();
+    }
+}
@@ -0,0 +1,76 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.Payloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MaskingConfiguration#apply(String, String)} with small and large rule sets,
+ * for configured fields, fields matched by a pattern and fields that are not configured.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar MaskingConfigurationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskingConfigurationBenchmark {
+    private static final String VALUE = "4111111111111111";
+
+    @Param({"10", "10000"})
+    public int ruleCount;
+
+    private MaskingConfiguration config;
+    private String configuredField;
+    private String patternField;
+    private String unconfiguredField;
+
+    @Setup
+    public void setUp() {
+        config = new MaskingConfiguration(Payloads.configString(ruleCount, 100) + "|*Token:+100%");
+        // Copies, so that lookups compare the characters rather than the references.
+        configuredField = new String(Payloads.fieldName(ruleCount / 2, 100));
+        patternField = new String("sessionToken");
+        unconfiguredField = new String("description");
+    }
+
+    @State(Scope.Thread)
+    public static class Output {
+        private final StringBuilder out = new StringBuilder();
+    }
+
+    @Benchmark
+    public String applyConfigured() {
+        return config.apply(configuredField, VALUE);
+    }
+
+    @Benchmark
+    public String applyPattern() {
+        return config.apply(patternField, VALUE);
+    }
+
+    @Benchmark
+    public String applyUnconfigured() {
+        return config.apply(unconfiguredField, VALUE);
+    }
+
+    @Benchmark
+    public StringBuilder applyAppendable(Output output) throws IOException {
+        output.out.setLength(0);
+        config.apply(configuredField, VALUE, output.out);
+        return output.out;
+    }
+}
@@ -0,0 +1,57 @@
+package com.jeetatl.datamasking.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the time to parse and compile a configuration grows with the number of rules.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar MaskingConfigurationCompileBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskingConfigurationCompileBenchmark {
+    private static final String[] SETTINGS = {"+4", "-4", "~7-12", "+50%", "+2,-30%", "+5,~7,~9-10,-30%"};
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int ruleCount;
+
+    private String configString;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append("tenant").append(i / 100).append("Field").append(i).append(':')
+                    .append(SETTINGS[i % SETTINGS.length]);
+        }
+        configString = sb.toString();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return MaskingRuleCompiler.compile(configString, true);
+    }
+
+    @Benchmark
+    public Object compile() {
+        return new MaskingConfiguration(configString).snapshot();
+    }
+}
@@ -0,0 +1,133 @@
+package com.jeetatl.datamasking.maskers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeetatl.datamasking.Payloads;
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JavaBeansMasker} across bean sizes and densities of masked properties.  The
+ * bean is a batch of {@code recordCount} records with ten string properties each.
+ * {@code getMaskedWithMapper} uses a masker constructed with its own {@link ObjectMapper}, and
+ * {@code serialize} writes the bean with a plain {@link ObjectMapper} as the baseline.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar JavaBeansMaskerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaBeansMaskerBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int recordCount;
+
+    @Param({"0", "10", "50"})
+    public int densityPercent;
+
+    private JavaBeansMasker masker;
+    private JavaBeansMasker mapperMasker;
+    private ObjectMapper mapper;
+    private Batch batch;
+
+    @Setup
+    public void setUp() {
+        StringBuilder config = new StringBuilder("unused:" + Payloads.SETTING);
+        for (int i = 0; i < Record.PROPERTIES; i++) {
+            if (Payloads.isMasked(i, densityPercent)) {
+                config.append("|p").append(i).append(':').append(Payloads.SETTING);
+            }
+        }
+        masker = new JavaBeansMasker(new MaskingConfiguration(config.toString()));
+        mapper = new ObjectMapper();
+        mapperMasker = new JavaBeansMasker(masker.getConfig(), mapper);
+        batch = new Batch();
+        for (int i = 0; i < recordCount; i++) {
+            batch.getRecords().add(new Record());
+        }
+    }
+
+    @Benchmark
+    public String getMasked() {
+        return masker.getMasked(batch);
+    }
+
+    @Benchmark
+    public String getMaskedWithMapper() {
+        return mapperMasker.getMasked(batch);
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return mapper.writeValueAsString(batch);
+    }
+
+    public static class Batch {
+        private final List<Record> records = new ArrayList<>();
+
+        public List<Record> getRecords() {
+            return records;
+        }
+    }
+
+    public static class Record {
+        static final int PROPERTIES = 10;
+        private static final String VALUE = "4111111111111111";
+
+        public String getP0() {
+            return VALUE;
+        }
+
+        public String getP1() {
+            return VALUE;
+        }
+
+        public String getP2() {
+            return VALUE;
+        }
+
+        public String getP3() {
+            return VALUE;
+        }
+
+        public String getP4() {
+            return VALUE;
+        }
+
+        public String getP5() {
+            return VALUE;
+        }
+
+        public String getP6() {
+            return VALUE;
+        }
+
+        public String getP7() {
+            return VALUE;
+        }
+
+        public String getP8() {
+            return VALUE;
+        }
+
+        public String getP9() {
+            return VALUE;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.jeetatl.datamasking.maskers;
+
+import com.jeetatl.datamasking.Payloads;
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link QueryParameterMasker} across payload sizes and densities of masked fields.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar QueryParameterMaskerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryParameterMaskerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int fieldCount;
+
+    @Param({"0", "10", "50"})
+    public int densityPercent;
+
+    private QueryParameterMasker masker;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        masker = new QueryParameterMasker(new MaskingConfiguration(Payloads.configString(fieldCount, densityPercent)));
+        payload = Payloads.query(fieldCount, densityPercent);
+    }
+
+    @Benchmark
+    public String getMasked() {
+        return masker.getMasked(payload);
+    }
+}
@@ -0,0 +1,69 @@
+package com.jeetatl.datamasking.maskers;
+
+import com.jeetatl.datamasking.Payloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast log lines are scanned for sensitive values.  Each invocation scans 1 MiB of
+ * text, so the score is in MiB per second.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar TextContentMaskerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextContentMaskerBenchmark {
+    private static final int TEXT_SIZE = 1 << 20;
+    private static final String[] CLEAN_LINES = {
+        "2016-10-11 14:03:27.431 INFO  [http-nio-8080-exec-7] c.j.o.OrderController - order 1842 accepted for customer 77312 in 12 ms\n",
+        "2016-10-11 14:03:27.502 DEBUG [pool-3-thread-1] c.j.o.InventoryClient - GET /inventory/items/SKU-20931?warehouse=EU-2 returned 200\n",
+        "2016-10-11 14:03:27.611 WARN  [http-nio-8080-exec-2] c.j.o.RetryPolicy - attempt 2 of 5 failed, retrying in 250 ms\n",
+    };
+    private static final String[] SENSITIVE_LINES = {
+        "2016-10-11 14:03:28.004 INFO  [http-nio-8080-exec-3] c.j.p.PaymentService - charged card 4111 1111 1111 1111 for customer jane.doe@example.com\n",
+        "2016-10-11 14:03:28.117 INFO  [http-nio-8080-exec-5] c.j.p.PayoutService - payout to DE89 3704 0044 0532 0130 00 for ssn 123-45-6789\n",
+    };
+
+    @Param({"0", "10"})
+    public int sensitivePercent;
+
+    private TextContentMasker masker;
+    private String text;
+    private StringBuilder out;
+
+    @Setup
+    public void setUp() {
+        masker = new TextContentMasker();
+        StringBuilder sb = new StringBuilder(TEXT_SIZE + 256);
+        for (int line = 0; sb.length() < TEXT_SIZE; line++) {
+            if (Payloads.isMasked(line, sensitivePercent)) {
+                sb.append(SENSITIVE_LINES[line % SENSITIVE_LINES.length]);
+            } else {
+                sb.append(CLEAN_LINES[line % CLEAN_LINES.length]);
+            }
+        }
+        text = sb.substring(0, TEXT_SIZE);
+        out = new StringBuilder(TEXT_SIZE);
+    }
+
+    @Benchmark
+    public Object scan() {
+        out.setLength(0);
+        masker.getMasked(text, out);
+        return out;
+    }
+}
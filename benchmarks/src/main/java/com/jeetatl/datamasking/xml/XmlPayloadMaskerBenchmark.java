@@ -0,0 +1,69 @@
+package com.jeetatl.datamasking.xml;
+
+import com.jeetatl.datamasking.Payloads;
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link XmlPayloadMasker} across payload sizes and densities of masked fields.
+ * Run with {@code java -jar benchmarks/target/benchmarks.jar XmlPayloadMaskerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlPayloadMaskerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int fieldCount;
+
+    @Param({"0", "10", "50"})
+    public int densityPercent;
+
+    private XmlPayloadMasker masker;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        masker = new XmlPayloadMasker(new MaskingConfiguration(Payloads.configString(fieldCount, densityPercent)));
+        payload = Payloads.xml(fieldCount, densityPercent);
+    }
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        private byte[] source;
+        private byte[] bytes;
+
+        @Setup
+        public void setUp(XmlPayloadMaskerBenchmark benchmark) {
+            source = benchmark.payload.getBytes(StandardCharsets.UTF_8);
+            bytes = new byte[source.length];
+        }
+    }
+
+    @Benchmark
+    public String getMasked() {
+        return masker.getMasked(payload);
+    }
+
+    @Benchmark
+    public int maskInPlace(Buffer buffer) {
+        System.arraycopy(buffer.source, 0, buffer.bytes, 0, buffer.bytes.length);
+        return masker.maskInPlace(buffer.bytes);
+    }
+}
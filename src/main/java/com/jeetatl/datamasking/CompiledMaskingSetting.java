@@ -0,0 +1,600 @@
+package com.jeetatl.datamasking;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>{@code CompiledMaskingSetting} is the immutable, thread-safe form of a {@link MaskingSetting}.
+ * The percentages are turned into fractions once, and the inner {@code ~a-b} ranges are sorted
+ * and merged when the setting is compiled.  For each value length the left, right and inner
+ * masks are merged into a {@link MaskingPlan} of non-overlapping ranges, and plans for short
+ * lengths are cached.</p>
+ *
+ * <p>Applying a plan writes every masked character once with bulk fills.  A value that is
+ * masked completely is replaced by a shared string of masking characters.</p>
+ *
+ * <p>UTF-8 values can be masked in place with {@link #applyUtf8(byte[], int, int)} and
+ * {@link #applyUtf8(ByteBuffer)}.  For these, positions and percentages count code points, and
+ * every byte of a masked code point is overwritten so the length in bytes never changes.</p>
+ *
+ * <p>Instances are obtained from {@link MaskingSetting#compile()}, which returns canonical
+ * instances: two compiled settings are equal when they mask the same characters of every value
+ * with the same masking character, and equal settings compiled while one of them is reachable
+ * are the same instance.  Large rule sets that reuse a few rules therefore hold only a few
+ * compiled settings, and share their cached plans and cached masked values.</p>
+ *
+ * @since 0.4.0
+ */
+public final class CompiledMaskingSetting {
+    private static final int CACHED_LENGTHS = 64;
+    private static final int[] NO_RANGES = new int[0];
+    private static final MaskingPlan EMPTY_PLAN = new MaskingPlan(0, NO_RANGES);
+    private static final ConcurrentMap<Character, String[]> MASK_STRINGS = new ConcurrentHashMap<>();
+    private static final Map<CompiledMaskingSetting, WeakReference<CompiledMaskingSetting>> CANONICAL = new WeakHashMap<>();
+
+    private final int charactersMaskLeft;
+    private final int charactersMaskRight;
+    private final double fractionMaskLeft;
+    private final double fractionMaskRight;
+    private final boolean hasLeftMask;
+    private final boolean hasRightMask;
+    private final char maskingCharacter;
+    private final int[] innerRanges;
+    private final boolean empty;
+    private final int hash;
+    private final AtomicReferenceArray<MaskingPlan> plans = new AtomicReferenceArray<>(CACHED_LENGTHS);
+
+    /**
+     * Compiles a setting.
+     * @param charactersMaskLeft Number of characters to mask from left.
+     * @param charactersMaskRight Number of characters to mask from right.
+     * @param percentMaskLeft Percent of characters to mask from left.
+     * @param percentMaskRight Percent of characters to mask from right.
+     * @param maskingCharacter Masking character to use.
+     * @param innerMasks One-based, inclusive inner masking ranges, packed as
+     *                   {@code start0, end0, start1, end1, ...}.
+     */
+    CompiledMaskingSetting(int charactersMaskLeft, int charactersMaskRight,
+                           double percentMaskLeft, double percentMaskRight,
+                           char maskingCharacter, int[] innerMasks) {
+        this.charactersMaskLeft = charactersMaskLeft;
+        this.charactersMaskRight = charactersMaskRight;
+        this.fractionMaskLeft = percentMaskLeft / 100;
+        this.fractionMaskRight = percentMaskRight / 100;
+        this.hasLeftMask = !(charactersMaskLeft == 0 && percentMaskLeft == 0);
+        this.hasRightMask = !(charactersMaskRight == 0 && percentMaskRight == 0);
+        this.maskingCharacter = maskingCharacter;
+
+        int[] ranges = new int[innerMasks.length];
+        int count = 0;
+        for (int i = 0; i < innerMasks.length; i += 2) {
+            int start = Math.max(innerMasks[i] - 1, 0);
+            if (start < innerMasks[i + 1]) {
+                ranges[count++] = start;
+                ranges[count++] = innerMasks[i + 1];
+            }
+        }
+        this.innerRanges = merge(ranges, count);
+        this.empty = charactersMaskLeft <= 0 && charactersMaskRight <= 0
+                && percentMaskLeft <= 0 && percentMaskRight <= 0 && innerRanges.length == 0;
+
+        int h = 31 * charactersMaskLeft + charactersMaskRight;
+        h = 31 * h + Double.valueOf(fractionMaskLeft).hashCode();
+        h = 31 * h + Double.valueOf(fractionMaskRight).hashCode();
+        h = 31 * h + maskingCharacter;
+        this.hash = 31 * h + Arrays.hashCode(innerRanges);
+    }
+
+    /**
+     * Returns the canonical instance of a compiled setting.
+     * @param cms Newly compiled setting.
+     * @return The instance equal to {@code cms} that is already in use, or {@code cms}.
+     */
+    static CompiledMaskingSetting canonical(CompiledMaskingSetting cms) {
+        synchronized (CANONICAL) {
+            WeakReference<CompiledMaskingSetting> ref = CANONICAL.get(cms);
+            CompiledMaskingSetting existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return existing;
+            }
+            CANONICAL.put(cms, new WeakReference<>(cms));
+            return cms;
+        }
+    }
+
+    /**
+     * Compares the rules of two compiled settings.  Inner ranges are compared after they are
+     * sorted and merged, so {@code ~1-3,~2-5} equals {@code ~1-5}.
+     * @param o Object to compare with.
+     * @return true if {@code o} masks the same characters of every value with the same masking
+     *         character.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompiledMaskingSetting)) {
+            return false;
+        }
+        CompiledMaskingSetting other = (CompiledMaskingSetting) o;
+        return hash == other.hash
+                && charactersMaskLeft == other.charactersMaskLeft
+                && charactersMaskRight == other.charactersMaskRight
+                && Double.compare(fractionMaskLeft, other.fractionMaskLeft) == 0
+                && Double.compare(fractionMaskRight, other.fractionMaskRight) == 0
+                && maskingCharacter == other.maskingCharacter
+                && Arrays.equals(innerRanges, other.innerRanges);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns true if this setting does not mask any characters, regardless of the value.
+     * @return true if nothing is ever masked.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Returns the masking character.
+     * @return Masking character.
+     */
+    public char getMaskingCharacter() {
+        return maskingCharacter;
+    }
+
+    /**
+     * Returns the number of characters to mask from left for a value length.
+     * @param length Number of characters in the value.
+     * @return Number of characters to mask from left.
+     */
+    public int getNumCharactersToMaskLeft(int length) {
+        return hasLeftMask ? count(charactersMaskLeft, fractionMaskLeft, length) : 0;
+    }
+
+    /**
+     * Returns the number of characters to mask from right for a value length.
+     * @param length Number of characters in the value.
+     * @return Number of characters to mask from right.
+     */
+    public int getNumCharactersToMaskRight(int length) {
+        return hasRightMask ? count(charactersMaskRight, fractionMaskRight, length) : 0;
+    }
+
+    /**
+     * Returns the plan of masked ranges for a value length.  Plans for short lengths are cached.
+     * @param length Number of characters in the value.
+     * @return Immutable plan for {@code length}.
+     */
+    public MaskingPlan plan(int length) {
+        if (length < CACHED_LENGTHS) {
+            MaskingPlan plan = plans.get(length);
+            if (plan == null) {
+                plan = createPlan(length);
+                plans.lazySet(length, plan);
+            }
+            return plan;
+        }
+        return createPlan(length);
+    }
+
+    /**
+     * Applies the setting to a {@code String}.
+     * @param str {@code String} to mask.
+     * @return Masked string; {@code str} itself if nothing is masked.
+     */
+    public String apply(String str) {
+        if (str == null || str.isEmpty() || empty) {
+            return str;
+        }
+        MaskingPlan plan = plan(str.length());
+        if (plan.isEmpty()) {
+            return str;
+        }
+        if (plan.isFullyMasked()) {
+            return maskString(maskingCharacter, str.length());
+        }
+        char[] chars = str.toCharArray();
+        plan.fill(chars, 0, maskingCharacter);
+        return new String(chars);
+    }
+
+    /**
+     * Applies the setting to a value held in a {@code char[]}, in place.
+     * @param chars Array holding the value; modified in place.
+     * @param offset Index of the first character of the value.
+     * @param length Number of characters in the value.
+     */
+    public void apply(char[] chars, int offset, int length) {
+        if (length == 0 || empty) {
+            return;
+        }
+        plan(length).fill(chars, offset, maskingCharacter);
+    }
+
+    /**
+     * Copies a value from {@code src} to {@code dst} and masks it in the same pass.  Unmasked
+     * spans are copied with {@code System.arraycopy} and masked spans are filled, so every
+     * character of {@code dst} is written once.  {@code src} is not modified, unless it is the
+     * same array region as {@code dst}.
+     * @param src Array holding the value.
+     * @param offset Index of the first character of the value in {@code src}.
+     * @param length Number of characters in the value.
+     * @param dst Array the masked value is written to.
+     * @param dstOffset Index in {@code dst} where the masked value starts.
+     */
+    public void apply(char[] src, int offset, int length, char[] dst, int dstOffset) {
+        if (length == 0) {
+            return;
+        }
+        MaskingPlan plan = empty ? null : plan(length);
+        if (plan == null || plan.isEmpty()) {
+            System.arraycopy(src, offset, dst, dstOffset, length);
+            return;
+        }
+        int copied = 0;
+        for (int r = 0; r < plan.getRangeCount(); r++) {
+            int start = plan.getRangeStart(r);
+            int end = plan.getRangeEnd(r);
+            System.arraycopy(src, offset + copied, dst, dstOffset + copied, start - copied);
+            Arrays.fill(dst, dstOffset + start, dstOffset + end, maskingCharacter);
+            copied = end;
+        }
+        System.arraycopy(src, offset + copied, dst, dstOffset + copied, length - copied);
+    }
+
+    /**
+     * Applies the setting, in place, to the characters between the buffer's position and limit.
+     * The buffer's position and limit are not changed.
+     * @param buffer Buffer holding the value.
+     * @throws java.nio.ReadOnlyBufferException If something must be masked and the buffer is
+     *                                          read-only.
+     */
+    public void apply(CharBuffer buffer) {
+        int length = buffer.remaining();
+        if (length == 0 || empty) {
+            return;
+        }
+        if (buffer.hasArray()) {
+            plan(length).fill(buffer.array(), buffer.arrayOffset() + buffer.position(), maskingCharacter);
+            return;
+        }
+        MaskingPlan plan = plan(length);
+        int position = buffer.position();
+        for (int r = 0; r < plan.getRangeCount(); r++) {
+            for (int i = plan.getRangeStart(r), end = plan.getRangeEnd(r); i < end; i++) {
+                buffer.put(position + i, maskingCharacter);
+            }
+        }
+    }
+
+    /**
+     * Appends a masked copy of a value to {@code out}.  Unmasked spans are appended straight from
+     * {@code value} and masked spans from a shared string of masking characters, so no
+     * intermediate copy of the value is made.
+     * @param value Value to mask; not modified.
+     * @param out Destination of the masked value.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    public void apply(CharSequence value, Appendable out) throws IOException {
+        int length = value.length();
+        if (length == 0) {
+            return;
+        }
+        MaskingPlan plan = empty ? null : plan(length);
+        if (plan == null || plan.isEmpty()) {
+            out.append(value);
+            return;
+        }
+        int copied = 0;
+        for (int r = 0; r < plan.getRangeCount(); r++) {
+            int start = plan.getRangeStart(r);
+            int end = plan.getRangeEnd(r);
+            out.append(value, copied, start);
+            appendMask(end - start, out);
+            copied = end;
+        }
+        out.append(value, copied, length);
+    }
+
+    /**
+     * Applies the setting, in place, to a UTF-8 value held in part of a byte array.  Positions
+     * and percentages count code points; every byte of a masked code point is replaced by the
+     * masking character.  A value that is all ASCII is masked with bulk fills and no decoding.
+     * Malformed sequences are not validated; a stray continuation byte belongs to the code point
+     * before it.
+     * @param bytes Array holding the value; modified in place.
+     * @param offset Index of the first byte of the value.
+     * @param length Number of bytes in the value.
+     * @throws IllegalArgumentException If something must be masked and the masking character
+     *                                  is not ASCII.
+     */
+    public void applyUtf8(byte[] bytes, int offset, int length) {
+        if (length == 0 || empty) {
+            return;
+        }
+        int end = offset + length;
+        int ascii = offset;
+        while (ascii < end && bytes[ascii] >= 0) {
+            ascii++;
+        }
+
+        int count = ascii - offset;
+        for (int i = ascii; i < end; i = nextCodePoint(bytes, i, end)) {
+            count++;
+        }
+        MaskingPlan plan = plan(count);
+        if (plan.isEmpty()) {
+            return;
+        }
+        byte mask = asciiMaskingCharacter();
+        if (ascii == end) {
+            for (int r = 0; r < plan.getRangeCount(); r++) {
+                Arrays.fill(bytes, offset + plan.getRangeStart(r), offset + plan.getRangeEnd(r), mask);
+            }
+            return;
+        }
+
+        int i = offset;
+        int index = 0;
+        for (int r = 0; r < plan.getRangeCount(); r++) {
+            for (int start = plan.getRangeStart(r); index < start; index++) {
+                i = nextCodePoint(bytes, i, end);
+            }
+            int from = i;
+            for (int rangeEnd = plan.getRangeEnd(r); index < rangeEnd; index++) {
+                i = nextCodePoint(bytes, i, end);
+            }
+            Arrays.fill(bytes, from, i, mask);
+        }
+    }
+
+    /**
+     * Applies the setting, in place, to the UTF-8 bytes between the buffer's position and
+     * limit.  Direct buffers are masked with absolute gets and puts.  The buffer's position and
+     * limit are not changed.
+     * @param buffer Buffer holding the value.
+     * @throws IllegalArgumentException If something must be masked and the masking character
+     *                                  is not ASCII.
+     * @see #applyUtf8(byte[], int, int)
+     */
+    public void applyUtf8(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            applyUtf8(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        int end = buffer.limit();
+        if (buffer.position() == end || empty) {
+            return;
+        }
+
+        int count = 0;
+        for (int i = buffer.position(); i < end; i = nextCodePoint(buffer, i, end)) {
+            count++;
+        }
+        MaskingPlan plan = plan(count);
+        if (plan.isEmpty()) {
+            return;
+        }
+        byte mask = asciiMaskingCharacter();
+        int i = buffer.position();
+        int index = 0;
+        for (int r = 0; r < plan.getRangeCount(); r++) {
+            for (int start = plan.getRangeStart(r); index < start; index++) {
+                i = nextCodePoint(buffer, i, end);
+            }
+            for (int rangeEnd = plan.getRangeEnd(r); index < rangeEnd; index++) {
+                int next = nextCodePoint(buffer, i, end);
+                for (; i < next; i++) {
+                    buffer.put(i, mask);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the setting to a {@code StringBuilder}, in place.
+     * @param sb {@code StringBuilder} to mask.
+     */
+    public void apply(StringBuilder sb) {
+        if (sb == null || sb.length() == 0 || empty) {
+            return;
+        }
+        MaskingPlan plan = plan(sb.length());
+        for (int r = 0; r < plan.getRangeCount(); r++) {
+            for (int i = plan.getRangeStart(r), end = plan.getRangeEnd(r); i < end; i++) {
+                sb.setCharAt(i, maskingCharacter);
+            }
+        }
+    }
+
+    /**
+     * Applies the setting to a {@code StringBuffer}, in place.
+     * @param sb {@code StringBuffer} to mask.
+     */
+    public void apply(StringBuffer sb) {
+        if (sb == null || empty) {
+            return;
+        }
+        synchronized (sb) {
+            if (sb.length() == 0) {
+                return;
+            }
+            MaskingPlan plan = plan(sb.length());
+            for (int r = 0; r < plan.getRangeCount(); r++) {
+                for (int i = plan.getRangeStart(r), end = plan.getRangeEnd(r); i < end; i++) {
+                    sb.setCharAt(i, maskingCharacter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a shared string of {@code length} masking characters.  Strings shorter than the
+     * plan cache limit are created once per masking character and reused.
+     * @param maskingCharacter Masking character.
+     * @param length Number of characters.
+     * @return String of {@code length} masking characters.
+     */
+    static String maskString(char maskingCharacter, int length) {
+        if (length >= CACHED_LENGTHS) {
+            char[] chars = new char[length];
+            Arrays.fill(chars, maskingCharacter);
+            return new String(chars);
+        }
+        String[] strings = MASK_STRINGS.get(maskingCharacter);
+        if (strings == null) {
+            MASK_STRINGS.putIfAbsent(maskingCharacter, new String[CACHED_LENGTHS]);
+            strings = MASK_STRINGS.get(maskingCharacter);
+        }
+        String str = strings[length];
+        if (str == null) {
+            char[] chars = new char[length];
+            Arrays.fill(chars, maskingCharacter);
+            str = new String(chars);
+            strings[length] = str;
+        }
+        return str;
+    }
+
+    /**
+     * A helper method that returns the masking character as a byte for UTF-8 masking.
+     * @return The masking character.
+     * @throws IllegalArgumentException If the masking character is not ASCII.
+     */
+    private byte asciiMaskingCharacter() {
+        if (maskingCharacter > 0x7F) {
+            throw new IllegalArgumentException("UTF-8 masking requires an ASCII masking character.");
+        }
+        return (byte) maskingCharacter;
+    }
+
+    /**
+     * A helper method that returns the index of the code point after the one at {@code i}, by
+     * skipping continuation bytes.
+     * @param bytes Array holding UTF-8 text.
+     * @param i Index of the first byte of a code point.
+     * @param end Index after the last byte of the text.
+     * @return Index of the next code point, or {@code end}.
+     */
+    private static int nextCodePoint(byte[] bytes, int i, int end) {
+        i++;
+        while (i < end && (bytes[i] & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int nextCodePoint(ByteBuffer buffer, int i, int end) {
+        i++;
+        while (i < end && (buffer.get(i) & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * A helper method that appends {@code count} masking characters in chunks taken from a shared
+     * mask string.
+     * @param count Number of masking characters.
+     * @param out Destination of the masking characters.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    private void appendMask(int count, Appendable out) throws IOException {
+        String mask = maskString(maskingCharacter, Math.min(count, CACHED_LENGTHS - 1));
+        while (count > 0) {
+            int chunk = Math.min(count, mask.length());
+            out.append(mask, 0, chunk);
+            count -= chunk;
+        }
+    }
+
+    /**
+     * A helper method that resolves the left, right and inner masks for a length and merges them.
+     * @param length Number of characters in the value.
+     * @return Plan for {@code length}.
+     */
+    private MaskingPlan createPlan(int length) {
+        if (length == 0 || empty) {
+            return length == 0 ? EMPTY_PLAN : new MaskingPlan(length, NO_RANGES);
+        }
+        int left = Math.max(getNumCharactersToMaskLeft(length), 0);
+        int right = Math.max(getNumCharactersToMaskRight(length), 0);
+        if (length <= left || length <= right) {
+            return new MaskingPlan(length, new int[]{0, length});
+        }
+
+        int[] ranges = new int[innerRanges.length + 4];
+        int count = 0;
+        if (left > 0) {
+            ranges[count++] = 0;
+            ranges[count++] = left;
+        }
+        for (int i = 0; i < innerRanges.length && innerRanges[i] < length; i += 2) {
+            ranges[count++] = innerRanges[i];
+            ranges[count++] = Math.min(innerRanges[i + 1], length);
+        }
+        if (right > 0) {
+            ranges[count++] = length - right;
+            ranges[count++] = length;
+        }
+        return new MaskingPlan(length, merge(ranges, count));
+    }
+
+    /**
+     * A helper method that sorts packed {@code [start, end)} pairs by start and merges
+     * overlapping or adjacent ones.
+     * @param ranges Packed pairs; reordered in place.
+     * @param count Number of ints used in {@code ranges}.
+     * @return Packed, sorted, non-overlapping pairs.
+     */
+    private static int[] merge(int[] ranges, int count) {
+        if (count == 0) {
+            return NO_RANGES;
+        }
+        // Insertion sort; the number of ranges is small and mostly sorted already.
+        for (int i = 2; i < count; i += 2) {
+            int start = ranges[i];
+            int end = ranges[i + 1];
+            int j = i - 2;
+            while (j >= 0 && ranges[j] > start) {
+                ranges[j + 2] = ranges[j];
+                ranges[j + 3] = ranges[j + 1];
+                j -= 2;
+            }
+            ranges[j + 2] = start;
+            ranges[j + 3] = end;
+        }
+
+        int merged = 0;
+        for (int i = 0; i < count; i += 2) {
+            if (merged > 0 && ranges[i] <= ranges[merged - 1]) {
+                ranges[merged - 1] = Math.max(ranges[merged - 1], ranges[i + 1]);
+            } else {
+                ranges[merged++] = ranges[i];
+                ranges[merged++] = ranges[i + 1];
+            }
+        }
+        return Arrays.copyOf(ranges, merged);
+    }
+
+    private static int count(int characters, double fraction, int length) {
+        if (characters > fraction * length) {
+            return Math.min(characters, length);
+        }
+        return Math.min((int) Math.ceil(fraction * length), length);
+    }
+}
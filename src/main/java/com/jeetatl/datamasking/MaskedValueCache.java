@@ -0,0 +1,238 @@
+package com.jeetatl.datamasking;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>{@code MaskedValueCache} is a bounded, thread-safe cache of masked values.  It is useful when
+ * the same sensitive values, such as account or merchant numbers, show up in many payloads: a
+ * value that was masked before is returned as the same {@code String} instance without masking
+ * it or allocating again.</p>
+ *
+ * <p>Entries are keyed by the compiled setting and the value, so fields that share a setting
+ * share entries, and changing a {@link MaskingSetting} never returns a stale result.  The cache
+ * is split into independently locked stripes, each evicting its least recently used entries once
+ * its share of the memory budget is used up.  Entry sizes are estimated from the length of the
+ * value; values too large to be worth caching are masked without being cached.</p>
+ *
+ * <p>A cache is enabled by passing it to
+ * {@link com.jeetatl.datamasking.config.MaskingConfiguration#setValueCache(MaskedValueCache)}.
+ * Note that cached values stay in memory until they are evicted or {@link #clear()} is
+ * called.</p>
+ *
+ * @since 0.4.0
+ */
+public final class MaskedValueCache {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long segmentBudget;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a cache with the default concurrency level.
+     * @param maxBytes Approximate number of bytes the cached entries may use.
+     */
+    public MaskedValueCache(long maxBytes) {
+        this(maxBytes, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a cache.
+     * @param maxBytes Approximate number of bytes the cached entries may use.
+     * @param concurrencyLevel Number of threads expected to use the cache at once; the number of
+     *                         stripes is the next power of two.
+     * @throws IllegalArgumentException If {@code maxBytes} or {@code concurrencyLevel} is not
+     *                                  positive.
+     */
+    public MaskedValueCache(long maxBytes, int concurrencyLevel) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel must be positive: " + concurrencyLevel);
+        }
+        int stripes = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+        segments = new Segment[stripes];
+        for (int i = 0; i < stripes; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = stripes - 1;
+        segmentBudget = Math.max(maxBytes / stripes, 1);
+    }
+
+    /**
+     * Masks a value with a setting, returning the cached result when there is one.
+     * @param ms Setting to apply.
+     * @param value Value to mask.
+     * @return Masked value; the same instance for every call with an equal value and setting
+     *         while the entry is cached.
+     */
+    public String apply(MaskingSetting ms, String value) {
+        return apply(ms.compile(), value);
+    }
+
+    /**
+     * Masks a value with a compiled setting, returning the cached result when there is one.
+     * @param cms Compiled setting to apply.
+     * @param value Value to mask.
+     * @return Masked value; the same instance for every call with an equal value and setting
+     *         while the entry is cached.
+     */
+    public String apply(CompiledMaskingSetting cms, String value) {
+        if (value == null || value.isEmpty() || cms.isEmpty()) {
+            return value;
+        }
+        long size = sizeOf(value);
+        if (size > segmentBudget / MAX_ENTRY_FRACTION) {
+            return cms.apply(value);
+        }
+
+        Key key = new Key(cms, value);
+        Segment segment = segments[spread(key.hash) & segmentMask];
+        String masked;
+        synchronized (segment) {
+            masked = segment.entries.get(key);
+        }
+        if (masked != null) {
+            hits.incrementAndGet();
+            return masked;
+        }
+
+        misses.incrementAndGet();
+        masked = cms.apply(value);
+        synchronized (segment) {
+            String existing = segment.entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            segment.entries.put(key, masked);
+            segment.bytes += size;
+            Iterator<Map.Entry<Key, String>> eldest = segment.entries.entrySet().iterator();
+            while (segment.bytes > segmentBudget && eldest.hasNext()) {
+                segment.bytes -= sizeOf(eldest.next().getKey().value);
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return masked;
+    }
+
+    /**
+     * Returns the number of lookups that were answered from the cache.
+     * @return Number of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to mask the value.  Values that are too large to
+     * cache, and values that a setting leaves unmasked, are not counted.
+     * @return Number of misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries that were evicted to stay within the memory budget.
+     * @return Number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of cached entries.
+     * @return Number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the cached entries.
+     * @return Estimated size of the entries in bytes.
+     */
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Removes every entry.  The hit, miss and eviction counts are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    /**
+     * A helper method that estimates the memory used by an entry: the key, the value and the
+     * masked copy of the value.
+     * @param value Value of the entry.
+     * @return Estimated size of the entry in bytes.
+     */
+    private static long sizeOf(String value) {
+        return ENTRY_OVERHEAD + 4L * value.length();
+    }
+
+    private static int spread(int hash) {
+        hash ^= (hash >>> 16);
+        return hash ^ (hash >>> 8);
+    }
+
+    private static final class Segment {
+        private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+    }
+
+    private static final class Key {
+        private final CompiledMaskingSetting setting;
+        private final String value;
+        private final int hash;
+
+        private Key(CompiledMaskingSetting setting, String value) {
+            this.setting = setting;
+            this.value = value;
+            this.hash = 31 * System.identityHashCode(setting) + value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return setting == other.setting && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.jeetatl.datamasking;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@code MaskingPlan} is the immutable result of resolving a {@link CompiledMaskingSetting}
+ * for one value length.  It holds the masked positions as sorted, non-overlapping ranges, so
+ * every masked character is written exactly once.</p>
+ *
+ * @since 0.4.0
+ */
+public final class MaskingPlan {
+    private final int length;
+    private final int[] ranges;
+
+    /**
+     * Constructs a plan from merged ranges.
+     * @param length Number of characters in the value.
+     * @param ranges Sorted, non-overlapping, zero-based {@code [start, end)} pairs, packed.
+     */
+    MaskingPlan(int length, int[] ranges) {
+        this.length = length;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Returns the number of characters in the value this plan was resolved for.
+     * @return Length of the value.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the number of masked ranges.
+     * @return Number of masked ranges.
+     */
+    public int getRangeCount() {
+        return ranges.length / 2;
+    }
+
+    /**
+     * Returns the zero-based index of the first masked character of a range.
+     * @param range Index of the range.
+     * @return Start of the range (inclusive).
+     */
+    public int getRangeStart(int range) {
+        return ranges[2 * range];
+    }
+
+    /**
+     * Returns the zero-based index after the last masked character of a range.
+     * @param range Index of the range.
+     * @return End of the range (exclusive).
+     */
+    public int getRangeEnd(int range) {
+        return ranges[2 * range + 1];
+    }
+
+    /**
+     * Returns true if no character is masked.
+     * @return true if there are no masked ranges.
+     */
+    public boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    /**
+     * Returns true if every character is masked.
+     * @return true if the only range covers the whole value.
+     */
+    public boolean isFullyMasked() {
+        return length > 0 && ranges.length == 2 && ranges[0] == 0 && ranges[1] == length;
+    }
+
+    /**
+     * Returns true if the character at {@code index} is masked.
+     * @param index Zero-based index of the character.
+     * @return true if the character is in a masked range.
+     */
+    public boolean isMasked(int index) {
+        for (int i = 0; i < ranges.length && ranges[i] <= index; i += 2) {
+            if (index < ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills the masked ranges of a value held in a {@code char[]}.
+     * @param chars Array holding the value; modified in place.
+     * @param offset Index of the first character of the value.
+     * @param maskingCharacter Character to write.
+     */
+    public void fill(char[] chars, int offset, char maskingCharacter) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            Arrays.fill(chars, offset + ranges[i], offset + ranges[i + 1], maskingCharacter);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.jeetatl.datamasking;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 /**
  * <p>{@code MaskingSetting} is a concrete class that holds the settings for masking.</p>
@@ -89,6 +91,7 @@ public class MaskingSetting {
     private static final double DEFAULT_PERCENTAGE_MASK_LEFT = 0;
     private static final double DEFAULT_PERCENTAGE_MASK_RIGHT = 0;
     private static final char DEFAULT_MASKING_CHARACTER = 'X';
+    private static final int[] NO_INNER_MASKS = new int[0];
 
     private int charactersMaskLeft = DEFAULT_CHARACTERS_MASK_LEFT;
     private int charactersMaskRight = DEFAULT_CHARACTERS_MASK_RIGHT;
@@ -96,8 +99,8 @@ public class MaskingSetting {
     private double percentMaskRight = DEFAULT_PERCENTAGE_MASK_RIGHT;
     private char maskingCharacter = DEFAULT_MASKING_CHARACTER;
 
-    // TODO: add inner masking logic
-    private List<int[]> innerMasks = new ArrayList<int[]>();
+    private int[] innerMasks = NO_INNER_MASKS;
+    private volatile CompiledMaskingSetting compiled;
 
     /**
      * Construct {@code MaskingSetting} with default settings.
@@ -122,6 +125,21 @@ public class MaskingSetting {
         this.maskingCharacter = maskingCharacter;
     }
 
+    /**
+     * Construct {@code MaskingSetting} with the same settings as another.
+     * @param other Setting to copy.
+     * @since 0.4.0
+     */
+    public MaskingSetting(MaskingSetting other) {
+        this.charactersMaskLeft = other.charactersMaskLeft;
+        this.charactersMaskRight = other.charactersMaskRight;
+        this.percentMaskLeft = other.percentMaskLeft;
+        this.percentMaskRight = other.percentMaskRight;
+        this.maskingCharacter = other.maskingCharacter;
+        this.innerMasks = other.innerMasks;
+        this.compiled = other.compiled;
+    }
+
     /**
      * A helper method that returns the number or characters to mask from left based
      * on masking settings (combined).
@@ -247,6 +265,7 @@ public class MaskingSetting {
      */
     public void setCharactersMaskLeft(int charactersMaskLeft) {
         this.charactersMaskLeft = charactersMaskLeft;
+        compiled = null;
     }
 
     /**
@@ -263,6 +282,7 @@ public class MaskingSetting {
      */
     public void setCharactersMaskRight(int charactersMaskRight) {
         this.charactersMaskRight = charactersMaskRight;
+        compiled = null;
     }
 
     /**
@@ -279,6 +299,7 @@ public class MaskingSetting {
      */
     public void setPercentMaskLeft(double percentMaskLeft) {
         this.percentMaskLeft = percentMaskLeft;
+        compiled = null;
     }
 
     /**
@@ -295,6 +316,7 @@ public class MaskingSetting {
      */
     public void setPercentMaskRight(double percentMaskRight) {
         this.percentMaskRight = percentMaskRight;
+        compiled = null;
     }
 
     /**
@@ -311,6 +333,7 @@ public class MaskingSetting {
      */
     public void setMaskingCharacter(char maskingCharacter) {
         this.maskingCharacter = maskingCharacter;
+        compiled = null;
     }
 
     /**
@@ -319,12 +342,7 @@ public class MaskingSetting {
      * @return Masked string.
      */
     public String apply(String str) {
-        if (str == null || str.length() == 0){
-           return str;
-        }
-        StringBuffer sb = new StringBuffer(str);
-        apply(sb);
-        return sb.toString();
+        return compile().apply(str);
     }
 
     /**
@@ -333,42 +351,7 @@ public class MaskingSetting {
      * @param sb {@code StringBuilder} to mask.
      */
     public void apply(StringBuilder sb) {
-        if (sb == null || sb.length() == 0) {
-            return;
-        }
-
-        int leftMask = getNumCharactersToMaskLeft(sb);
-        int rightMask = getNumCharactersToMaskRight(sb);
-
-        if (sb.length() <= leftMask || sb.length() <= rightMask) {
-            for (int i = 0; i < sb.length(); i++) {
-                sb.setCharAt(i, maskingCharacter);
-            }
-            return;
-        }
-
-        if (leftMask > 0) {
-            for (int i = 0; i < leftMask; i++) {
-                sb.setCharAt(i, maskingCharacter);
-            }
-        }
-
-        if (rightMask > 0) {
-            for (int i = sb.length() - rightMask; i < sb.length(); i++) {
-                sb.setCharAt(i, maskingCharacter);
-            }
-        }
-
-        if (!innerMasks.isEmpty()) {
-            for (int[] setting : innerMasks) {
-                for (int idx = setting[0] - 1; idx < setting[1]; idx++) {
-                    if (idx >= sb.length()) {
-                        break;
-                    }
-                    sb.setCharAt(idx, maskingCharacter);
-                }
-            }
-        }
+        compile().apply(sb);
     }
 
     /**
@@ -377,42 +360,97 @@ public class MaskingSetting {
      * @param sb {@code StringBuffer} to mask.
      */
     public void apply(StringBuffer sb) {
-        if (sb == null || sb.length() == 0) {
-            return;
-        }
+        compile().apply(sb);
+    }
 
-        int leftMask = getNumCharactersToMaskLeft(sb);
-        int rightMask = getNumCharactersToMaskRight(sb);
+    /**
+     * Method is used to copy a value from {@code src} to {@code dst} and apply the masking
+     * setting in the same pass.  {@code src} is not modified.
+     * @param src Array holding the value.
+     * @param offset Index of the first character of the value in {@code src}.
+     * @param length Number of characters in the value.
+     * @param dst Array the masked value is written to.
+     * @param dstOffset Index in {@code dst} where the masked value starts.
+     */
+    public void apply(char[] src, int offset, int length, char[] dst, int dstOffset) {
+        compile().apply(src, offset, length, dst, dstOffset);
+    }
 
-        if (sb.length() <= leftMask || sb.length() <= rightMask) {
-            for (int i = 0; i < sb.length(); i++) {
-                sb.setCharAt(i, maskingCharacter);
-            }
-            return;
-        }
+    /**
+     * Method is used to apply the masking setting to the characters between the buffer's
+     * position and limit.  The buffer is modified; its position and limit are not.
+     * @param buffer {@code CharBuffer} to mask.
+     */
+    public void apply(CharBuffer buffer) {
+        compile().apply(buffer);
+    }
 
-        if (leftMask > 0) {
-            for (int i = 0; i < leftMask; i++) {
-                sb.setCharAt(i, maskingCharacter);
-            }
-        }
+    /**
+     * Method is used to append a masked copy of a value to an {@code Appendable}.
+     * @param value Value to mask; not modified.
+     * @param out Destination of the masked value.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    public void apply(CharSequence value, Appendable out) throws IOException {
+        compile().apply(value, out);
+    }
 
-        if (rightMask > 0) {
-            for (int i = sb.length() - rightMask; i < sb.length(); i++) {
-                sb.setCharAt(i, maskingCharacter);
-            }
+    /**
+     * Method is used to apply the masking setting, in place, to a UTF-8 value held in part of a
+     * byte array.  Positions and percentages count code points, and every byte of a masked code
+     * point is replaced by the masking character, so the length in bytes does not change.
+     * @param bytes Array holding the value; modified in place.
+     * @param offset Index of the first byte of the value.
+     * @param length Number of bytes in the value.
+     * @throws IllegalArgumentException If something must be masked and the masking character
+     *                                  is not ASCII.
+     */
+    public void applyUtf8(byte[] bytes, int offset, int length) {
+        compile().applyUtf8(bytes, offset, length);
+    }
+
+    /**
+     * Method is used to apply the masking setting, in place, to the UTF-8 bytes between the
+     * buffer's position and limit.  Direct buffers are supported; the buffer's position and
+     * limit are not changed.
+     * @param buffer {@code ByteBuffer} holding the value.
+     * @throws IllegalArgumentException If something must be masked and the masking character
+     *                                  is not ASCII.
+     */
+    public void applyUtf8(ByteBuffer buffer) {
+        compile().applyUtf8(buffer);
+    }
+
+    /**
+     * Returns the immutable, compiled form of this setting.  The compiled form is created on
+     * first use and reused until one of the setters or {@link #addInnerMasking(int, int)}
+     * changes this setting.  Compiled forms are canonical: settings that mask the same
+     * characters of every value share one instance.
+     * @return Compiled form of the current settings.
+     */
+    public CompiledMaskingSetting compile() {
+        CompiledMaskingSetting cms = compiled;
+        if (cms == null) {
+            cms = CompiledMaskingSetting.canonical(new CompiledMaskingSetting(charactersMaskLeft,
+                    charactersMaskRight, percentMaskLeft, percentMaskRight, maskingCharacter, innerMasks));
+            compiled = cms;
         }
+        return cms;
+    }
 
-        if (!innerMasks.isEmpty()) {
-            for (int[] setting : innerMasks) {
-                for (int idx = setting[0] - 1; idx < setting[1]; idx++) {
-                    if (idx >= sb.length()) {
-                        break;
-                    }
-                    sb.setCharAt(idx, maskingCharacter);
-                }
-            }
+    /**
+     * Returns true if the character at {@code index} of a value with {@code length} characters
+     * is masked by this setting.  This lets callers mask values that are not held in a
+     * {@code String}, such as encoded bytes.
+     * @param index Zero-based index of the character.
+     * @param length Number of characters in the value.
+     * @return true if the character is replaced by the masking character.
+     */
+    public boolean isMasked(int index, int length) {
+        if (index < 0 || index >= length) {
+            return false;
         }
+        return compile().plan(length).isMasked(index);
     }
 
     /**
@@ -422,7 +460,31 @@ public class MaskingSetting {
      * @param end End index (zero-based) of inner masking range.
      */
     public void addInnerMasking(int start, int end) {
-        innerMasks.add(new int[]{start, end});
+        int[] masks = Arrays.copyOf(innerMasks, innerMasks.length + 2);
+        masks[masks.length - 2] = start;
+        masks[masks.length - 1] = end;
+        innerMasks = masks;
+        compiled = null;
+    }
+
+    /**
+     * Returns the inner masking ranges added with {@link #addInnerMasking(int, int)}.
+     * @return Copy of the ranges, packed as {@code start0, end0, start1, end1, ...}.
+     */
+    public int[] getInnerMasks() {
+        return innerMasks.clone();
+    }
+
+    /**
+     * Returns true if this setting does not mask any characters, regardless of the value
+     * it is applied to.  Maskers use this to copy values through without calling
+     * {@link #apply(String)}.
+     * @return true if no left, right or inner masking is configured.
+     */
+    public boolean isEmpty() {
+        return charactersMaskLeft <= 0 && charactersMaskRight <= 0
+                && percentMaskLeft <= 0 && percentMaskRight <= 0
+                && innerMasks.length == 0;
     }
 
 }
@@ -0,0 +1,280 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.MaskingSetting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * <p>{@code CompiledConfigurationFile} saves a compiled {@link MaskingConfiguration} to a
+ * binary file and loads it back, so that jobs using very large rule sets can start without
+ * parsing the rules and building the field name automata again.</p>
+ *
+ * <p>The file holds the configuration string, each distinct setting once, the fields in
+ * configuration order with the index of their setting, and the tables of the field name
+ * prefilter and of the field pattern automaton.  It starts with a header:</p>
+ *
+ * <pre>
+ * offset  size  content
+ *      0     4  magic number "DMSK"
+ *      4     2  format version
+ *      6     2  flags; bit 0 is set if xml attributes are masked
+ *      8     4  length of the payload in bytes
+ *     12     4  CRC-32 of the payload
+ *     16        payload
+ * </pre>
+ *
+ * <p>Files are read through a memory mapping: the checksum is computed on the mapped bytes and
+ * the tables are bulk-copied from them, without reading the file into an intermediate array.
+ * A file with the wrong magic number, an unsupported version, a bad length or a bad checksum is
+ * rejected with an {@code IOException}.  The value cache of a configuration is not saved.</p>
+ *
+ * @since 0.4.0
+ */
+public final class CompiledConfigurationFile {
+    /**
+     * The format version written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x444D534B;
+    private static final int HEADER_SIZE = 16;
+    private static final int FLAG_MASK_ATTRIBUTES = 1;
+
+    private CompiledConfigurationFile() { }
+
+    /**
+     * Saves a configuration.  The file is written to a temporary file first and then moved into
+     * place, so readers never see a partly written file.
+     * @param config Configuration to save.
+     * @param file Destination file; replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(MaskingConfiguration config, Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                write(config, out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes a configuration to a stream.
+     * @param config Configuration to save.
+     * @param out Destination of the file contents; not closed.
+     * @throws IOException If writing fails.
+     */
+    public static void write(MaskingConfiguration config, OutputStream out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        boolean attributesMaskEnabled;
+        synchronized (config) {
+            CompiledMaskingConfiguration snapshot = config.snapshot();
+            attributesMaskEnabled = snapshot.isAttributesMaskEnabled();
+            Map<String, MaskingSetting> fields = config.getFieldConfiguration();
+
+            Map<CompiledMaskingSetting, Integer> ids = new HashMap<>();
+            List<MaskingSetting> settings = new ArrayList<>();
+            int unknownId = settingId(config.getUnknownFieldMasking(), ids, settings);
+            int[] fieldIds = new int[fields.size()];
+            int f = 0;
+            for (MaskingSetting ms : fields.values()) {
+                fieldIds[f++] = settingId(ms, ids, settings);
+            }
+
+            writeString(payload, snapshot.getConfigString());
+            payload.writeInt(settings.size());
+            for (MaskingSetting ms : settings) {
+                payload.writeInt(ms.getCharactersMaskLeft());
+                payload.writeInt(ms.getCharactersMaskRight());
+                payload.writeDouble(ms.getPercentMaskLeft());
+                payload.writeDouble(ms.getPercentMaskRight());
+                payload.writeChar(ms.getMaskingCharacter());
+                writeInts(payload, ms.getInnerMasks());
+            }
+            payload.writeInt(unknownId);
+            payload.writeInt(fields.size());
+            f = 0;
+            for (String name : fields.keySet()) {
+                writeString(payload, name);
+                payload.writeInt(fieldIds[f++]);
+            }
+            snapshot.getFieldNameMatcher().writeTo(payload);
+            FieldPatternMatcher patternMatcher = snapshot.getPatternMatcher();
+            payload.writeBoolean(patternMatcher != null);
+            if (patternMatcher != null) {
+                patternMatcher.writeTo(payload);
+            }
+        }
+        payload.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeShort(attributesMaskEnabled ? FLAG_MASK_ATTRIBUTES : 0);
+        header.writeInt(bytes.size());
+        header.writeInt((int) crc.getValue());
+        bytes.writeTo(header);
+        header.flush();
+    }
+
+    /**
+     * Loads a configuration saved by {@link #write(MaskingConfiguration, Path)}.
+     * @param file File to load.
+     * @return The configuration.
+     * @throws IOException If the file cannot be read, or is not a valid configuration file.
+     */
+    public static MaskingConfiguration read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a compiled masking configuration: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Loads a configuration from the bytes between the buffer's position and limit.
+     * @param buffer Buffer holding the file contents; its position is advanced to the limit.
+     * @return The configuration.
+     * @throws IOException If the bytes are not a valid configuration file.
+     */
+    public static MaskingConfiguration read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a compiled masking configuration");
+        }
+        int version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported compiled masking configuration version: " + version);
+        }
+        int flags = buffer.getShort();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length != buffer.remaining()) {
+            throw new IOException("Truncated compiled masking configuration: expected " + length
+                    + " bytes, found " + buffer.remaining());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Corrupt compiled masking configuration: checksum mismatch");
+        }
+
+        try {
+            String configString = readString(buffer);
+            MaskingSetting[] settings = new MaskingSetting[buffer.getInt()];
+            for (int i = 0; i < settings.length; i++) {
+                MaskingSetting ms = new MaskingSetting(buffer.getInt(), buffer.getInt(),
+                        buffer.getDouble(), buffer.getDouble(), buffer.getChar());
+                int[] innerMasks = readInts(buffer);
+                for (int k = 0; k < innerMasks.length; k += 2) {
+                    ms.addInnerMasking(innerMasks[k], innerMasks[k + 1]);
+                }
+                settings[i] = ms;
+            }
+            MaskingSetting unknownFieldMasking = settings[buffer.getInt()];
+            int fieldCount = buffer.getInt();
+            Map<String, MaskingSetting> fields = new LinkedHashMap<>(fieldCount * 4 / 3 + 1);
+            for (int i = 0; i < fieldCount; i++) {
+                String name = readString(buffer);
+                fields.put(name, new MaskingSetting(settings[buffer.getInt()]));
+            }
+            FieldNameMatcher fieldNameMatcher = FieldNameMatcher.readFrom(buffer);
+            FieldPatternMatcher patternMatcher = buffer.get() != 0 ? FieldPatternMatcher.readFrom(buffer) : null;
+            if (buffer.hasRemaining()) {
+                throw new IOException("Corrupt compiled masking configuration: " + buffer.remaining()
+                        + " unexpected bytes");
+            }
+            return new MaskingConfiguration(configString, fields, unknownFieldMasking,
+                    (flags & FLAG_MASK_ATTRIBUTES) != 0, fieldNameMatcher, patternMatcher);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt compiled masking configuration", e);
+        }
+    }
+
+    /**
+     * A helper method that returns the index of a setting in the table of distinct settings,
+     * adding it if no equal setting is in the table yet.
+     * @param ms Setting to look up.
+     * @param ids Index of each distinct compiled setting.
+     * @param settings Table of distinct settings.
+     * @return Index of the setting.
+     */
+    private static int settingId(MaskingSetting ms, Map<CompiledMaskingSetting, Integer> ids, List<MaskingSetting> settings) {
+        CompiledMaskingSetting cms = ms.compile();
+        Integer id = ids.get(cms);
+        if (id == null) {
+            id = settings.size();
+            ids.put(cms, id);
+            settings.add(ms);
+        }
+        return id;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static int[] readInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * values.length);
+        return values;
+    }
+}
@@ -0,0 +1,460 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.MaskedValueCache;
+import com.jeetatl.datamasking.MaskingSetting;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>{@code CompiledMaskingConfiguration} is an immutable snapshot of a
+ * {@link MaskingConfiguration}.  It holds the compiled setting of every configured field, the
+ * compiled default for unknown fields and the field name prefilter, so it can be shared by any
+ * number of threads without locking.  Field names are resolved through a {@link FieldIndex},
+ * so streaming and in-place maskers can look names up straight from the payload.</p>
+ *
+ * <p>Fields configured with a glob or a regular expression are compiled together into one
+ * {@link FieldPatternMatcher}.  Exact names are always tried first; the patterns are only run
+ * for names that are not configured exactly, and the first matching pattern, in configuration
+ * order, wins.  Results of pattern lookups by {@code String} are cached per field name, up to
+ * a fixed number of names.  The prefilter looks for the longest literal part of every pattern,
+ * as given by {@link FieldPatternMatcher#requiredLiteral(String)}.</p>
+ *
+ * <p>When the configuration has {@link MaskingMetrics}, every lookup that finds a configured
+ * field reports the rule that matched to {@link MaskingMetrics#recordFieldHit(String)}.</p>
+ *
+ * <p>{@link MaskingConfiguration} publishes a new snapshot through an atomic reference whenever
+ * it changes.  Maskers read the snapshot once per payload, so a payload is always masked with a
+ * single, consistent set of rules even while the configuration is being replaced.</p>
+ *
+ * <p>Instances are obtained from {@link MaskingConfiguration#snapshot()}.</p>
+ *
+ * @since 0.4.0
+ */
+public final class CompiledMaskingConfiguration {
+    private static final int MAX_CACHED_PATTERN_LOOKUPS = 4096;
+
+    private final String configString;
+    private final FieldIndex<Rule> fieldIndex;
+    private final Map<String, CompiledMaskingSetting> compiledFields;
+    private volatile Set<String> fieldNames;
+    private final List<String> fieldPatterns;
+    private final Rule[] patternRules;
+    private final FieldPatternMatcher patternMatcher;
+    private final ConcurrentHashMap<String, Integer> patternLookups = new ConcurrentHashMap<>();
+    private final long estimatedBytes;
+    private final CompiledMaskingSetting unknownFieldMasking;
+    private final FieldNameMatcher fieldNameMatcher;
+    private final boolean attributesMaskEnabled;
+    private final MaskedValueCache valueCache;
+    private final MaskingMetrics metrics;
+
+    /**
+     * Compiles a snapshot.  The settings are compiled here, so later changes to them do not
+     * affect the snapshot.
+     * @param configString The configuration string the settings were parsed from.
+     * @param fieldConfiguration Settings of the configured fields and field patterns, in
+     *                           configuration order.
+     * @param unknownFieldMasking Setting for fields that are not configured.
+     * @param attributesMaskEnabled true if xml attributes are masked.
+     * @param valueCache Cache of masked values, or null.
+     * @param metrics Metrics to report rule hits to, or null.
+     * @throws IllegalArgumentException If a field pattern is malformed, or the patterns together
+     *                                  are too complex to compile.
+     */
+    CompiledMaskingConfiguration(String configString, Map<String, MaskingSetting> fieldConfiguration,
+                                 MaskingSetting unknownFieldMasking, boolean attributesMaskEnabled,
+                                 MaskedValueCache valueCache, MaskingMetrics metrics) {
+        this(configString, fieldConfiguration, unknownFieldMasking, attributesMaskEnabled, valueCache, metrics,
+                null, null);
+    }
+
+    /**
+     * Compiles a snapshot, reusing matchers that were compiled before, as read by
+     * {@link CompiledConfigurationFile}.
+     * @param configString The configuration string the settings were parsed from.
+     * @param fieldConfiguration Settings of the configured fields and field patterns, in
+     *                           configuration order.
+     * @param unknownFieldMasking Setting for fields that are not configured.
+     * @param attributesMaskEnabled true if xml attributes are masked.
+     * @param valueCache Cache of masked values, or null.
+     * @param metrics Metrics to report rule hits to, or null.
+     * @param fieldNameMatcher Prefilter for the configured names, or null to compile it.
+     * @param patternMatcher Automaton for the field patterns, or null to compile it.
+     */
+    CompiledMaskingConfiguration(String configString, Map<String, MaskingSetting> fieldConfiguration,
+                                 MaskingSetting unknownFieldMasking, boolean attributesMaskEnabled,
+                                 MaskedValueCache valueCache, MaskingMetrics metrics,
+                                 FieldNameMatcher fieldNameMatcher, FieldPatternMatcher patternMatcher) {
+        Map<String, CompiledMaskingSetting> compiled = new HashMap<>();
+        Map<String, Rule> rules = new HashMap<>();
+        List<String> patterns = new ArrayList<>();
+        List<Rule> patternRules = new ArrayList<>();
+        for (Map.Entry<String, MaskingSetting> entry : fieldConfiguration.entrySet()) {
+            Rule rule = new Rule(entry.getKey(), entry.getValue().compile());
+            if (FieldPatternMatcher.isPattern(entry.getKey())) {
+                patterns.add(entry.getKey());
+                patternRules.add(rule);
+            } else {
+                compiled.put(entry.getKey(), rule.setting);
+                rules.put(entry.getKey(), rule);
+            }
+        }
+        this.configString = configString;
+        this.fieldIndex = new FieldIndex<>(rules);
+        this.compiledFields = compiled;
+        this.fieldPatterns = Collections.unmodifiableList(patterns);
+        this.patternRules = patternRules.toArray(new Rule[patternRules.size()]);
+        if (patterns.isEmpty()) {
+            this.patternMatcher = null;
+        } else {
+            this.patternMatcher = patternMatcher != null ? patternMatcher : FieldPatternMatcher.compile(patterns);
+        }
+        this.unknownFieldMasking = unknownFieldMasking.compile();
+        if (fieldNameMatcher != null) {
+            this.fieldNameMatcher = fieldNameMatcher;
+        } else {
+            this.fieldNameMatcher = prefilter(compiled.keySet(), patterns);
+        }
+        this.attributesMaskEnabled = attributesMaskEnabled;
+        this.valueCache = valueCache;
+        this.metrics = metrics;
+        this.estimatedBytes = estimateBytes();
+    }
+
+    /**
+     * A helper method that compiles the field name prefilter: the configured names, and the
+     * literal that every name matching each pattern contains.
+     * @param names Configured field names.
+     * @param patterns Configured field patterns.
+     * @return The prefilter, or a matcher that always matches if a pattern has no such literal.
+     */
+    private static FieldNameMatcher prefilter(Collection<String> names, List<String> patterns) {
+        List<String> literals = new ArrayList<>(names);
+        for (String pattern : patterns) {
+            String literal = FieldPatternMatcher.requiredLiteral(pattern);
+            if (literal.isEmpty()) {
+                return FieldNameMatcher.all();
+            }
+            literals.add(literal);
+        }
+        return FieldNameMatcher.compile(literals);
+    }
+
+    /**
+     * A helper method that estimates the memory retained by this snapshot.
+     * @return Estimated size in bytes.
+     */
+    private long estimateBytes() {
+        long bytes = 96 + fieldIndex.estimatedBytes() + 72L * compiledFields.size();
+        if (fieldNameMatcher != FieldNameMatcher.all()) {
+            bytes += fieldNameMatcher.estimatedBytes();
+        }
+        if (patternMatcher != null) {
+            bytes += patternMatcher.estimatedBytes() + 16 + 24L * patternRules.length;
+            for (String pattern : fieldPatterns) {
+                bytes += 40 + 2L * pattern.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the compiled setting for a field: the configured setting when one exists,
+     * otherwise the default masking for unknown fields.
+     * @param fieldName The field name to search the configuration setting for.
+     * @return Compiled setting to apply to values of {@code fieldName}; never null.
+     */
+    public CompiledMaskingSetting getMaskingSetting(String fieldName) {
+        CompiledMaskingSetting cms = findMaskingSetting(fieldName);
+        return cms == null ? unknownFieldMasking : cms;
+    }
+
+    /**
+     * Returns the compiled setting configured for a field, by exact name or by pattern.  Unlike
+     * {@link #getMaskingSetting(String)}, the default for unknown fields is not returned.
+     * @param fieldName The field name to search the configuration setting for.
+     * @return Configured setting, or null if the field is not configured.
+     */
+    public CompiledMaskingSetting findMaskingSetting(String fieldName) {
+        return hit(findRule(fieldName));
+    }
+
+    /**
+     * A helper method that finds the rule configured for a field, by exact name or by pattern.
+     * @param fieldName The field name to search the rule for.
+     * @return Configured rule, or null.
+     */
+    private Rule findRule(String fieldName) {
+        Rule rule = fieldIndex.get(fieldName);
+        if (rule != null || patternMatcher == null || fieldName == null) {
+            return rule;
+        }
+        return patternRule(findPatternIndex(fieldName));
+    }
+
+    /**
+     * Returns the field pattern that a field name matches.  Exact names take precedence, so
+     * null is also returned for a name that is configured exactly.
+     * @param fieldName The field name to match.
+     * @return The first matching pattern, as written in the configuration, or null.
+     */
+    String findFieldPattern(String fieldName) {
+        if (patternMatcher == null || fieldName == null || fieldIndex.get(fieldName) != null) {
+            return null;
+        }
+        int index = findPatternIndex(fieldName);
+        return index < 0 ? null : fieldPatterns.get(index);
+    }
+
+    /**
+     * A helper method that runs the pattern matcher for a name, caching the result until
+     * {@code MAX_CACHED_PATTERN_LOOKUPS} names are cached.
+     * @param fieldName The field name to match.
+     * @return Index of the matching pattern, or -1.
+     */
+    private int findPatternIndex(String fieldName) {
+        Integer index = patternLookups.get(fieldName);
+        if (index == null) {
+            index = patternMatcher.match(fieldName);
+            if (patternLookups.size() < MAX_CACHED_PATTERN_LOOKUPS) {
+                patternLookups.put(fieldName, index);
+            }
+        }
+        return index;
+    }
+
+    private Rule patternRule(int index) {
+        return index < 0 ? null : patternRules[index];
+    }
+
+    /**
+     * A helper method that reports a rule hit to the metrics, if any.
+     * @param rule Rule that was found, or null.
+     * @return Setting of the rule, or null.
+     */
+    private CompiledMaskingSetting hit(Rule rule) {
+        if (rule == null) {
+            return null;
+        }
+        if (metrics != null) {
+            metrics.recordFieldHit(rule.name);
+        }
+        return rule.setting;
+    }
+
+    /**
+     * Returns the compiled setting configured for the field name held in a slice of a
+     * {@code CharSequence}.  Unlike {@link #getMaskingSetting(String)}, the default for unknown
+     * fields is not returned.
+     * @param text Text holding the field name.
+     * @param start Index of the first character of the name.
+     * @param end Index after the last character of the name.
+     * @return Configured setting, or null if the field is not configured.
+     */
+    public CompiledMaskingSetting findMaskingSetting(CharSequence text, int start, int end) {
+        Rule rule = fieldIndex.get(text, start, end);
+        return hit(rule != null || patternMatcher == null ? rule : patternRule(patternMatcher.match(text, start, end)));
+    }
+
+    /**
+     * Returns the compiled setting configured for the field name held in part of a
+     * {@code char[]}.
+     * @param chars Array holding the field name.
+     * @param offset Index of the first character of the name.
+     * @param length Number of characters in the name.
+     * @return Configured setting, or null if the field is not configured.
+     */
+    public CompiledMaskingSetting findMaskingSetting(char[] chars, int offset, int length) {
+        Rule rule = fieldIndex.get(chars, offset, length);
+        return hit(rule != null || patternMatcher == null ? rule : patternRule(patternMatcher.match(chars, offset, length)));
+    }
+
+    /**
+     * Returns the compiled setting configured for the UTF-8 field name held in part of a
+     * {@code byte[]}.
+     * @param bytes Array holding the field name.
+     * @param offset Index of the first byte of the name.
+     * @param length Number of bytes in the name.
+     * @return Configured setting, or null if the field is not configured.
+     */
+    public CompiledMaskingSetting findMaskingSetting(byte[] bytes, int offset, int length) {
+        Rule rule = fieldIndex.get(bytes, offset, length);
+        return hit(rule != null || patternMatcher == null ? rule : patternRule(patternMatcher.match(bytes, offset, length)));
+    }
+
+    /**
+     * Returns the compiled setting configured for the UTF-8 field name held between two
+     * absolute indexes of a buffer.
+     * @param buffer Buffer holding the field name.
+     * @param start Index of the first byte of the name.
+     * @param end Index after the last byte of the name.
+     * @return Configured setting, or null if the field is not configured.
+     */
+    public CompiledMaskingSetting findMaskingSetting(ByteBuffer buffer, int start, int end) {
+        Rule rule = fieldIndex.get(buffer, start, end);
+        return hit(rule != null || patternMatcher == null ? rule : patternRule(patternMatcher.match(buffer, start, end)));
+    }
+
+    /**
+     * Returns the compiled default setting for fields that are not configured.
+     * @return Compiled setting for unknown fields; never null.
+     */
+    public CompiledMaskingSetting getUnknownFieldMasking() {
+        return unknownFieldMasking;
+    }
+
+    /**
+     * Search the snapshot to see if a masking setting is configured for a particular field.
+     * @param fieldName The field name to search the configuration setting for.
+     * @return true if a setting is configured for {@code fieldName}, false otherwise.
+     */
+    public boolean containsMaskingSettingForField(String fieldName) {
+        return findRule(fieldName) != null;
+    }
+
+    /**
+     * Applies the setting of a field to a value.
+     * @param fieldName The field name who's settings should be applied.
+     * @param value The value to which the settings should be applied.
+     * @return The value after the masking settings have been applied.
+     */
+    public String apply(String fieldName, String value) {
+        if (value == null || value.length() == 0) {
+            return value;
+        }
+        CompiledMaskingSetting cms = getMaskingSetting(fieldName);
+        return valueCache == null ? cms.apply(value) : valueCache.apply(cms, value);
+    }
+
+    /**
+     * Applies the setting of a field to a {@code StringBuilder}, in place.
+     * @param fieldName The field name who's settings should be applied.
+     * @param sb The {@code StringBuilder} to which the settings should be applied.
+     */
+    public void apply(String fieldName, StringBuilder sb) {
+        getMaskingSetting(fieldName).apply(sb);
+    }
+
+    /**
+     * A quick check used by maskers to skip payloads that cannot contain anything to mask.
+     * @param payload Raw payload to scan.
+     * @return true if the payload may contain a field that needs masking.
+     * @see MaskingConfiguration#mayContainMaskedField(CharSequence)
+     */
+    public boolean mayContainMaskedField(CharSequence payload) {
+        return !unknownFieldMasking.isEmpty() || fieldNameMatcher.matches(payload);
+    }
+
+    /**
+     * A quick check on a UTF-8 payload held in part of a byte array.
+     * @param payload Array holding the raw payload.
+     * @param offset Index of the first byte of the payload.
+     * @param length Number of bytes in the payload.
+     * @return true if the payload may contain a field that needs masking.
+     * @see MaskingConfiguration#mayContainMaskedField(CharSequence)
+     */
+    public boolean mayContainMaskedField(byte[] payload, int offset, int length) {
+        return !unknownFieldMasking.isEmpty() || fieldNameMatcher.matches(payload, offset, length);
+    }
+
+    /**
+     * A quick check on a UTF-8 payload held between the buffer's position and limit.
+     * @param payload Buffer holding the raw payload.
+     * @return true if the payload may contain a field that needs masking.
+     * @see MaskingConfiguration#mayContainMaskedField(CharSequence)
+     */
+    public boolean mayContainMaskedField(ByteBuffer payload) {
+        return !unknownFieldMasking.isEmpty() || fieldNameMatcher.matches(payload);
+    }
+
+    /**
+     * Return the configuration for masking attributes of elements.
+     * @return Returns the configuration for masking attributes of elements.
+     */
+    public boolean isAttributesMaskEnabled() {
+        return attributesMaskEnabled;
+    }
+
+    /**
+     * @return The configuration string the snapshot was compiled from.
+     */
+    public String getConfigString() {
+        return configString;
+    }
+
+    /**
+     * @return The names of the fields configured exactly, sorted; unmodifiable.
+     */
+    public Set<String> getFieldNames() {
+        Set<String> names = fieldNames;
+        if (names == null) {
+            names = Collections.unmodifiableSet(new TreeSet<>(compiledFields.keySet()));
+            fieldNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * @return The globs and regular expressions of the fields configured by pattern, in
+     *         configuration order; unmodifiable.
+     */
+    public List<String> getFieldPatterns() {
+        return fieldPatterns;
+    }
+
+    FieldNameMatcher getFieldNameMatcher() {
+        return fieldNameMatcher;
+    }
+
+    FieldPatternMatcher getPatternMatcher() {
+        return patternMatcher;
+    }
+
+    /**
+     * Returns an estimate of the memory retained by this snapshot: the field names, the index
+     * and the matchers.  Compiled settings are canonical and shared between configurations, so
+     * they are not counted, nor is the cache of pattern lookups.
+     * @return Estimated size in bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * @return The cache of masked values, or null if caching is disabled.
+     */
+    public MaskedValueCache getValueCache() {
+        return valueCache;
+    }
+
+    /**
+     * @return The metrics maskers report to, or null if metrics are disabled.
+     */
+    public MaskingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * A configured field name or field pattern with its compiled setting.
+     */
+    private static final class Rule {
+        private final String name;
+        private final CompiledMaskingSetting setting;
+
+        private Rule(String name, CompiledMaskingSetting setting) {
+            this.name = name;
+            this.setting = setting;
+        }
+    }
+}
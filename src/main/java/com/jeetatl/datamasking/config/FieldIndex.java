@@ -0,0 +1,256 @@
+package com.jeetatl.datamasking.config;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * <p>{@code FieldIndex} is an immutable map from field names to values, built for the lookups
+ * maskers do for every field of every payload.  Names are stored in an open-addressing table
+ * that is at most half full, together with their hashes, so a lookup is usually a single probe
+ * and a miss usually ends at the first empty slot.</p>
+ *
+ * <p>A name can be looked up from a {@code String}, from a slice of a {@code CharSequence} or
+ * {@code char[]}, or from UTF-8 bytes, without creating a {@code String}.  The hash is the same
+ * polynomial as {@link String#hashCode()}, so lookups by {@code String} use the hash the string
+ * has already cached, and an ASCII name hashes the same as chars or as bytes.</p>
+ *
+ * @param <V> Type of the values.
+ * @since 0.4.0
+ */
+public final class FieldIndex<V> {
+    private final int mask;
+    private final int[] hashes;
+    private final String[] keys;
+    private final Object[] values;
+    private final int size;
+    private final boolean asciiKeys;
+
+    /**
+     * Builds an index holding the entries of a map.  Null names are ignored.
+     * @param entries Names and their values.
+     */
+    public FieldIndex(Map<String, ? extends V> entries) {
+        int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 4 - 1);
+        mask = capacity - 1;
+        hashes = new int[capacity];
+        keys = new String[capacity];
+        values = new Object[capacity];
+
+        int count = 0;
+        boolean ascii = true;
+        for (Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+            int h = key.hashCode();
+            int slot = mix(h) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = h;
+            keys[slot] = key;
+            values[slot] = entry.getValue();
+            count++;
+            for (int i = 0; i < key.length() && ascii; i++) {
+                ascii = key.charAt(i) < 0x80;
+            }
+        }
+        size = count;
+        asciiKeys = ascii;
+    }
+
+    /**
+     * Returns the number of names in the index.
+     * @return Number of names.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of a name.
+     * @param name Name to look up.
+     * @return Value of {@code name}, or null if it is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String name) {
+        if (name == null) {
+            return null;
+        }
+        int h = name.hashCode();
+        for (int slot = mix(h) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == h && keys[slot].equals(name)) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the name held in a slice of a {@code CharSequence}.
+     * @param text Text holding the name.
+     * @param start Index of the first character of the name.
+     * @param end Index after the last character of the name.
+     * @return Value of the name, or null if it is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        int length = end - start;
+        for (int slot = mix(h) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (hashes[slot] == h && key.length() == length && regionMatches(key, text, start)) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the name held in part of a {@code char[]}.
+     * @param chars Array holding the name.
+     * @param offset Index of the first character of the name.
+     * @param length Number of characters in the name.
+     * @return Value of the name, or null if it is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + chars[i];
+        }
+        for (int slot = mix(h) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (hashes[slot] == h && key.length() == length && regionMatches(key, chars, offset)) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the UTF-8 encoded name held in part of a {@code byte[]}.  ASCII names
+     * are looked up without decoding.
+     * @param bytes Array holding the name.
+     * @param offset Index of the first byte of the name.
+     * @param length Number of bytes in the name.
+     * @return Value of the name, or null if it is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int b = bytes[i];
+            if (b < 0) {
+                return asciiKeys ? null : get(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+            h = 31 * h + b;
+        }
+        for (int slot = mix(h) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (hashes[slot] == h && key.length() == length && regionMatches(key, bytes, offset)) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of the UTF-8 encoded name held between two absolute indexes of a buffer.
+     * The buffer's position and limit are not used or changed.
+     * @param buffer Buffer holding the name.
+     * @param start Index of the first byte of the name.
+     * @param end Index after the last byte of the name.
+     * @return Value of the name, or null if it is not in the index.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(ByteBuffer buffer, int start, int end) {
+        if (buffer.hasArray()) {
+            return get(buffer.array(), buffer.arrayOffset() + start, end - start);
+        }
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            int b = buffer.get(i);
+            if (b < 0) {
+                if (asciiKeys) {
+                    return null;
+                }
+                byte[] bytes = new byte[end - start];
+                for (int k = 0; k < bytes.length; k++) {
+                    bytes[k] = buffer.get(start + k);
+                }
+                return get(new String(bytes, StandardCharsets.UTF_8));
+            }
+            h = 31 * h + b;
+        }
+        int length = end - start;
+        for (int slot = mix(h) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (hashes[slot] == h && key.length() == length && regionMatches(key, buffer, start)) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an estimate of the memory used by the index and its names.
+     * @return Estimated size in bytes.
+     */
+    long estimatedBytes() {
+        long bytes = 32 + 3 * (16 + 4L * keys.length);
+        for (String key : keys) {
+            if (key != null) {
+                bytes += 40 + 2L * key.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    private static boolean regionMatches(String key, CharSequence text, int start) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(String key, char[] chars, int offset) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(String key, byte[] bytes, int offset) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(String key, ByteBuffer buffer, int start) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
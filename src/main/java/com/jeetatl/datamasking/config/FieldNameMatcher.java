@@ -0,0 +1,245 @@
+package com.jeetatl.datamasking.config;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * <p>{@code FieldNameMatcher} is an immutable multi-pattern matcher that tells whether any of a
+ * set of field names occurs anywhere in a text.  Maskers use it as a prefilter so that payloads
+ * without any configured field are returned without being parsed.</p>
+ *
+ * <p>The names are compiled into an Aho-Corasick automaton whose failure links are folded into
+ * a full transition table, so a scan is one table lookup per character with no backtracking.
+ * The table only has columns for characters that occur in the names, which keeps it to
+ * (total name length) &times; (distinct characters) entries.  Field names are ASCII, so the same
+ * table scans {@code char} text and UTF-8 bytes alike.  If a name contains a non-ASCII character
+ * the matcher conservatively reports a match for every text.</p>
+ *
+ * @since 0.4.0
+ */
+public final class FieldNameMatcher {
+    private static final int ASCII_SIZE = 128;
+    private static final FieldNameMatcher NONE = new FieldNameMatcher(new int[ASCII_SIZE], 1, new int[1], new boolean[1], false);
+    private static final FieldNameMatcher ALL = new FieldNameMatcher(new int[ASCII_SIZE], 1, new int[1], new boolean[1], true);
+
+    private final int[] charClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final boolean[] terminal;
+    private final boolean matchesEverything;
+
+    private FieldNameMatcher(int[] charClasses, int classCount, int[] transitions, boolean[] terminal,
+                             boolean matchesEverything) {
+        this.charClasses = charClasses;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.terminal = terminal;
+        this.matchesEverything = matchesEverything;
+    }
+
+    /**
+     * Writes the matcher's tables in the format read by {@link #readFrom(ByteBuffer)}.
+     * @param out Destination of the tables.
+     * @throws IOException If writing fails.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeBoolean(matchesEverything);
+        out.writeInt(classCount);
+        CompiledConfigurationFile.writeInts(out, charClasses);
+        CompiledConfigurationFile.writeInts(out, transitions);
+        byte[] bytes = new byte[terminal.length];
+        for (int i = 0; i < terminal.length; i++) {
+            bytes[i] = (byte) (terminal[i] ? 1 : 0);
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads tables written by {@link #writeTo(DataOutputStream)}.
+     * @param in Buffer positioned at the tables; advanced past them.
+     * @return Matcher using the tables.
+     */
+    static FieldNameMatcher readFrom(ByteBuffer in) {
+        boolean matchesEverything = in.get() != 0;
+        int classCount = in.getInt();
+        int[] charClasses = CompiledConfigurationFile.readInts(in);
+        int[] transitions = CompiledConfigurationFile.readInts(in);
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        boolean[] terminal = new boolean[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            terminal[i] = bytes[i] != 0;
+        }
+        return matchesEverything ? ALL : new FieldNameMatcher(charClasses, classCount, transitions, terminal, false);
+    }
+
+    /**
+     * Returns an estimate of the memory used by the matcher's tables.
+     * @return Estimated size in bytes.
+     */
+    long estimatedBytes() {
+        return 32 + (16 + 4L * charClasses.length) + (16 + 4L * transitions.length) + (16 + terminal.length);
+    }
+
+    /**
+     * Returns a matcher that reports a match for every text.
+     * @return Matcher that always matches.
+     */
+    public static FieldNameMatcher all() {
+        return ALL;
+    }
+
+    /**
+     * Compiles a matcher for the field names passed in.  Null and empty names are ignored.
+     * @param names Field names to look for.
+     * @return Matcher for {@code names}; it never matches if there are no names.
+     */
+    public static FieldNameMatcher compile(Collection<String> names) {
+        int[] charClasses = new int[ASCII_SIZE];
+        int classCount = 1;
+        List<String> patterns = new ArrayList<>();
+        for (String name : names) {
+            if (name == null || name.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c >= ASCII_SIZE) {
+                    return ALL;
+                }
+                if (charClasses[c] == 0) {
+                    charClasses[c] = classCount++;
+                }
+            }
+            patterns.add(name);
+        }
+        if (patterns.isEmpty()) {
+            return NONE;
+        }
+
+        // Build the trie; -1 marks a missing edge until failure links are folded in.
+        int capacity = 1;
+        for (String pattern : patterns) {
+            capacity += pattern.length();
+        }
+        int[] transitions = new int[capacity * classCount];
+        Arrays.fill(transitions, -1);
+        boolean[] terminal = new boolean[capacity];
+        int states = 1;
+        for (String pattern : patterns) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int idx = state * classCount + charClasses[pattern.charAt(i)];
+                if (transitions[idx] < 0) {
+                    transitions[idx] = states++;
+                }
+                state = transitions[idx];
+            }
+            terminal[state] = true;
+        }
+
+        // Breadth-first pass turning the trie into a DFA.
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            terminal[state] |= terminal[fail[state]];
+            for (int c = 0; c < classCount; c++) {
+                int idx = state * classCount + c;
+                int next = transitions[idx];
+                if (next < 0) {
+                    transitions[idx] = transitions[fail[state] * classCount + c];
+                } else {
+                    fail[next] = transitions[fail[state] * classCount + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        return new FieldNameMatcher(charClasses, classCount,
+                Arrays.copyOf(transitions, states * classCount), Arrays.copyOf(terminal, states), false);
+    }
+
+    /**
+     * Returns true if any field name occurs in the text.
+     * @param text Text to scan.
+     * @return true if a field name was found.
+     */
+    public boolean matches(CharSequence text) {
+        if (matchesEverything) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            state = transitions[state * classCount + (c < ASCII_SIZE ? charClasses[c] : 0)];
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any field name occurs in part of a UTF-8 byte array.
+     * @param bytes Array holding the text.
+     * @param offset Index of the first byte to scan.
+     * @param length Number of bytes to scan.
+     * @return true if a field name was found.
+     */
+    public boolean matches(byte[] bytes, int offset, int length) {
+        if (matchesEverything) {
+            return true;
+        }
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int b = bytes[i];
+            state = transitions[state * classCount + (b >= 0 ? charClasses[b] : 0)];
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any field name occurs in the UTF-8 bytes between the buffer's position and
+     * limit.  The buffer's position and limit are not changed.
+     * @param buffer Buffer holding the text.
+     * @return true if a field name was found.
+     */
+    public boolean matches(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return matches(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        if (matchesEverything) {
+            return true;
+        }
+        int state = 0;
+        for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+            int b = buffer.get(i);
+            state = transitions[state * classCount + (b >= 0 ? charClasses[b] : 0)];
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
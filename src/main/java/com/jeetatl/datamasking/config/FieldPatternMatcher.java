@@ -0,0 +1,667 @@
+package com.jeetatl.datamasking.config;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * <p>{@code FieldPatternMatcher} matches field names against a list of name patterns and
+ * returns the index of the first pattern that matches the whole name.  All of the patterns are
+ * compiled together into one deterministic automaton, so a lookup is one table step per
+ * character however many patterns there are, and never backtracks.</p>
+ *
+ * <p>Two kinds of pattern are supported:</p>
+ * <ul>
+ * <li>Globs, such as {@code *cardNumber} or {@code pin?}: {@code *} matches any sequence of
+ * characters and {@code ?} matches any one character.  Globs are case-sensitive.</li>
+ * <li>Regular expressions between slashes, such as {@code /card_?number/i}.  A trailing
+ * {@code i} makes the expression case-insensitive.  The supported syntax is the subset that can
+ * be compiled into a deterministic automaton: literals, {@code .}, character classes
+ * ({@code [a-z_]}, {@code [^0-9]}), the escapes {@code \d \w \s \D \W \S}, grouping with
+ * {@code ( )} or {@code (?: )}, alternation with {@code |} and the quantifiers {@code * + ?}.
+ * {@code ^} and {@code $} are accepted at the ends and ignored, as patterns always match the
+ * whole name.</li>
+ * </ul>
+ *
+ * <p>Patterns and their literal characters must be ASCII; non-ASCII characters in a name are
+ * only matched by {@code .}, {@code *}, {@code ?} and negated classes.</p>
+ *
+ * @since 0.4.0
+ */
+public final class FieldPatternMatcher {
+    private static final int ASCII_SIZE = 128;
+    private static final int SYMBOLS = ASCII_SIZE + 1;
+    private static final int NON_ASCII = ASCII_SIZE;
+    private static final int MAX_STATES = 10000;
+    private static final int DEAD = 0;
+
+    private final int[] transitions;
+    private final int[] accepting;
+    private final int start;
+
+    private FieldPatternMatcher(int[] transitions, int[] accepting, int start) {
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.start = start;
+    }
+
+    /**
+     * Returns true if a configured field name is a pattern rather than an exact name.
+     * @param spec Field name from the configuration.
+     * @return true if {@code spec} is a glob or a regular expression.
+     */
+    public static boolean isPattern(String spec) {
+        return spec.startsWith("/") || spec.indexOf('*') >= 0 || spec.indexOf('?') >= 0;
+    }
+
+    /**
+     * Returns the longest run of literal characters that every name matching a pattern
+     * contains, for the field name prefilter.  For a glob this is its longest part between
+     * wildcards.  For a regular expression it is the longest run of literals outside of groups
+     * and classes that no quantifier makes optional; expressions with top-level alternation or
+     * the {@code i} flag have none.
+     * @param spec Glob or regular expression between slashes.
+     * @return The literal, or an empty string if there is none.
+     */
+    static String requiredLiteral(String spec) {
+        String best = "";
+        if (!spec.startsWith("/")) {
+            for (String part : spec.split("[*?]")) {
+                if (part.length() > best.length()) {
+                    best = part;
+                }
+            }
+            return best;
+        }
+        int end = spec.lastIndexOf('/');
+        if (end <= 0 || end != spec.length() - 1) {
+            return best;
+        }
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 1; i < end; i++) {
+            char c = spec.charAt(i);
+            if (c == '|' && depth == 0) {
+                return "";
+            } else if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                while (i + 1 < end && spec.charAt(i + 1) != ']') {
+                    i += spec.charAt(i + 1) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && ".*+?^$".indexOf(c) < 0
+                    && !(i + 1 < end && (spec.charAt(i + 1) == '*' || spec.charAt(i + 1) == '?'))) {
+                run.append(c);
+                continue;
+            }
+            if (run.length() > best.length()) {
+                best = run.toString();
+            }
+            run.setLength(0);
+        }
+        return run.length() > best.length() ? run.toString() : best;
+    }
+
+    /**
+     * Checks that a pattern can be compiled.
+     * @param spec Glob or regular expression between slashes.
+     * @throws IllegalArgumentException If the pattern is malformed or uses unsupported syntax.
+     */
+    public static void validate(String spec) {
+        new Parser(new Nfa(), spec).parse(0);
+    }
+
+    /**
+     * Compiles a list of patterns into one automaton.
+     * @param specs Globs and regular expressions between slashes, in priority order.
+     * @return Matcher for {@code specs}.
+     * @throws IllegalArgumentException If a pattern is malformed or uses unsupported syntax, or
+     *                                  if the patterns together need too many states.
+     */
+    public static FieldPatternMatcher compile(List<String> specs) {
+        Nfa nfa = new Nfa();
+        int nfaStart = nfa.newState();
+        for (int i = 0; i < specs.size(); i++) {
+            int[] fragment = new Parser(nfa, specs.get(i)).parse(i);
+            nfa.epsilon(nfaStart, fragment[0]);
+        }
+        return determinize(nfa, nfaStart);
+    }
+
+    /**
+     * Returns the index of the first pattern that matches a whole name.
+     * @param name Name to match.
+     * @return Index of the matching pattern, or -1 if none matches.
+     */
+    public int match(CharSequence name) {
+        return match(name, 0, name.length());
+    }
+
+    /**
+     * Returns the index of the first pattern that matches the name held in a slice of a
+     * {@code CharSequence}.
+     * @param text Text holding the name.
+     * @param start Index of the first character of the name.
+     * @param end Index after the last character of the name.
+     * @return Index of the matching pattern, or -1 if none matches.
+     */
+    public int match(CharSequence text, int start, int end) {
+        int state = this.start;
+        for (int i = start; i < end && state != DEAD; i++) {
+            char c = text.charAt(i);
+            state = transitions[state * SYMBOLS + (c < ASCII_SIZE ? c : NON_ASCII)];
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Returns the index of the first pattern that matches the name held in part of a
+     * {@code char[]}.
+     * @param chars Array holding the name.
+     * @param offset Index of the first character of the name.
+     * @param length Number of characters in the name.
+     * @return Index of the matching pattern, or -1 if none matches.
+     */
+    public int match(char[] chars, int offset, int length) {
+        int state = this.start;
+        for (int i = offset, end = offset + length; i < end && state != DEAD; i++) {
+            char c = chars[i];
+            state = transitions[state * SYMBOLS + (c < ASCII_SIZE ? c : NON_ASCII)];
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Returns the index of the first pattern that matches the UTF-8 name held in part of a
+     * {@code byte[]}.  Names with non-ASCII characters are decoded first.
+     * @param bytes Array holding the name.
+     * @param offset Index of the first byte of the name.
+     * @param length Number of bytes in the name.
+     * @return Index of the matching pattern, or -1 if none matches.
+     */
+    public int match(byte[] bytes, int offset, int length) {
+        int state = this.start;
+        for (int i = offset, end = offset + length; i < end && state != DEAD; i++) {
+            int b = bytes[i];
+            if (b < 0) {
+                return match(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+            state = transitions[state * SYMBOLS + b];
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Returns the index of the first pattern that matches the UTF-8 name held between two
+     * absolute indexes of a buffer.  Names with non-ASCII characters are decoded first.
+     * @param buffer Buffer holding the name.
+     * @param start Index of the first byte of the name.
+     * @param end Index after the last byte of the name.
+     * @return Index of the matching pattern, or -1 if none matches.
+     */
+    public int match(ByteBuffer buffer, int start, int end) {
+        if (buffer.hasArray()) {
+            return match(buffer.array(), buffer.arrayOffset() + start, end - start);
+        }
+        int state = this.start;
+        for (int i = start; i < end && state != DEAD; i++) {
+            int b = buffer.get(i);
+            if (b < 0) {
+                byte[] bytes = new byte[end - start];
+                for (int k = 0; k < bytes.length; k++) {
+                    bytes[k] = buffer.get(start + k);
+                }
+                return match(new String(bytes, StandardCharsets.UTF_8));
+            }
+            state = transitions[state * SYMBOLS + b];
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Writes the automaton in the format read by {@link #readFrom(ByteBuffer)}.
+     * @param out Destination of the automaton.
+     * @throws IOException If writing fails.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(start);
+        CompiledConfigurationFile.writeInts(out, transitions);
+        CompiledConfigurationFile.writeInts(out, accepting);
+    }
+
+    /**
+     * Reads an automaton written by {@link #writeTo(DataOutputStream)}.
+     * @param in Buffer positioned at the automaton; advanced past it.
+     * @return Matcher using the automaton.
+     */
+    static FieldPatternMatcher readFrom(ByteBuffer in) {
+        int start = in.getInt();
+        int[] transitions = CompiledConfigurationFile.readInts(in);
+        int[] accepting = CompiledConfigurationFile.readInts(in);
+        return new FieldPatternMatcher(transitions, accepting, start);
+    }
+
+    /**
+     * Returns an estimate of the memory used by the automaton.
+     * @return Estimated size in bytes.
+     */
+    long estimatedBytes() {
+        return 24 + (16 + 4L * transitions.length) + (16 + 4L * accepting.length);
+    }
+
+    /**
+     * A helper method that turns the NFA into a DFA with the subset construction.  State 0 of
+     * the DFA is the dead state.
+     * @param nfa Automaton holding every pattern.
+     * @param nfaStart Start state of {@code nfa}.
+     * @return Matcher for the DFA.
+     */
+    private static FieldPatternMatcher determinize(Nfa nfa, int nfaStart) {
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        BitSet dead = new BitSet();
+        ids.put(dead, DEAD);
+        sets.add(dead);
+        BitSet first = nfa.closure(single(nfaStart));
+        int start = ids.containsKey(first) ? ids.get(first) : add(first, ids, sets, queue);
+
+        int[] transitions = new int[64 * SYMBOLS];
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            BitSet set = sets.get(id);
+            if (transitions.length < (id + 1) * SYMBOLS) {
+                transitions = Arrays.copyOf(transitions, Math.max(transitions.length * 2, (id + 1) * SYMBOLS));
+            }
+            for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+                BitSet next = new BitSet();
+                for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                    int target = nfa.targets[s];
+                    if (target >= 0 && nfa.symbols.get(s).get(symbol)) {
+                        next.set(target);
+                    }
+                }
+                next = nfa.closure(next);
+                Integer nextId = ids.get(next);
+                if (nextId == null) {
+                    nextId = add(next, ids, sets, queue);
+                    if (sets.size() > MAX_STATES) {
+                        throw new IllegalArgumentException("Field patterns need more than " + MAX_STATES + " states.");
+                    }
+                }
+                transitions[id * SYMBOLS + symbol] = nextId;
+            }
+        }
+
+        int[] accepting = new int[sets.size()];
+        for (int id = 0; id < sets.size(); id++) {
+            accepting[id] = -1;
+            BitSet set = sets.get(id);
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                int rule = nfa.accepts.get(s);
+                if (rule >= 0 && (accepting[id] < 0 || rule < accepting[id])) {
+                    accepting[id] = rule;
+                }
+            }
+        }
+        return new FieldPatternMatcher(Arrays.copyOf(transitions, sets.size() * SYMBOLS), accepting, start);
+    }
+
+    private static int add(BitSet set, Map<BitSet, Integer> ids, List<BitSet> sets, Queue<Integer> queue) {
+        int id = sets.size();
+        ids.put(set, id);
+        sets.add(set);
+        queue.add(id);
+        return id;
+    }
+
+    private static BitSet single(int state) {
+        BitSet set = new BitSet();
+        set.set(state);
+        return set;
+    }
+
+    /**
+     * A Thompson NFA in which every state has at most one symbol transition plus any number of
+     * epsilon transitions.
+     */
+    private static final class Nfa {
+        private int[] targets = new int[16];
+        private final List<BitSet> symbols = new ArrayList<>();
+        private final List<int[]> epsilons = new ArrayList<>();
+        private final List<Integer> accepts = new ArrayList<>();
+
+        int newState() {
+            int state = symbols.size();
+            if (state == targets.length) {
+                targets = Arrays.copyOf(targets, state * 2);
+            }
+            targets[state] = -1;
+            symbols.add(null);
+            epsilons.add(new int[0]);
+            accepts.add(-1);
+            return state;
+        }
+
+        void symbol(int from, BitSet set, int to) {
+            symbols.set(from, set);
+            targets[from] = to;
+        }
+
+        void epsilon(int from, int to) {
+            int[] edges = epsilons.get(from);
+            edges = Arrays.copyOf(edges, edges.length + 1);
+            edges[edges.length - 1] = to;
+            epsilons.set(from, edges);
+        }
+
+        BitSet closure(BitSet set) {
+            BitSet closure = (BitSet) set.clone();
+            ArrayDeque<Integer> stack = new ArrayDeque<>();
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                stack.push(s);
+            }
+            while (!stack.isEmpty()) {
+                for (int next : epsilons.get(stack.pop())) {
+                    if (!closure.get(next)) {
+                        closure.set(next);
+                        stack.push(next);
+                    }
+                }
+            }
+            return closure;
+        }
+    }
+
+    /**
+     * A recursive descent parser that builds the NFA fragment of one pattern.  A fragment is a
+     * pair of states {@code {in, out}}.
+     */
+    private static final class Parser {
+        private final Nfa nfa;
+        private final String spec;
+        private final String pattern;
+        private final boolean regex;
+        private final boolean caseInsensitive;
+        private int pos = 0;
+
+        Parser(Nfa nfa, String spec) {
+            this.nfa = nfa;
+            this.spec = spec;
+            if (spec.startsWith("/")) {
+                int close = spec.lastIndexOf('/');
+                String flags = close > 0 ? spec.substring(close + 1) : null;
+                if (flags == null || !(flags.isEmpty() || flags.equals("i"))) {
+                    throw error("expected /regex/ or /regex/i");
+                }
+                this.pattern = spec.substring(1, close);
+                this.regex = true;
+                this.caseInsensitive = flags.equals("i");
+            } else {
+                this.pattern = spec;
+                this.regex = false;
+                this.caseInsensitive = false;
+            }
+        }
+
+        int[] parse(int rule) {
+            int[] fragment;
+            if (regex) {
+                if (pattern.startsWith("^")) {
+                    pos++;
+                }
+                fragment = alternation();
+                if (pos < pattern.length() && pattern.charAt(pos) == '$' && pos == pattern.length() - 1) {
+                    pos++;
+                }
+                if (pos < pattern.length()) {
+                    throw error("unexpected '" + pattern.charAt(pos) + "'");
+                }
+            } else {
+                fragment = glob();
+            }
+            nfa.accepts.set(fragment[1], rule);
+            return fragment;
+        }
+
+        private int[] glob() {
+            int in = nfa.newState();
+            int out = in;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '*') {
+                    int loop = nfa.newState();
+                    nfa.epsilon(out, loop);
+                    int next = nfa.newState();
+                    nfa.symbol(loop, any(), loop);
+                    nfa.epsilon(loop, next);
+                    out = next;
+                } else {
+                    int next = nfa.newState();
+                    nfa.symbol(out, c == '?' ? any() : literal(c), next);
+                    out = next;
+                }
+            }
+            return new int[]{in, out};
+        }
+
+        private int[] alternation() {
+            int[] fragment = concatenation();
+            while (pos < pattern.length() && pattern.charAt(pos) == '|') {
+                pos++;
+                int[] other = concatenation();
+                int in = nfa.newState();
+                int out = nfa.newState();
+                nfa.epsilon(in, fragment[0]);
+                nfa.epsilon(in, other[0]);
+                nfa.epsilon(fragment[1], out);
+                nfa.epsilon(other[1], out);
+                fragment = new int[]{in, out};
+            }
+            return fragment;
+        }
+
+        private int[] concatenation() {
+            int in = nfa.newState();
+            int out = in;
+            while (pos < pattern.length()) {
+                char c = pattern.charAt(pos);
+                if (c == '|' || c == ')' || (c == '$' && pos == pattern.length() - 1)) {
+                    break;
+                }
+                int[] next = repetition();
+                nfa.epsilon(out, next[0]);
+                out = next[1];
+            }
+            return new int[]{in, out};
+        }
+
+        private int[] repetition() {
+            int[] fragment = atom();
+            while (pos < pattern.length()) {
+                char c = pattern.charAt(pos);
+                if (c != '*' && c != '+' && c != '?') {
+                    if (c == '{') {
+                        throw error("counted repetition is not supported");
+                    }
+                    break;
+                }
+                pos++;
+                int in = nfa.newState();
+                int out = nfa.newState();
+                nfa.epsilon(in, fragment[0]);
+                nfa.epsilon(fragment[1], out);
+                if (c != '+') {
+                    nfa.epsilon(in, out);
+                }
+                if (c != '?') {
+                    nfa.epsilon(fragment[1], fragment[0]);
+                }
+                fragment = new int[]{in, out};
+            }
+            return fragment;
+        }
+
+        private int[] atom() {
+            char c = pattern.charAt(pos++);
+            BitSet set;
+            switch (c) {
+                case '(':
+                    if (pattern.startsWith("?:", pos)) {
+                        pos += 2;
+                    } else if (pos < pattern.length() && pattern.charAt(pos) == '?') {
+                        throw error("unsupported group");
+                    }
+                    int[] group = alternation();
+                    if (pos >= pattern.length() || pattern.charAt(pos) != ')') {
+                        throw error("missing ')'");
+                    }
+                    pos++;
+                    return group;
+                case '[':
+                    set = characterClass();
+                    break;
+                case '.':
+                    set = any();
+                    break;
+                case '\\':
+                    set = escape(false);
+                    break;
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                case ')':
+                case '^':
+                case '$':
+                    pos--;
+                    throw error("unexpected '" + c + "'");
+                default:
+                    set = literal(c);
+                    break;
+            }
+            int in = nfa.newState();
+            int out = nfa.newState();
+            nfa.symbol(in, set, out);
+            return new int[]{in, out};
+        }
+
+        private BitSet characterClass() {
+            BitSet set = new BitSet(SYMBOLS);
+            boolean negated = pos < pattern.length() && pattern.charAt(pos) == '^';
+            if (negated) {
+                pos++;
+            }
+            boolean first = true;
+            while (true) {
+                if (pos >= pattern.length()) {
+                    throw error("missing ']'");
+                }
+                char c = pattern.charAt(pos++);
+                if (c == ']' && !first) {
+                    break;
+                }
+                first = false;
+                if (c == '\\') {
+                    set.or(escape(true));
+                    continue;
+                }
+                checkAscii(c);
+                char last = c;
+                if (pos + 1 < pattern.length() && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+                    last = pattern.charAt(pos + 1);
+                    checkAscii(last);
+                    if (last < c) {
+                        throw error("bad range " + c + "-" + last);
+                    }
+                    pos += 2;
+                }
+                for (char r = c; r <= last; r++) {
+                    set.or(literal(r));
+                }
+            }
+            if (negated) {
+                set.flip(0, SYMBOLS);
+            }
+            return set;
+        }
+
+        private BitSet escape(boolean inClass) {
+            if (pos >= pattern.length()) {
+                throw error("trailing '\\\\'");
+            }
+            char c = pattern.charAt(pos++);
+            BitSet set = new BitSet(SYMBOLS);
+            switch (Character.toLowerCase(c)) {
+                case 'd':
+                    set.set('0', '9' + 1);
+                    break;
+                case 'w':
+                    set.set('a', 'z' + 1);
+                    set.set('A', 'Z' + 1);
+                    set.set('0', '9' + 1);
+                    set.set('_');
+                    break;
+                case 's':
+                    set.set(' ');
+                    set.set('\t');
+                    set.set('\n');
+                    set.set(0x0B);
+                    set.set('\f');
+                    set.set('\r');
+                    break;
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw error("unsupported escape \\" + c);
+                    }
+                    return literal(c);
+            }
+            if (Character.isUpperCase(c)) {
+                set.flip(0, SYMBOLS);
+            }
+            return set;
+        }
+
+        private BitSet literal(char c) {
+            checkAscii(c);
+            BitSet set = new BitSet(SYMBOLS);
+            set.set(c);
+            if (caseInsensitive) {
+                set.set(Character.toLowerCase(c));
+                set.set(Character.toUpperCase(c));
+            }
+            return set;
+        }
+
+        private static BitSet any() {
+            BitSet set = new BitSet(SYMBOLS);
+            set.set(0, SYMBOLS);
+            return set;
+        }
+
+        private void checkAscii(char c) {
+            if (c >= ASCII_SIZE) {
+                throw error("non-ASCII character");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid field pattern " + spec + " at position " + pos + ": " + message);
+        }
+    }
+}
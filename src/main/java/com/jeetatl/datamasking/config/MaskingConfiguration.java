@@ -1,11 +1,13 @@
 package com.jeetatl.datamasking.config;
 
+import com.jeetatl.datamasking.MaskedValueCache;
 import com.jeetatl.datamasking.MaskingSetting;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>{@code MaskingConfiguration} is a concrete class that stores
@@ -89,6 +91,17 @@ import java.util.regex.Pattern;
  *
  * <p>Any {@code MaskingSetting} string may be used for default masking.</p>
  *
+ * <p>Instead of a field name, a rule may give a glob or a regular expression between slashes,
+ * for example {@code *CardNumber:~7-12} or {@code /card_?(number|no)/i:-4}.  A trailing
+ * {@code i} makes a regular expression case-insensitive.  A field configured by exact name
+ * uses that rule; otherwise the first pattern that matches the whole name is used.  See
+ * {@link FieldPatternMatcher} for the supported syntax.</p>
+ *
+ * <p>Every change to the configuration compiles an immutable {@link CompiledMaskingConfiguration}
+ * and publishes it atomically.  Masking calls only read the current snapshot, so the
+ * configuration can be changed while other threads are masking without locks and without a
+ * payload ever seeing a mix of old and new rules.</p>
+ *
  * @author Mohammad Ali Khokhar
  * @since 0.1.0
  */
@@ -96,20 +109,13 @@ public class MaskingConfiguration {
     private static final MaskingSetting DEFAULT_MASKING_SETTING = new MaskingSetting();
     private static final boolean IS_ATTR_MASKED_DEFAULT = true;
 
-    private static final String PLUS_SIGN = "+";
-    private static final String TILDE_SYMBOL = "~";
-    private static final String RANGE_SEPARATOR = "-";
-    private static final String CONFIG_PATTERN_STRING = "(\\w+):(([-+~]\\d+(-\\d+)?%?,?)+)";
-    private static final String OUTER_MASKING_PATTERN_STR = "(^[-+]|,[-+])(\\d+)(%)?";
-    private static final String INNER_MASKING_PATTERN_STR = "(~)((\\d+)(-\\d+)?)";
-    private static final Pattern configPattern = Pattern.compile(CONFIG_PATTERN_STRING);
-    private static final Pattern outerMaskingPattern = Pattern.compile(OUTER_MASKING_PATTERN_STR);
-    private static final Pattern innerMaskingPattern = Pattern.compile(INNER_MASKING_PATTERN_STR);
-
     private MaskingSetting unknownFieldMasking = DEFAULT_MASKING_SETTING;
-    private Map<String, MaskingSetting> fieldConfiguration;
+    private volatile Map<String, MaskingSetting> fieldConfiguration;
     private String configString;
     private boolean maskXMLAttributes = IS_ATTR_MASKED_DEFAULT;
+    private MaskedValueCache valueCache = null;
+    private MaskingMetrics metrics = null;
+    private final AtomicReference<CompiledMaskingConfiguration> snapshot = new AtomicReference<>();
 
     /**
      * Constructs the {@code MaskingConfiguration} with defaul configuration settings. It
@@ -143,36 +149,126 @@ public class MaskingConfiguration {
      *                       map.
      */
     public MaskingConfiguration(String configString, String defaultMasking) {
-        MaskingSetting ms = createMaskingSetting(defaultMasking);
+        MaskingSetting ms = MaskingRuleCompiler.compileSetting(defaultMasking);
         this.unknownFieldMasking = ms;
         this.configString = configString;
         initialize();
     }
 
     /**
-     * Parses the configuration string and creates a fields configuration map.
+     * Constructs the {@code MaskingConfiguration} from settings and matchers that were compiled
+     * before, as read by {@link CompiledConfigurationFile}.
+     * @param configString The configuration string the settings were parsed from.
+     * @param fields Settings of the fields and field patterns, in configuration order.
+     * @param unknownFieldMasking Setting for fields that are not configured.
+     * @param maskXMLAttributes true if xml attributes are masked.
+     * @param fieldNameMatcher Prefilter for the configured names.
+     * @param patternMatcher Automaton for the field patterns, or null if there are none.
      */
-    private void initialize() {
-        fieldConfiguration = new TreeMap<>();
+    MaskingConfiguration(String configString, Map<String, MaskingSetting> fields, MaskingSetting unknownFieldMasking,
+                         boolean maskXMLAttributes, FieldNameMatcher fieldNameMatcher,
+                         FieldPatternMatcher patternMatcher) {
+        this.configString = configString;
+        this.fieldConfiguration = fields;
+        this.unknownFieldMasking = unknownFieldMasking;
+        this.maskXMLAttributes = maskXMLAttributes;
+        snapshot.set(new CompiledMaskingConfiguration(configString, fields, unknownFieldMasking,
+                maskXMLAttributes, null, null, fieldNameMatcher, patternMatcher));
+    }
 
-        if (configString == null || configString.length() == 0) {
-            return;
-        }
+    /**
+     * Parses the configuration string, creates a fields configuration map and publishes a new
+     * snapshot.  The map in use is replaced, never modified.  Only the valid fragments of
+     * malformed rules are kept.
+     */
+    private synchronized void initialize() {
+        replace(configString, MaskingRuleCompiler.compile(configString, false));
+    }
 
-        Matcher matcher = configPattern.matcher(configString);
-        while (matcher.find()) {
-            MaskingSetting ms = createMaskingSetting(matcher.group(2));
-            fieldConfiguration.put(matcher.group(1), ms);
+    /**
+     * A helper method that switches to new rules and publishes them, restoring the previous
+     * rules if they cannot be compiled.
+     * @param configString The configuration string the rules were parsed from.
+     * @param fields Settings of the fields and field patterns, in configuration order.
+     */
+    private synchronized void replace(String configString, Map<String, MaskingSetting> fields) {
+        Map<String, MaskingSetting> previousFields = fieldConfiguration;
+        String previousConfigString = this.configString;
+        this.configString = configString;
+        fieldConfiguration = fields;
+        try {
+            publish();
+        } catch (IllegalArgumentException e) {
+            this.configString = previousConfigString;
+            fieldConfiguration = previousFields;
+            throw e;
         }
     }
 
     /**
-     * Sets the configuration string for the masking.
+     * A helper method that compiles the current settings and publishes them as the snapshot
+     * used by masking calls.
+     */
+    private synchronized void publish() {
+        snapshot.set(new CompiledMaskingConfiguration(configString, fieldConfiguration,
+                unknownFieldMasking, maskXMLAttributes, valueCache, metrics));
+    }
+
+    /**
+     * Checks that every {@code |} separated rule of a configuration string is well formed.
+     * {@link #setConfigString(String)} keeps only the valid fragments of malformed rules, so
+     * callers that would rather reject a bad configuration than publish a partial one check it
+     * first.
      * @param configString A string containing the fields and their masking configuration.
+     * @throws MaskingRuleException If a rule is malformed.  The exception gives the position of
+     *                              the rule and of the error in {@code configString}.
      */
-    public void setConfigString(String configString) {
-        this.configString = configString;
-        initialize();
+    static void validate(String configString) {
+        MaskingRuleCompiler.compile(configString, true);
+    }
+
+    /**
+     * Sets the configuration string for the masking, rejecting it if any rule is malformed.
+     * @param configString A string containing the fields and their masking configuration.
+     * @throws MaskingRuleException If a rule is malformed.  The configuration is left unchanged.
+     */
+    synchronized void setValidConfigString(String configString) {
+        replace(configString, MaskingRuleCompiler.compile(configString, true));
+    }
+
+    /**
+     * @return The settings of the fields and field patterns, in configuration order; must not be
+     *         modified.
+     */
+    Map<String, MaskingSetting> getFieldConfiguration() {
+        return fieldConfiguration;
+    }
+
+    /**
+     * @return The setting for fields that are not configured.
+     */
+    MaskingSetting getUnknownFieldMasking() {
+        return unknownFieldMasking;
+    }
+
+    /**
+     * Returns the current immutable snapshot of this configuration.  Maskers read it once per
+     * payload so that the whole payload is masked with the same rules.
+     * @return The current snapshot; never null.
+     */
+    public CompiledMaskingConfiguration snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Sets the configuration string for the masking.  Only the valid fragments of malformed rules
+     * are kept, as {@code a:+2} of {@code a:+2;b:-x}.
+     * @param configString A string containing the fields and their masking configuration.
+     * @throws IllegalArgumentException If the field patterns together are too complex to
+     *                                  compile.  The configuration is left unchanged.
+     */
+    public synchronized void setConfigString(String configString) {
+        replace(configString, MaskingRuleCompiler.compile(configString, false));
     }
 
     /**
@@ -184,12 +280,23 @@ public class MaskingConfiguration {
      * @return The {@code String} after the masking settings have been applied.
      */
     public String apply(String fieldName, String value) {
+        return snapshot().apply(fieldName, value);
+    }
+
+    /**
+     * The {@code apply} method is used to retrieve {@code MaskingSetting}
+     * for the field passed in and append a masked copy of {@code value}
+     * to {@code out}.  No intermediate copy of the value is made.
+     * @param fieldName The field name who's settings should be applied.
+     * @param value The value to which the settings should be applied; not modified.
+     * @param out The destination of the masked value.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    public void apply(String fieldName, CharSequence value, Appendable out) throws IOException {
         if (value == null || value.length() == 0) {
-            return value;
+            return;
         }
-        StringBuffer sb = new StringBuffer(value);
-        apply(fieldName, sb);
-        return sb.toString();
+        snapshot().getMaskingSetting(fieldName).apply(value, out);
     }
 
     /**
@@ -200,11 +307,7 @@ public class MaskingConfiguration {
      * @param sb The {@code StringBuilder} to which the settings should be applied.
      */
     public void apply(String fieldName, StringBuilder sb) {
-        if (fieldConfiguration.containsKey(fieldName)) {
-            fieldConfiguration.get(fieldName).apply(sb);
-        } else {
-            unknownFieldMasking.apply(sb);
-        }
+        snapshot().apply(fieldName, sb);
     }
 
     /**
@@ -215,11 +318,33 @@ public class MaskingConfiguration {
      * @param sb The {@code StringBuffer} to which the settings should be applied.
      */
     public void apply(String fieldName, StringBuffer sb) {
-        if (fieldConfiguration.containsKey(fieldName)) {
-            fieldConfiguration.get(fieldName).apply(sb);
-        } else {
-            unknownFieldMasking.apply(sb);
-        }
+        snapshot().getMaskingSetting(fieldName).apply(sb);
+    }
+
+    /**
+     * The {@code applyUtf8} method is used to retrieve {@code MaskingSetting}
+     * for the field passed in and applies it, in place, to a UTF-8 value held
+     * in part of a byte array.  Positions and percentages count code points.
+     * @param fieldName The field name who's settings should be applied.
+     * @param bytes The array holding the value; modified in place.
+     * @param offset Index of the first byte of the value.
+     * @param length Number of bytes in the value.
+     * @see MaskingSetting#applyUtf8(byte[], int, int)
+     */
+    public void applyUtf8(String fieldName, byte[] bytes, int offset, int length) {
+        snapshot().getMaskingSetting(fieldName).applyUtf8(bytes, offset, length);
+    }
+
+    /**
+     * The {@code applyUtf8} method is used to retrieve {@code MaskingSetting}
+     * for the field passed in and applies it, in place, to the UTF-8 bytes
+     * between the buffer's position and limit.
+     * @param fieldName The field name who's settings should be applied.
+     * @param buffer The buffer holding the value.
+     * @see MaskingSetting#applyUtf8(ByteBuffer)
+     */
+    public void applyUtf8(String fieldName, ByteBuffer buffer) {
+        snapshot().getMaskingSetting(fieldName).applyUtf8(buffer);
     }
 
     /**
@@ -228,66 +353,75 @@ public class MaskingConfiguration {
      * @return true if a {@code MaskingSetting} is found for the {@code fieldName}, false otherwise.
      */
     public boolean containsMaskingSettingForField(String fieldName) {
-        return fieldConfiguration.containsKey(fieldName);
+        return snapshot().containsMaskingSettingForField(fieldName);
     }
 
     /**
-     * <p>A helper method to parse a string containing a configuration for a field.</p>
-     * @param pattern A string containing the pattern for masking.
-     * @return {@code MaskingSetting} object that contains the parsed setting.
+     * A quick check used by maskers to skip payloads that cannot contain anything to mask.  It
+     * returns false only when masking for unknown fields is disabled and none of the configured
+     * field names occurs anywhere in {@code payload}.  A field pattern counts as its longest
+     * literal part, and a pattern without one, such as a case-insensitive regular expression,
+     * makes this method always return true.  False positives are possible, for example when a
+     * field name occurs inside a value; false negatives are not.
+     * @param payload Raw payload to scan.
+     * @return true if the payload may contain a field that needs masking.
      */
-    private MaskingSetting createMaskingSetting(String pattern) {
-        Matcher outerMatcher = outerMaskingPattern.matcher(pattern);
-        Matcher innerMatcher = innerMaskingPattern.matcher(pattern);
+    public boolean mayContainMaskedField(CharSequence payload) {
+        return snapshot().mayContainMaskedField(payload);
+    }
 
-        MaskingSetting ms = new MaskingSetting();
+    /**
+     * A quick check on a UTF-8 payload held in part of a byte array.
+     * @param payload Array holding the raw payload.
+     * @param offset Index of the first byte of the payload.
+     * @param length Number of bytes in the payload.
+     * @return true if the payload may contain a field that needs masking.
+     * @see #mayContainMaskedField(CharSequence)
+     */
+    public boolean mayContainMaskedField(byte[] payload, int offset, int length) {
+        return snapshot().mayContainMaskedField(payload, offset, length);
+    }
 
-        while (outerMatcher.find()) {
-            String symbol = outerMatcher.group(1);
-            String magnitude = outerMatcher.group(2);
-            boolean isPercentage = outerMatcher.group(3) == null ? false : true;
-            addToMaskingSetting(ms, symbol, magnitude, isPercentage);
-        }
+    /**
+     * A quick check on a UTF-8 payload held between the buffer's position and limit.
+     * @param payload Buffer holding the raw payload.
+     * @return true if the payload may contain a field that needs masking.
+     * @see #mayContainMaskedField(CharSequence)
+     */
+    public boolean mayContainMaskedField(ByteBuffer payload) {
+        return snapshot().mayContainMaskedField(payload);
+    }
 
-        while (innerMatcher.find()) {
-            String maskingRange = innerMatcher.group(2);
-            addToMaskingSetting(ms, TILDE_SYMBOL, maskingRange, false);
+    /**
+     * Returns the {@code MaskingSetting} that {@link #apply(String, String)} would use for a field.
+     * This is the setting configured for the name or for the first pattern it matches when one
+     * exists, otherwise the default masking for
+     * unknown fields.  The setting returned is a copy, so changes made to it are not seen by
+     * this configuration; reconfigure the field with {@link #setConfigString(String)} instead.
+     * @param fieldName The field name to search the configuration setting for.
+     * @return Copy of the {@code MaskingSetting} to apply to values of {@code fieldName}; never
+     *         null.
+     */
+    public MaskingSetting getMaskingSetting(String fieldName) {
+        MaskingSetting ms = fieldName == null ? null : fieldConfiguration.get(fieldName);
+        if (ms == null) {
+            String fieldPattern = snapshot().findFieldPattern(fieldName);
+            ms = fieldPattern == null ? null : fieldConfiguration.get(fieldPattern);
         }
-
-        return ms;
+        return new MaskingSetting(ms == null ? unknownFieldMasking : ms);
     }
 
     /**
-     * <p>A helper method for adding settings to {@code MaskingSetting}.</p>
-     * @param ms {@code MaskingSetting} to which to add settings to.
-     * @param symbol A symbol to determine if the masking is applied to left,
-     *               right, or middle
-     * @param maskingRange The magnitude or range of values to mask.
-     * @param isPercentage Flag to determine if the magnitude passed in is percentage.
+     * Returns an estimate of the memory retained by this configuration: its configuration
+     * string, its map of settings and its current snapshot.
+     * @return Estimated size in bytes.
+     * @see CompiledMaskingConfiguration#getEstimatedBytes()
      */
-    private void addToMaskingSetting(MaskingSetting ms, String symbol, String maskingRange, boolean isPercentage) {
-        if (TILDE_SYMBOL.equals(symbol)) {
-            if (maskingRange.contains(RANGE_SEPARATOR)) {
-                String[] tokens = maskingRange.split(RANGE_SEPARATOR);
-                ms.addInnerMasking(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]));
-            } else {
-                ms.addInnerMasking(Integer.parseInt(maskingRange), Integer.parseInt(maskingRange));
-            }
-        } else {
-            if (symbol == null || symbol.equals(PLUS_SIGN)) {
-                if (isPercentage) {
-                    ms.setPercentMaskLeft(Double.parseDouble(maskingRange));
-                } else {
-                    ms.setCharactersMaskLeft(Integer.parseInt(maskingRange));
-                }
-            } else {
-                if (isPercentage) {
-                    ms.setPercentMaskRight(Double.parseDouble(maskingRange));
-                } else {
-                    ms.setCharactersMaskRight(Integer.parseInt(maskingRange));
-                }
-            }
-        }
+    public long getEstimatedBytes() {
+        CompiledMaskingConfiguration current = snapshot();
+        String cs = current.getConfigString();
+        long bytes = 64 + 48L * fieldConfiguration.size() + current.getEstimatedBytes();
+        return cs == null ? bytes : bytes + 40 + 2L * cs.length();
     }
 
     /**
@@ -295,14 +429,51 @@ public class MaskingConfiguration {
      * @return Returns the configuration for masking attributes of elements.
      */
     public boolean isAttributesMaskEnabled() {
-        return maskXMLAttributes;
+        return snapshot().isAttributesMaskEnabled();
     }
 
     /**
      * Set the configuration for masking attributes of element.  Default: true.
      * @param bool Set the configuration for masking attributes of elements.
      */
-    public void setAttributeMaskEnabled(boolean bool) {
+    public synchronized void setAttributeMaskEnabled(boolean bool) {
         maskXMLAttributes = bool;
+        publish();
+    }
+
+    /**
+     * Return the cache of masked values used by {@link #apply(String, String)}.
+     * @return The cache of masked values, or null if caching is disabled.
+     */
+    public MaskedValueCache getValueCache() {
+        return snapshot().getValueCache();
+    }
+
+    /**
+     * Set the cache of masked values used by {@link #apply(String, String)}.  The same cache may
+     * be shared by several configurations.  Default: null (no caching).
+     * @param valueCache Cache of masked values, or null to disable caching.
+     */
+    public synchronized void setValueCache(MaskedValueCache valueCache) {
+        this.valueCache = valueCache;
+        publish();
+    }
+
+    /**
+     * Return the metrics the maskers using this configuration report to.
+     * @return The metrics, or null if metrics are disabled.
+     */
+    public MaskingMetrics getMetrics() {
+        return snapshot().getMetrics();
+    }
+
+    /**
+     * Set the metrics the maskers using this configuration report to.  The same metrics may be
+     * shared by several configurations.  Default: null (no metrics).
+     * @param metrics Metrics, or null to disable metrics.
+     */
+    public synchronized void setMetrics(MaskingMetrics metrics) {
+        this.metrics = metrics;
+        publish();
     }
 }
@@ -0,0 +1,292 @@
+package com.jeetatl.datamasking.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>{@code MaskingConfigurationLoader} keeps a {@link MaskingConfiguration} in sync with a
+ * local file.  The file holds rules in the format of {@link MaskingConfiguration}, either
+ * separated by {@code |} or one per line.  Blank lines and lines starting with {@code #} are
+ * ignored.</p>
+ *
+ * <pre>
+ * # card data
+ * cardNumber:~7-12
+ * cvv:+100%
+ * </pre>
+ *
+ * <p>After {@link #start()} the file's directory is watched with a {@link WatchService}.
+ * Changes are debounced, then the file is read, validated and compiled on a background thread
+ * and published by swapping the configuration snapshot atomically.  Masking calls never wait
+ * for a reload.  A file that cannot be read or contains a malformed rule is rejected and the
+ * rules already in use are kept; see {@link #getFailedReloadCount()} and {@link #getLastError()}.</p>
+ *
+ * @since 0.4.0
+ */
+public class MaskingConfigurationLoader implements Closeable {
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    private final Path file;
+    private final MaskingConfiguration config;
+    private final ScheduledExecutorService executor;
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private ScheduledFuture<?> pendingReload;
+    private long pendingSince;
+
+    private final AtomicLong reloadCount = new AtomicLong();
+    private final AtomicLong failedReloadCount = new AtomicLong();
+    private final AtomicLong lastCompileNanos = new AtomicLong();
+    private final AtomicLong lastReloadLatencyNanos = new AtomicLong();
+    private volatile Exception lastError;
+
+    /**
+     * Constructs a loader that keeps {@code config} in sync with {@code file}.  Nothing is read
+     * until {@link #load()} or {@link #start()} is called.
+     * @param file File holding the masking rules.
+     * @param config Configuration to publish the rules to.
+     */
+    public MaskingConfigurationLoader(Path file, MaskingConfiguration config) {
+        this.file = file.toAbsolutePath();
+        this.config = config;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "masking-config-reload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Reads, validates and publishes the file on the calling thread.
+     * @throws IOException If the file cannot be read.
+     * @throws MaskingRuleException If the file contains a malformed rule.  The configuration is
+     *                              left unchanged.
+     */
+    public void load() throws IOException {
+        long start = System.nanoTime();
+        config.setValidConfigString(read(file));
+        lastCompileNanos.set(System.nanoTime() - start);
+        reloadCount.incrementAndGet();
+    }
+
+    /**
+     * Loads the file and starts watching it for changes.
+     * @throws IOException If the file cannot be read or watched.
+     * @throws MaskingRuleException If the file contains a malformed rule.
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        load();
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "masking-config-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Stops watching the file.  The configuration keeps the rules loaded last.
+     * @throws IOException If the watch service cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        executor.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * A helper method that waits for changes to the file and schedules debounced reloads until
+     * the watch service is closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || (context instanceof Path && file.getFileName().equals(context))) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    scheduleReload();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // close() was called.
+        }
+    }
+
+    /**
+     * A helper method that (re)schedules a reload {@code debounceMillis} after the latest change,
+     * so that a burst of writes results in a single reload.
+     */
+    private synchronized void scheduleReload() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (pendingReload == null) {
+            pendingSince = System.nanoTime();
+        } else {
+            pendingReload.cancel(false);
+        }
+        pendingReload = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                reload();
+            }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A helper method run on the background thread that reloads the file, keeping the rules in
+     * use if it cannot be read or validated.
+     */
+    private void reload() {
+        long since;
+        synchronized (this) {
+            since = pendingSince;
+            pendingReload = null;
+        }
+        try {
+            load();
+            lastReloadLatencyNanos.set(System.nanoTime() - since);
+            lastError = null;
+        } catch (IOException | RuntimeException e) {
+            failedReloadCount.incrementAndGet();
+            lastError = e;
+        }
+    }
+
+    /**
+     * A helper method that reads the file and joins its rules into a configuration string.
+     * @param file File holding the masking rules.
+     * @return Configuration string.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            String rule = line.trim();
+            if (rule.isEmpty() || rule.startsWith("#")) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append(rule);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The file holding the masking rules.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The configuration the rules are published to.
+     */
+    public MaskingConfiguration getConfig() {
+        return config;
+    }
+
+    /**
+     * Return the time to wait after the latest change before reloading.
+     * @return Debounce delay in milliseconds.
+     */
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    /**
+     * Set the time to wait after the latest change before reloading.  Default: 200.
+     * @param debounceMillis Debounce delay in milliseconds.
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Returns the number of times rules were published, including the initial load.
+     * @return Number of successful loads.
+     */
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * Returns the number of reloads that were rejected.
+     * @return Number of failed reloads.
+     */
+    public long getFailedReloadCount() {
+        return failedReloadCount.get();
+    }
+
+    /**
+     * Returns the time the last successful load took to read, validate, compile and publish
+     * the rules.
+     * @return Duration in nanoseconds.
+     */
+    public long getLastCompileNanos() {
+        return lastCompileNanos.get();
+    }
+
+    /**
+     * Returns the time from the first change seen by the last successful reload until the new
+     * rules were published, including the debounce delay.
+     * @return Duration in nanoseconds.
+     */
+    public long getLastReloadLatencyNanos() {
+        return lastReloadLatencyNanos.get();
+    }
+
+    /**
+     * Returns the error that rejected the last reload.
+     * @return The error, or null if the last reload succeeded.
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+}
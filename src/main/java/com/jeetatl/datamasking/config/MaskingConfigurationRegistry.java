@@ -0,0 +1,343 @@
+package com.jeetatl.datamasking.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>{@code MaskingConfigurationRegistry} holds the masking rules of many tenants and compiles
+ * them on demand.  Each tenant is registered with its configuration string; the configuration
+ * is only compiled the first time {@link #get(String)} is called for the tenant, and is kept
+ * while it is used.  When the estimated memory of the compiled configurations goes over the
+ * budget, configurations that were not used since the last sweep are evicted and compiled again
+ * the next time they are needed.</p>
+ *
+ * <p>Tenants registered with the same rules share one compiled configuration, and the compiled
+ * settings of rules are canonical across all configurations (see
+ * {@link com.jeetatl.datamasking.CompiledMaskingSetting}), so rules common to many tenants are
+ * held once.  Maskers are cheap to create for the configuration returned by
+ * {@link #get(String)}.  The returned configurations are shared, so they are read-only:
+ * their setters throw {@link UnsupportedOperationException}.</p>
+ *
+ * <pre>
+ * registry.register("tenant1", "cardNumber:~7-12|cvv:+100%");
+ * String masked = new JsonPayloadMasker(registry.get("tenant1")).getMasked(payload);
+ * </pre>
+ *
+ * <p>{@link #get(String)} is two hash lookups and a volatile read when the configuration is
+ * resident, so it can be called for every request.</p>
+ *
+ * @since 0.4.0
+ */
+public class MaskingConfigurationRegistry {
+    private final long maxBytes;
+    private final ConcurrentHashMap<String, Spec> tenants = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Spec, Entry> resident = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final AtomicLong compileCount = new AtomicLong();
+    private final AtomicLong totalCompileNanos = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructs an empty registry.
+     * @param maxBytes Approximate number of bytes the compiled configurations may use.  The
+     *                 configuration being returned is never evicted, so a single configuration
+     *                 larger than the budget is still served.
+     * @throws IllegalArgumentException If {@code maxBytes} is not positive.
+     */
+    public MaskingConfigurationRegistry(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Registers or replaces the rules of a tenant.  Fields that are not configured are not
+     * masked.
+     * @param tenantId Tenant identifier.
+     * @param configString A string containing the fields and their masking configuration.
+     * @throws MaskingRuleException If a rule is malformed.  The tenant's rules are unchanged.
+     */
+    public void register(String tenantId, String configString) {
+        register(tenantId, configString, null);
+    }
+
+    /**
+     * Registers or replaces the rules of a tenant.  The new rules are compiled the next time
+     * the tenant's configuration is requested.
+     * @param tenantId Tenant identifier.
+     * @param configString A string containing the fields and their masking configuration.
+     * @param defaultMasking A string containing the masking setting for fields that are not
+     *                       configured, or null to leave them unmasked.
+     * @throws MaskingRuleException If a rule is malformed.  The tenant's rules are unchanged.
+     */
+    public void register(String tenantId, String configString, String defaultMasking) {
+        MaskingRuleCompiler.compile(configString, true);
+        tenants.put(tenantId, new Spec(configString, defaultMasking));
+    }
+
+    /**
+     * Removes a tenant.  Its compiled configuration is released once no other tenant uses it
+     * and it is evicted.
+     * @param tenantId Tenant identifier.
+     * @return true if the tenant was registered.
+     */
+    public boolean unregister(String tenantId) {
+        return tenants.remove(tenantId) != null;
+    }
+
+    /**
+     * Returns true if a tenant is registered.
+     * @param tenantId Tenant identifier.
+     * @return true if the tenant is registered.
+     */
+    public boolean isRegistered(String tenantId) {
+        return tenants.containsKey(tenantId);
+    }
+
+    /**
+     * Returns the configuration of a tenant, compiling it if it is not resident.
+     * @param tenantId Tenant identifier.
+     * @return The tenant's configuration, read-only, or null if the tenant is not registered.
+     */
+    public MaskingConfiguration get(String tenantId) {
+        Spec spec = tenants.get(tenantId);
+        if (spec == null) {
+            return null;
+        }
+        Entry entry = resident.get(spec);
+        MaskingConfiguration config = entry == null ? null : entry.config;
+        if (config == null) {
+            return load(spec);
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return config;
+    }
+
+    /**
+     * A helper method that compiles the configuration of a spec, unless another thread is
+     * already doing so, and then evicts configurations if the budget is exceeded.
+     * @param spec Rules of the tenant.
+     * @return Compiled configuration.
+     */
+    private MaskingConfiguration load(Spec spec) {
+        while (true) {
+            Entry entry = resident.get(spec);
+            if (entry == null) {
+                Entry created = new Entry(spec);
+                entry = resident.putIfAbsent(spec, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            MaskingConfiguration config;
+            boolean compiled = false;
+            synchronized (entry) {
+                if (entry.removed) {
+                    continue;
+                }
+                config = entry.config;
+                if (config == null) {
+                    long start = System.nanoTime();
+                    config = spec.defaultMasking == null ? new ReadOnlyMaskingConfiguration(spec.configString)
+                            : new ReadOnlyMaskingConfiguration(spec.configString, spec.defaultMasking);
+                    entry.compileNanos = System.nanoTime() - start;
+                    entry.bytes = config.getEstimatedBytes();
+                    entry.config = config;
+                    residentBytes.addAndGet(entry.bytes);
+                    compileCount.incrementAndGet();
+                    totalCompileNanos.addAndGet(entry.compileNanos);
+                    compiled = true;
+                }
+            }
+            entry.referenced = true;
+            if (compiled) {
+                evict(entry);
+            }
+            return config;
+        }
+    }
+
+    /**
+     * A helper method that evicts resident configurations until the budget is met, giving
+     * configurations used since the previous sweep a second chance.
+     * @param keep Entry that must not be evicted.
+     */
+    private void evict(Entry keep) {
+        if (residentBytes.get() <= maxBytes) {
+            return;
+        }
+        synchronized (evictionLock) {
+            for (int pass = 0; pass < 2; pass++) {
+                for (Entry entry : resident.values()) {
+                    if (residentBytes.get() <= maxBytes) {
+                        return;
+                    }
+                    if (entry == keep) {
+                        continue;
+                    }
+                    if (entry.referenced) {
+                        entry.referenced = false;
+                        continue;
+                    }
+                    remove(entry);
+                }
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        synchronized (entry) {
+            if (!entry.removed && resident.remove(entry.spec, entry)) {
+                entry.removed = true;
+                if (entry.config != null) {
+                    residentBytes.addAndGet(-entry.bytes);
+                    evictionCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts every compiled configuration.  Tenants stay registered.
+     */
+    public void clear() {
+        for (Entry entry : resident.values()) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Returns true if the configuration of a tenant is compiled and resident.
+     * @param tenantId Tenant identifier.
+     * @return true if {@link #get(String)} would not compile.
+     */
+    public boolean isResident(String tenantId) {
+        Entry entry = entryOf(tenantId);
+        return entry != null && entry.config != null;
+    }
+
+    /**
+     * Returns the estimated memory used by the configuration of a tenant.  Tenants with the
+     * same rules share a configuration and report the same size.
+     * @param tenantId Tenant identifier.
+     * @return Estimated size in bytes, or 0 if the configuration is not resident.
+     */
+    public long getEstimatedBytes(String tenantId) {
+        Entry entry = entryOf(tenantId);
+        return entry == null || entry.config == null ? 0 : entry.bytes;
+    }
+
+    /**
+     * Returns how long the resident configuration of a tenant took to compile.
+     * @param tenantId Tenant identifier.
+     * @return Duration in nanoseconds, or 0 if the configuration is not resident.
+     */
+    public long getCompileNanos(String tenantId) {
+        Entry entry = entryOf(tenantId);
+        return entry == null || entry.config == null ? 0 : entry.compileNanos;
+    }
+
+    private Entry entryOf(String tenantId) {
+        Spec spec = tenants.get(tenantId);
+        return spec == null ? null : resident.get(spec);
+    }
+
+    /**
+     * @return The number of registered tenants.
+     */
+    public int getTenantCount() {
+        return tenants.size();
+    }
+
+    /**
+     * @return The number of compiled configurations in memory.
+     */
+    public int getResidentCount() {
+        return resident.size();
+    }
+
+    /**
+     * @return The estimated memory used by the compiled configurations, in bytes.
+     */
+    public long getEstimatedBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * @return The memory budget, in bytes.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return The number of configurations compiled, including recompiles after eviction.
+     */
+    public long getCompileCount() {
+        return compileCount.get();
+    }
+
+    /**
+     * @return The total time spent compiling configurations, in nanoseconds.
+     */
+    public long getTotalCompileNanos() {
+        return totalCompileNanos.get();
+    }
+
+    /**
+     * @return The number of configurations evicted to stay within the budget.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private static final class Spec {
+        private final String configString;
+        private final String defaultMasking;
+        private final int hash;
+
+        private Spec(String configString, String defaultMasking) {
+            this.configString = configString;
+            this.defaultMasking = defaultMasking;
+            this.hash = 31 * (configString == null ? 0 : configString.hashCode())
+                    + (defaultMasking == null ? 0 : defaultMasking.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Spec)) {
+                return false;
+            }
+            Spec other = (Spec) o;
+            return hash == other.hash && equal(configString, other.configString)
+                    && equal(defaultMasking, other.defaultMasking);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private static final class Entry {
+        private final Spec spec;
+        private volatile MaskingConfiguration config;
+        private volatile boolean referenced;
+        private long bytes;
+        private long compileNanos;
+        private boolean removed;
+
+        private Entry(Spec spec) {
+            this.spec = spec;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.MaskingSetting;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>{@code MaskingRuleCompiler} parses configuration strings in a single pass, without regular
+ * expressions or intermediate strings other than the field names.  The grammar is:</p>
+ *
+ * <pre>
+ * config  = [rule] {"|" [rule]}
+ * rule    = name ":" setting
+ * name    = (letter | digit | "_" | "*" | "?") {letter | digit | "_" | "*" | "?"}
+ *         | "/" regex "/" ["i"]
+ * setting = item {"," item} [","]
+ * item    = ("+" | "-") number ["%"]
+ *         | "~" number ["-" number]
+ * </pre>
+ *
+ * <p>Whitespace is allowed around rules.  In strict mode the first malformed rule throws a
+ * {@link MaskingRuleException} giving its position.  Otherwise every {@code name:items}
+ * fragment of a malformed rule is kept, up to its first malformed item, as the regular
+ * expression of earlier versions found them: {@code a:+2;b:-2} configures both fields,
+ * {@code a:+5x} masks {@code +5} and {@code a:+1~10} masks both ends.  Lenient parsing never masks less than those versions did.</p>
+ *
+ * <p>Every field gets its own {@link MaskingSetting}; fields with equal settings share their
+ * canonical {@link com.jeetatl.datamasking.CompiledMaskingSetting} instead.</p>
+ *
+ * @since 0.4.0
+ */
+final class MaskingRuleCompiler {
+    private final String config;
+    private final int length;
+    private int pos;
+
+    private MaskingRuleCompiler(String config) {
+        this.config = config;
+        this.length = config.length();
+    }
+
+    /**
+     * Parses a configuration string.
+     * @param configString A string containing the fields and their masking configuration.
+     * @param strict true to throw on the first malformed rule, false to keep the valid
+     *               fragments of malformed rules.
+     * @return Settings of the fields and field patterns, in configuration order.  A field
+     *         configured more than once keeps its first position and its last setting.
+     * @throws MaskingRuleException In strict mode, if a rule is malformed.
+     */
+    static Map<String, MaskingSetting> compile(String configString, boolean strict) {
+        Map<String, MaskingSetting> fields = new LinkedHashMap<>();
+        if (configString == null) {
+            return fields;
+        }
+        MaskingRuleCompiler compiler = new MaskingRuleCompiler(configString);
+        while (compiler.skipSeparators()) {
+            int ruleStart = compiler.pos;
+            try {
+                compiler.rule(fields, ruleStart);
+            } catch (MaskingRuleException e) {
+                if (strict) {
+                    throw e;
+                }
+                int next = configString.indexOf('|', compiler.pos);
+                int end = next < 0 ? compiler.length : next;
+                compiler.salvage(fields, ruleStart, end);
+                compiler.pos = end;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Parses a masking setting such as {@code +2,-30%,~5-7}.  Malformed settings keep their
+     * items up to the first malformed one, so {@code +5x} masks {@code +5}.
+     * @param setting A string containing the masking setting.
+     * @return Parsed setting.
+     */
+    static MaskingSetting compileSetting(String setting) {
+        MaskingSetting ms = new MaskingSetting();
+        if (setting == null || setting.isEmpty()) {
+            return ms;
+        }
+        MaskingRuleCompiler compiler = new MaskingRuleCompiler(setting);
+        compiler.salvageItems(ms, compiler.length, 0);
+        return ms;
+    }
+
+    /**
+     * A helper method that skips whitespace and rule separators.
+     * @return true if there is another rule.
+     */
+    private boolean skipSeparators() {
+        while (pos < length && (config.charAt(pos) == '|' || Character.isWhitespace(config.charAt(pos)))) {
+            pos++;
+        }
+        return pos < length;
+    }
+
+    /**
+     * A helper method that parses one rule and adds it to {@code fields}.
+     * @param fields Settings parsed so far.
+     * @param ruleStart Position of the rule.
+     */
+    private void rule(Map<String, MaskingSetting> fields, int ruleStart) {
+        String name = name(ruleStart);
+        expect(':', "expected ':'", ruleStart);
+        MaskingSetting ms = new MaskingSetting();
+        setting(ms, ruleStart);
+        while (pos < length && Character.isWhitespace(config.charAt(pos))) {
+            pos++;
+        }
+        if (pos < length && config.charAt(pos) != '|') {
+            throw error("unexpected '" + config.charAt(pos) + "'", ruleStart);
+        }
+        if (FieldPatternMatcher.isPattern(name)) {
+            try {
+                FieldPatternMatcher.validate(name);
+            } catch (IllegalArgumentException e) {
+                throw new MaskingRuleException(e.getMessage(), ruleText(ruleStart), ruleStart, ruleStart);
+            }
+        }
+        fields.put(name, ms);
+    }
+
+    /**
+     * A helper method that keeps the valid fragments of a malformed rule: every run of name
+     * characters followed by {@code ':'} and at least one well-formed item, with the items up to
+     * the first malformed one.
+     * @param fields Settings parsed so far.
+     * @param start Position of the malformed rule.
+     * @param end Position of the separator after it, or the end of the configuration.
+     */
+    private void salvage(Map<String, MaskingSetting> fields, int start, int end) {
+        int i = start;
+        while (i < end) {
+            if (!isNameChar(config.charAt(i))) {
+                i++;
+                continue;
+            }
+            int nameStart = i;
+            while (i < end && isNameChar(config.charAt(i))) {
+                i++;
+            }
+            if (i >= end || config.charAt(i) != ':') {
+                continue;
+            }
+            String name = config.substring(nameStart, i);
+            pos = i + 1;
+            int settingStart = pos;
+            MaskingSetting ms = new MaskingSetting();
+            int settingEnd = salvageItems(ms, end, start);
+            if (settingEnd > settingStart && isValidName(name)) {
+                fields.put(name, ms);
+            }
+            i = Math.max(i + 1, settingEnd);
+        }
+    }
+
+    /**
+     * A helper method that parses the items of a malformed setting into {@code ms}, up to the
+     * first malformed one.  As in earlier versions, items need not be separated by commas, but
+     * {@code +} and {@code -} items only apply at the start of the setting or after a comma.
+     * @param ms Setting to add the items to.
+     * @param end Position to stop at.
+     * @param ruleStart Position of the rule.
+     * @return Position after the last well-formed item, or the current position if there is
+     *         none.
+     */
+    private int salvageItems(MaskingSetting ms, int end, int ruleStart) {
+        int settingEnd = pos;
+        boolean applies = true;
+        while (pos < end && isItemStart(config.charAt(pos))) {
+            boolean inner = config.charAt(pos) == '~';
+            try {
+                item(applies || inner ? ms : new MaskingSetting(), ruleStart);
+            } catch (MaskingRuleException e) {
+                break;
+            }
+            settingEnd = pos;
+            applies = pos < end && config.charAt(pos) == ',';
+            if (applies) {
+                pos++;
+            }
+        }
+        return settingEnd;
+    }
+
+    /**
+     * A helper method that checks a salvaged name: plain names are always valid, field patterns
+     * must compile.
+     * @param name Field name or pattern.
+     * @return true if the name can be configured.
+     */
+    private static boolean isValidName(String name) {
+        if (!FieldPatternMatcher.isPattern(name)) {
+            return true;
+        }
+        try {
+            FieldPatternMatcher.validate(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A helper method that parses a field name or field pattern.
+     * @param ruleStart Position of the rule.
+     * @return The name, as written.
+     */
+    private String name(int ruleStart) {
+        int start = pos;
+        if (config.charAt(pos) == '/') {
+            pos++;
+            while (pos < length && config.charAt(pos) != '/') {
+                pos += config.charAt(pos) == '\\' ? 2 : 1;
+            }
+            if (pos >= length || pos == start + 1) {
+                pos = Math.min(pos, length);
+                throw error(pos == start + 1 ? "empty regular expression" : "unterminated regular expression", ruleStart);
+            }
+            pos++;
+            if (pos < length && config.charAt(pos) == 'i') {
+                pos++;
+            }
+        } else {
+            while (pos < length && isNameChar(config.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                throw error("expected a field name", ruleStart);
+            }
+        }
+        return config.substring(start, pos);
+    }
+
+    /**
+     * A helper method that parses comma separated masking items into {@code ms}.
+     * @param ms Setting to add the items to.
+     * @param ruleStart Position of the rule.
+     */
+    private void setting(MaskingSetting ms, int ruleStart) {
+        do {
+            item(ms, ruleStart);
+            if (pos >= length || config.charAt(pos) != ',') {
+                break;
+            }
+            pos++;
+        } while (pos < length && isItemStart(config.charAt(pos)));
+    }
+
+    /**
+     * A helper method that parses one masking item into {@code ms}.  Nothing is added if the
+     * item is malformed.
+     * @param ms Setting to add the item to.
+     * @param ruleStart Position of the rule.
+     */
+    private void item(MaskingSetting ms, int ruleStart) {
+        if (pos >= length) {
+            throw error("expected '+', '-' or '~'", ruleStart);
+        }
+        char symbol = config.charAt(pos);
+        if (symbol == '+' || symbol == '-') {
+            pos++;
+            int magnitude = number(ruleStart);
+            boolean isPercentage = pos < length && config.charAt(pos) == '%';
+            if (isPercentage) {
+                pos++;
+            }
+            if (symbol == '+') {
+                if (isPercentage) {
+                    ms.setPercentMaskLeft(magnitude);
+                } else {
+                    ms.setCharactersMaskLeft(magnitude);
+                }
+            } else {
+                if (isPercentage) {
+                    ms.setPercentMaskRight(magnitude);
+                } else {
+                    ms.setCharactersMaskRight(magnitude);
+                }
+            }
+        } else if (symbol == '~') {
+            pos++;
+            int start = number(ruleStart);
+            int end = start;
+            if (pos + 1 < length && config.charAt(pos) == '-' && isDigit(config.charAt(pos + 1))) {
+                pos++;
+                end = number(ruleStart);
+            }
+            ms.addInnerMasking(start, end);
+        } else {
+            throw error("expected '+', '-' or '~'", ruleStart);
+        }
+    }
+
+    /**
+     * A helper method that parses a non-negative decimal number.
+     * @param ruleStart Position of the rule.
+     * @return The number.
+     */
+    private int number(int ruleStart) {
+        int start = pos;
+        long value = 0;
+        while (pos < length) {
+            char c = config.charAt(pos);
+            if (!isDigit(c)) {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                pos = start;
+                throw error("number too large", ruleStart);
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw error("expected a digit", ruleStart);
+        }
+        return (int) value;
+    }
+
+    private void expect(char c, String description, int ruleStart) {
+        if (pos >= length || config.charAt(pos) != c) {
+            throw error(description, ruleStart);
+        }
+        pos++;
+    }
+
+    private MaskingRuleException error(String description, int ruleStart) {
+        return new MaskingRuleException(description, ruleText(ruleStart), ruleStart, pos);
+    }
+
+    /**
+     * A helper method that returns the text of a rule for error messages: from its start to
+     * the next separator after the current position.
+     * @param ruleStart Position of the rule.
+     * @return Text of the rule.
+     */
+    private String ruleText(int ruleStart) {
+        int end = config.indexOf('|', Math.max(pos, ruleStart));
+        return config.substring(ruleStart, end < 0 ? length : end).trim();
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '*' || c == '?';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isItemStart(char c) {
+        return c == '+' || c == '-' || c == '~';
+    }
+}
@@ -0,0 +1,61 @@
+package com.jeetatl.datamasking.config;
+
+/**
+ * <p>{@code MaskingRuleException} is thrown when a configuration string contains a malformed
+ * rule.  Besides the message, it gives the rule and the positions of the rule and of the error
+ * in the configuration string.</p>
+ *
+ * @since 0.4.0
+ */
+public class MaskingRuleException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String description;
+    private final String rule;
+    private final int ruleIndex;
+    private final int index;
+
+    /**
+     * Constructs the exception.
+     * @param description Description of the error.
+     * @param rule Text of the malformed rule.
+     * @param ruleIndex Position of the rule in the configuration string.
+     * @param index Position of the error in the configuration string.
+     */
+    public MaskingRuleException(String description, String rule, int ruleIndex, int index) {
+        super("Invalid masking rule at position " + ruleIndex + ": " + rule + " (" + description
+                + " at position " + index + ")");
+        this.description = description;
+        this.rule = rule;
+        this.ruleIndex = ruleIndex;
+        this.index = index;
+    }
+
+    /**
+     * @return The description of the error.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return The text of the malformed rule.
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * @return The position of the rule in the configuration string.
+     */
+    public int getRuleIndex() {
+        return ruleIndex;
+    }
+
+    /**
+     * @return The position of the error in the configuration string.
+     */
+    public int getIndex() {
+        return index;
+    }
+}
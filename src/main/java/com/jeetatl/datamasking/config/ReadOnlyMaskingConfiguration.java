@@ -0,0 +1,61 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.MaskedValueCache;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+
+/**
+ * <p>{@code ReadOnlyMaskingConfiguration} is a {@link MaskingConfiguration} whose setters throw
+ * {@link UnsupportedOperationException}, for configurations that are shared, such as the ones
+ * {@link MaskingConfigurationRegistry} hands to every tenant with the same rules.</p>
+ *
+ * @since 0.4.0
+ */
+final class ReadOnlyMaskingConfiguration extends MaskingConfiguration {
+
+    /**
+     * Constructs a read-only configuration from a configuration string.
+     * @param configString A string containing the fields and their masking configuration.
+     */
+    ReadOnlyMaskingConfiguration(String configString) {
+        super(configString);
+    }
+
+    /**
+     * Constructs a read-only configuration from a configuration string and default masking.
+     * @param configString A string containing the fields and their masking configuration.
+     * @param defaultMasking A string containing the masking setting for fields that are not
+     *                       configured.
+     */
+    ReadOnlyMaskingConfiguration(String configString, String defaultMasking) {
+        super(configString, defaultMasking);
+    }
+
+    @Override
+    public void setConfigString(String configString) {
+        throw readOnly();
+    }
+
+    @Override
+    void setValidConfigString(String configString) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAttributeMaskEnabled(boolean bool) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setValueCache(MaskedValueCache valueCache) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setMetrics(MaskingMetrics metrics) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Shared masking configurations cannot be modified");
+    }
+}
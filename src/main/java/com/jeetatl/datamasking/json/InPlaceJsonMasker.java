@@ -0,0 +1,307 @@
+package com.jeetatl.datamasking.json;
+
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.MaskingPlan;
+import com.jeetatl.datamasking.MaskingSetting;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>{@code InPlaceJsonMasker} scans a UTF-8 encoded json payload once and overwrites the bytes
+ * of masked string values with the masking character.  Nothing is parsed into objects and no
+ * output buffer is created, so formatting and key order are kept exactly.</p>
+ *
+ * <p>Masking positions count characters the same way {@link MaskingSetting#apply(String)} does
+ * for values without escapes or supplementary characters.  Every byte of a masked character is
+ * overwritten, so a masked multi-byte character or escape sequence shows up as several masking
+ * characters and the payload length never changes.  Numbers, booleans and nulls are left as
+ * they are because they cannot be masked without changing length or producing invalid json.</p>
+ *
+ * <p>The payload is not validated.  Scanning stops at the first structural error; values masked
+ * before that point stay masked.</p>
+ */
+class InPlaceJsonMasker {
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+
+    private final CompiledMaskingConfiguration config;
+    private final ByteBuffer buffer;
+    private final int limit;
+
+    private byte[] containers = new byte[16];
+    private CompiledMaskingSetting[] arraySettings = new CompiledMaskingSetting[16];
+    private int depth = 0;
+    private char[] keyChars = new char[32];
+    private int maskedValues = 0;
+
+    /**
+     * Constructs a masker for the bytes between the buffer's position and limit.
+     * @param config Configuration snapshot to apply.
+     * @param buffer Buffer holding the payload.  Its position and limit are not changed.
+     */
+    InPlaceJsonMasker(CompiledMaskingConfiguration config, ByteBuffer buffer) {
+        this.config = config;
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Scans the payload and masks it in place.
+     * @return Number of string values that were masked.
+     */
+    int mask() {
+        CompiledMaskingSetting valueSetting = config.getMaskingSetting(null);
+        boolean expectKey = false;
+        int i = buffer.position();
+
+        while (i < limit) {
+            byte b = buffer.get(i);
+            switch (b) {
+                case ' ': case '\t': case '\n': case '\r': case ':':
+                    i++;
+                    break;
+                case '{':
+                    push(OBJECT, null);
+                    expectKey = true;
+                    i++;
+                    break;
+                case '[':
+                    push(ARRAY, valueSetting);
+                    i++;
+                    break;
+                case '}':
+                case ']':
+                    if (depth == 0) {
+                        return maskedValues;
+                    }
+                    depth--;
+                    valueSetting = depth > 0 && containers[depth - 1] == ARRAY ? arraySettings[depth - 1] : null;
+                    expectKey = false;
+                    i++;
+                    break;
+                case ',':
+                    if (depth > 0 && containers[depth - 1] == OBJECT) {
+                        expectKey = true;
+                    }
+                    i++;
+                    break;
+                case '"':
+                    int end = findStringEnd(i + 1);
+                    if (end < 0) {
+                        return maskedValues;
+                    }
+                    if (expectKey) {
+                        valueSetting = findSetting(i + 1, end);
+                        expectKey = false;
+                    } else if (valueSetting != null && !valueSetting.isEmpty()) {
+                        maskString(valueSetting, i + 1, end);
+                        maskedValues++;
+                    }
+                    i = end + 1;
+                    break;
+                default:
+                    i = skipScalar(i);
+                    break;
+            }
+        }
+
+        return maskedValues;
+    }
+
+    /**
+     * A helper method that records a new container on the depth stack.
+     * @param type {@link #OBJECT} or {@link #ARRAY}.
+     * @param setting Setting for values of an array; ignored for objects.
+     */
+    private void push(byte type, CompiledMaskingSetting setting) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            arraySettings = Arrays.copyOf(arraySettings, depth * 2);
+        }
+        containers[depth] = type;
+        arraySettings[depth] = setting;
+        depth++;
+    }
+
+    /**
+     * A helper method that returns the index of the closing quote of a string.
+     * @param start Index of the first byte after the opening quote.
+     * @return Index of the closing quote, or -1 if the string is not terminated.
+     */
+    private int findStringEnd(int start) {
+        for (int i = start; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                return i;
+            }
+            if (b == '\\') {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A helper method that returns the index of the first byte after a number, boolean or null.
+     * @param start Index of the first byte of the scalar.
+     * @return Index of the delimiter that follows it.
+     */
+    private int skipScalar(int start) {
+        int i = start;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i == start ? start + 1 : i;
+    }
+
+    /**
+     * A helper method that returns the setting for the key between quotes.  Keys without
+     * escapes or non-ASCII characters are looked up straight from the payload; others are
+     * decoded into a reused buffer first.
+     * @param start Index of the first byte of the key.
+     * @param end Index of the closing quote.
+     * @return Setting of the key, or the default for unknown fields.
+     */
+    private CompiledMaskingSetting findSetting(int start, int end) {
+        boolean plain = true;
+        for (int i = start; i < end && plain; i++) {
+            byte b = buffer.get(i);
+            plain = b >= 0 && b != '\\';
+        }
+        CompiledMaskingSetting ms = plain
+                ? config.findMaskingSetting(buffer, start, end)
+                : config.findMaskingSetting(keyChars, 0, readKey(start, end));
+        return ms == null ? config.getUnknownFieldMasking() : ms;
+    }
+
+    /**
+     * A helper method that decodes a key between quotes into {@code keyChars}.
+     * @param start Index of the first byte of the key.
+     * @param end Index of the closing quote.
+     * @return Number of chars in the decoded key.
+     */
+    private int readKey(int start, int end) {
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            if (n + 2 > keyChars.length) {
+                keyChars = Arrays.copyOf(keyChars, keyChars.length * 2);
+            }
+            int b = buffer.get(i) & 0xFF;
+            if (b == '\\') {
+                char c = (char) (buffer.get(i + 1) & 0xFF);
+                if (c == 'u' && i + 6 <= end) {
+                    keyChars[n++] = decodeHex(i + 2);
+                    i += 6;
+                } else {
+                    keyChars[n++] = unescape(c);
+                    i += 2;
+                }
+            } else if (b < 0x80) {
+                keyChars[n++] = (char) b;
+                i++;
+            } else {
+                int length = sequenceLength(b);
+                int cp = b & (0xFF >> (length + 1));
+                for (int k = 1; k < length && i + k < end; k++) {
+                    cp = (cp << 6) | (buffer.get(i + k) & 0x3F);
+                }
+                if (!Character.isValidCodePoint(cp)) {
+                    cp = 0xFFFD;
+                }
+                n += Character.toChars(cp, keyChars, n);
+                i += length;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * A helper method that overwrites the masked characters of a string value.
+     * @param ms Setting to apply.
+     * @param start Index of the first byte of the value.
+     * @param end Index of the closing quote.
+     */
+    private void maskString(CompiledMaskingSetting ms, int start, int end) {
+        char maskingCharacter = ms.getMaskingCharacter();
+        if (maskingCharacter > 0x7F) {
+            throw new IllegalArgumentException("In-place masking requires an ASCII masking character.");
+        }
+        byte mask = (byte) maskingCharacter;
+
+        int length = 0;
+        for (int i = start; i < end; i += characterLength(i, end)) {
+            length++;
+        }
+
+        MaskingPlan plan = ms.plan(length);
+        int index = 0;
+        for (int i = start; i < end; index++) {
+            int charLength = characterLength(i, end);
+            if (plan.isMasked(index)) {
+                for (int k = 0; k < charLength; k++) {
+                    buffer.put(i + k, mask);
+                }
+            }
+            i += charLength;
+        }
+    }
+
+    /**
+     * A helper method that returns the number of bytes used by the character at an index,
+     * counting an escape sequence as one character.
+     * @param i Index of the first byte of the character.
+     * @param end Index of the closing quote; the result never reaches past it.
+     * @return Number of bytes in the character.
+     */
+    private int characterLength(int i, int end) {
+        int b = buffer.get(i) & 0xFF;
+        int length;
+        if (b == '\\') {
+            length = buffer.get(i + 1) == 'u' ? 6 : 2;
+        } else {
+            length = sequenceLength(b);
+        }
+        return Math.min(length, end - i);
+    }
+
+    private static int sequenceLength(int b) {
+        if (b < 0xC0) {
+            return 1;
+        } else if (b < 0xE0) {
+            return 2;
+        } else if (b < 0xF0) {
+            return 3;
+        }
+        return 4;
+    }
+
+    private static char unescape(char c) {
+        switch (c) {
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            default: return c;
+        }
+    }
+
+    private char decodeHex(int start) {
+        int c = 0;
+        for (int i = start; i < start + 4; i++) {
+            int digit = Character.digit(buffer.get(i), 16);
+            if (digit < 0) {
+                return '\uFFFD';
+            }
+            c = (c << 4) | digit;
+        }
+        return (char) c;
+    }
+}
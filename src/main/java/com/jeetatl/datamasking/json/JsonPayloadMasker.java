@@ -1,8 +1,25 @@
 package com.jeetatl.datamasking.json;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
 import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.metrics.MaskerType;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+import com.jeetatl.datamasking.metrics.MaskingOperation;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -11,10 +28,37 @@ import java.util.Map;
  *
  * The masking is applied to any element name that is currently configured within the
  * {@link MaskingConfiguration}.
+ *
+ * <p>By default the payload is read into a {@code Map} and written back out.  When streaming is
+ * enabled via {@link #setStreamingEnabled(boolean)}, tokens are copied straight from a
+ * {@link JsonParser} to a {@link JsonGenerator} and only the values of masked fields are
+ * rewritten, so memory use is bounded by the nesting depth of the payload rather than its size.
+ * Streaming also keeps unmasked numbers, booleans and nulls as they were instead of turning
+ * them into strings.</p>
+ *
+ * <p>UTF-8 payloads that are headed for a log file can be masked without any reserialization
+ * through {@link #maskInPlace(byte[])} and {@link #maskInPlace(ByteBuffer)}.</p>
+ *
+ * <p>Payloads in which no configured field name occurs are returned untouched without being
+ * parsed; see {@link MaskingConfiguration#mayContainMaskedField(CharSequence)}.  For a field
+ * pattern, the prefilter looks for its longest literal part, such as {@code CardNumber} in
+ * {@code *CardNumber}; a pattern without one, such as a case-insensitive regular expression,
+ * makes every payload be parsed.</p>
  */
 public class JsonPayloadMasker {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+    private static final int MAX_CACHED_CAPACITY = 8192;
+    private static final ThreadLocal<char[]> MASK_BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[256];
+        }
+    };
+
     MaskingConfiguration config = null;
+    boolean streamingEnabled = false;
 
     /**
      *  Constructs a {@code JsonPayloadMasker} with the provided configuration settings.
@@ -33,30 +77,252 @@ public class JsonPayloadMasker {
         if (jsonPayload == null || jsonPayload.isEmpty()) {
             return jsonPayload;
         }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.JSON);
+        long start = sampled ? System.nanoTime() : 0;
+        MaskingOperation op = MaskingOperation.begin(MaskerType.JSON);
+        // Keys spelled with unicode escapes are invisible to the prefilter, so they always take the full path.
+        if (!snapshot.mayContainMaskedField(jsonPayload) && !jsonPayload.contains("\\u")) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.JSON, System.nanoTime() - start, jsonPayload.length());
+            }
+            if (op != null) {
+                op.commit(MaskingOperation.PREFILTER, jsonPayload.length());
+            }
+            return jsonPayload;
+        }
 
-        String maskedStr = "";
-        ObjectMapper mapper = new ObjectMapper();
+        String maskedStr;
         try {
-            Map<String, Object> payloadMap = mapper.readValue(jsonPayload, Map.class);
-            maskMap(payloadMap);
-            maskedStr = mapper.writeValueAsString(payloadMap);
+            if (streamingEnabled) {
+                StringWriter sw = new StringWriter(jsonPayload.length());
+                JsonParser parser = JSON_FACTORY.createParser(jsonPayload);
+                JsonGenerator generator = JSON_FACTORY.createGenerator(sw);
+                maskTokens(snapshot, parser, generator, op);
+                maskedStr = sw.toString();
+            } else {
+                Map<String, Object> payloadMap = MAPPER.readValue(jsonPayload, Map.class);
+                maskMap(snapshot, payloadMap, op);
+                maskedStr = MAPPER.writeValueAsString(payloadMap);
+            }
         } catch (Exception e) {
+            if (metrics != null) {
+                metrics.recordParseFailure(MaskerType.JSON, e);
+            }
             return jsonPayload;
+        } finally {
+            if (op != null) {
+                op.commit(streamingEnabled ? "streaming" : "tree", jsonPayload.length());
+            }
         }
 
+        if (sampled) {
+            metrics.recordMasked(MaskerType.JSON, System.nanoTime() - start, jsonPayload.length(), maskedStr.length());
+        }
         return maskedStr;
     }
 
+    /**
+     * This method streams a json payload from {@code in} to {@code out}, applying the masking
+     * settings as tokens pass through.  It always streams, whether or not
+     * {@link #isStreamingEnabled()} is set.  Neither stream is closed.
+     * @param in Reader positioned at the start of a json payload.
+     * @param out Writer the masked json is written to.
+     * @throws IOException If the payload is not valid json or cannot be read or written.  Any
+     *                     output written before the error is left in {@code out}.
+     */
+    public void getMasked(Reader in, Writer out) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(in);
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out);
+        maskTokens(config.snapshot(), parser, generator, null);
+    }
+
+    /**
+     * This method streams a UTF-8 json payload from {@code in} to {@code out}, applying the
+     * masking settings as tokens pass through.  Neither stream is closed.
+     * @param in InputStream positioned at the start of a json payload.
+     * @param out OutputStream the masked json is written to as UTF-8.
+     * @throws IOException If the payload is not valid json or cannot be read or written.  Any
+     *                     output written before the error is left in {@code out}.
+     */
+    public void getMasked(InputStream in, OutputStream out) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(in);
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out);
+        maskTokens(config.snapshot(), parser, generator, null);
+    }
+
+    /**
+     * This method masks a UTF-8 json payload in place.  The masked characters of configured
+     * string values are overwritten with the masking character and every other byte is left
+     * as it is, so formatting and key order are kept exactly and no output buffer is created.
+     * Numbers, booleans and nulls are never masked by this method.
+     * @param payload Bytes of a UTF-8 json payload; modified in place.
+     * @return Number of string values that were masked.
+     * @throws IllegalArgumentException If a masking character that applies is not ASCII.
+     */
+    public int maskInPlace(byte[] payload) {
+        if (payload == null) {
+            return 0;
+        }
+        return maskInPlace(payload, 0, payload.length);
+    }
+
+    /**
+     * This method masks the UTF-8 json payload held in part of an array in place.
+     * @param payload Array holding the payload; modified in place.
+     * @param offset Index of the first byte of the payload.
+     * @param length Number of bytes in the payload.
+     * @return Number of string values that were masked.
+     * @throws IllegalArgumentException If a masking character that applies is not ASCII.
+     * @see #maskInPlace(byte[])
+     */
+    public int maskInPlace(byte[] payload, int offset, int length) {
+        if (payload == null || length == 0) {
+            return 0;
+        }
+        return maskInPlace(ByteBuffer.wrap(payload, offset, length));
+    }
+
+    /**
+     * This method masks the UTF-8 json payload between the buffer's position and limit in place.
+     * Heap and direct buffers are both supported.  The buffer's position and limit are not changed.
+     * @param payload Buffer holding the payload; modified in place.
+     * @return Number of string values that were masked.
+     * @throws IllegalArgumentException If a masking character that applies is not ASCII.
+     * @see #maskInPlace(byte[])
+     */
+    public int maskInPlace(ByteBuffer payload) {
+        if (payload == null || !payload.hasRemaining()) {
+            return 0;
+        }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.JSON);
+        long start = sampled ? System.nanoTime() : 0;
+        if (!snapshot.mayContainMaskedField(payload) && !containsUnicodeEscape(payload)) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.JSON, System.nanoTime() - start, payload.remaining());
+            }
+            return 0;
+        }
+        int masked = new InPlaceJsonMasker(snapshot, payload).mask();
+        if (sampled) {
+            metrics.recordMasked(MaskerType.JSON, System.nanoTime() - start, payload.remaining(), payload.remaining());
+        }
+        return masked;
+    }
+
+    /**
+     * A helper method that returns true if the bytes between the buffer's position and limit
+     * contain a unicode escape sequence.
+     * @param buffer Buffer holding the payload.
+     * @return true if an escape was found.
+     */
+    private static boolean containsUnicodeEscape(ByteBuffer buffer) {
+        for (int i = buffer.position(), end = buffer.limit() - 1; i < end; i++) {
+            if (buffer.get(i) == '\\' && buffer.get(i + 1) == 'u') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A helper method that copies every token from {@code parser} to {@code generator} and
+     * replaces scalar values of masked fields with their masked string.  Values inside arrays
+     * are masked using the name of the field that holds the array.
+     * @param snapshot Configuration snapshot to apply.
+     * @param parser Parser positioned before the first token.
+     * @param generator Generator receiving the masked tokens.
+     * @param op Flight Recorder operation counting the values, or null.
+     * @throws IOException If parsing or writing fails.
+     */
+    private void maskTokens(CompiledMaskingConfiguration snapshot, JsonParser parser, JsonGenerator generator,
+                            MaskingOperation op) throws IOException {
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                CompiledMaskingSetting ms = snapshot.getMaskingSetting(getFieldName(parser));
+                if (!ms.isEmpty()) {
+                    if (op != null) {
+                        op.countMaskedValue();
+                    }
+                    int length = parser.getTextLength();
+                    char[] buffer = maskBuffer(length);
+                    ms.apply(parser.getTextCharacters(), parser.getTextOffset(), length, buffer, 0);
+                    generator.writeString(buffer, 0, length);
+                    continue;
+                }
+                if (op != null) {
+                    op.countField();
+                }
+                if (token.isNumeric()) {
+                    generator.writeRawValue(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    continue;
+                }
+            }
+            generator.copyCurrentEvent(parser);
+        }
+        generator.flush();
+    }
+
+    /**
+     * A helper method that returns this thread's buffer for masked values, grown to hold at
+     * least {@code length} characters.  Buffers larger than {@code MAX_CACHED_CAPACITY} are not
+     * kept.
+     * @param length Number of characters needed.
+     * @return Buffer with room for {@code length} characters.
+     */
+    static char[] maskBuffer(int length) {
+        char[] buffer = MASK_BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            if (buffer.length <= MAX_CACHED_CAPACITY) {
+                MASK_BUFFER.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * A helper method that returns the name of the field holding the current value, looking
+     * through any enclosing arrays.
+     * @param parser Parser positioned on a value token.
+     * @return Name of the enclosing field, or null for values outside of any object.
+     */
+    private String getFieldName(JsonParser parser) {
+        JsonStreamContext context = parser.getParsingContext();
+        while (context != null && context.inArray()) {
+            context = context.getParent();
+        }
+        return context == null ? null : context.getCurrentName();
+    }
+
     /**
      * A helper method to recursively search for all elements and to apply masking settings.
+     * @param snapshot Configuration snapshot to apply.
      * @param map The map representation of json payload.
+     * @param op Flight Recorder operation counting the values, or null.
      */
-    private void maskMap(Map<String, Object> map) {
+    private void maskMap(CompiledMaskingConfiguration snapshot, Map<String, Object> map, MaskingOperation op) {
         for (String key : map.keySet()) {
             if (map.get(key) instanceof Map) {
-                maskMap((Map) map.get(key));
+                maskMap(snapshot, (Map) map.get(key), op);
             } else {
-                map.put(key, config.apply(key, "" + map.get(key)));
+                String value = "" + map.get(key);
+                String masked = snapshot.apply(key, value);
+                if (op != null) {
+                    if (masked.equals(value)) {
+                        op.countField();
+                    } else {
+                        op.countMaskedValue();
+                    }
+                }
+                map.put(key, masked);
             }
         }
     }
@@ -76,4 +342,21 @@ public class JsonPayloadMasker {
         this.config = config;
     }
 
+    /**
+     * Return whether {@link #getMasked(String)} uses the streaming token copier.
+     * @return true if streaming is enabled.
+     */
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    /**
+     * Set whether {@link #getMasked(String)} uses the streaming token copier instead of the
+     * {@code Map} round-trip.  Default: false.
+     * @param streamingEnabled true to enable streaming.
+     */
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
 }
@@ -0,0 +1,435 @@
+package com.jeetatl.datamasking.json;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
+import com.jeetatl.datamasking.metrics.MaskingOperation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>{@code MaskingGenerator} is the {@link JsonGenerator} that {@link MaskingModule} hands to
+ * the serializers of masked values.  Every scalar written through it, raw values included, is
+ * masked and written as a string instead; nulls, and the structure of objects and arrays, pass
+ * through.</p>
+ *
+ * <p>A generator either masks with a fixed setting, for the value of a bean property, or, for
+ * maps, any-getter entries and {@code JsonNode} trees, looks up the setting of every key written
+ * through it, at any depth; when a nested object or array ends, the setting of the key holding
+ * it applies again.  Serializers installed by the module always unwrap the generator they are
+ * given with {@link #unwrap(JsonGenerator)}, so the beans and maps nested in a masked value are
+ * masked by their own property names and keys.</p>
+ *
+ * <p>Given a {@link MaskingOperation}, a generator counts every non-null scalar written through
+ * it as a field, and the masked ones as masked values.</p>
+ *
+ * @since 0.4.0
+ */
+final class MaskingGenerator extends JsonGeneratorDelegate {
+    private final CompiledMaskingConfiguration snapshot;
+    private final MaskingOperation op;
+    private CompiledMaskingSetting setting;
+    private CompiledMaskingSetting[] enclosing;
+    private int depth;
+
+    /**
+     * Constructs a generator masking every scalar with one setting.
+     * @param delegate Generator receiving the masked output; not a {@code MaskingGenerator}.
+     * @param setting Setting to apply.
+     * @param op Flight Recorder operation counting the scalars, or null.
+     */
+    MaskingGenerator(JsonGenerator delegate, CompiledMaskingSetting setting, MaskingOperation op) {
+        super(delegate, false);
+        this.snapshot = null;
+        this.op = op;
+        this.setting = setting;
+    }
+
+    /**
+     * Constructs a generator masking the values written through it by key.
+     * @param delegate Generator receiving the masked output; not a {@code MaskingGenerator}.
+     * @param snapshot Configuration snapshot to look keys up in.
+     * @param setting Setting of scalars written before any key, or null.
+     * @param op Flight Recorder operation counting the scalars, or null.
+     */
+    MaskingGenerator(JsonGenerator delegate, CompiledMaskingConfiguration snapshot, CompiledMaskingSetting setting,
+                     MaskingOperation op) {
+        super(delegate, false);
+        this.snapshot = snapshot;
+        this.op = op;
+        this.setting = setting;
+        this.enclosing = new CompiledMaskingSetting[4];
+    }
+
+    /**
+     * Returns a generator masking the values written through it by key.  Scalars written before
+     * any key keep the setting {@code generator} applies to them, so a tree written as the value
+     * of a masked property is masked like any other value.
+     * @param generator Generator passed to a serializer.
+     * @param snapshot Configuration snapshot to look keys up in.
+     * @param op Flight Recorder operation counting the scalars, or null.
+     * @return A generator writing to the generator underneath {@code generator}.
+     */
+    static MaskingGenerator byKey(JsonGenerator generator, CompiledMaskingConfiguration snapshot,
+                                  MaskingOperation op) {
+        if (generator instanceof MaskingGenerator) {
+            MaskingGenerator outer = (MaskingGenerator) generator;
+            return new MaskingGenerator(outer.getDelegate(), snapshot, outer.setting, op);
+        }
+        return new MaskingGenerator(generator, snapshot, null, op);
+    }
+
+    /**
+     * Returns the generator a {@code MaskingGenerator} writes to.
+     * @param generator Generator passed to a serializer.
+     * @return The generator underneath, or {@code generator} if it is not a
+     *         {@code MaskingGenerator}.
+     */
+    static JsonGenerator unwrap(JsonGenerator generator) {
+        return generator instanceof MaskingGenerator ? ((MaskingGenerator) generator).getDelegate() : generator;
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        enter();
+        delegate.writeStartObject();
+    }
+
+    @Override
+    public void writeStartObject(Object forValue) throws IOException {
+        enter();
+        delegate.writeStartObject(forValue);
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        enter();
+        delegate.writeStartArray();
+    }
+
+    @Override
+    public void writeStartArray(int size) throws IOException {
+        enter();
+        delegate.writeStartArray(size);
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        exit();
+        delegate.writeEndObject();
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        exit();
+        delegate.writeEndArray();
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        key(name);
+        delegate.writeFieldName(name);
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+        key(name.getValue());
+        delegate.writeFieldName(name);
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        if (isMasking()) {
+            writeMasked(text);
+        } else {
+            delegate.writeString(text);
+        }
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int len) throws IOException {
+        if (isMasking()) {
+            char[] buffer = JsonPayloadMasker.maskBuffer(len);
+            setting.apply(text, offset, len, buffer, 0);
+            delegate.writeString(buffer, 0, len);
+        } else {
+            delegate.writeString(text, offset, len);
+        }
+    }
+
+    @Override
+    public void writeString(SerializableString text) throws IOException {
+        if (isMasking()) {
+            writeMasked(text.getValue());
+        } else {
+            delegate.writeString(text);
+        }
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (isMasking()) {
+            writeMasked(new String(text, offset, length, StandardCharsets.UTF_8));
+        } else {
+            delegate.writeRawUTF8String(text, offset, length);
+        }
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (isMasking()) {
+            writeMasked(new String(text, offset, length, StandardCharsets.UTF_8));
+        } else {
+            delegate.writeUTF8String(text, offset, length);
+        }
+    }
+
+    @Override
+    public void writeRawValue(String text) throws IOException {
+        if (isMasking()) {
+            writeMasked(text);
+        } else {
+            delegate.writeRawValue(text);
+        }
+    }
+
+    @Override
+    public void writeRawValue(String text, int offset, int len) throws IOException {
+        if (isMasking()) {
+            writeMasked(text.substring(offset, offset + len));
+        } else {
+            delegate.writeRawValue(text, offset, len);
+        }
+    }
+
+    @Override
+    public void writeRawValue(char[] text, int offset, int len) throws IOException {
+        if (isMasking()) {
+            char[] buffer = JsonPayloadMasker.maskBuffer(len);
+            setting.apply(text, offset, len, buffer, 0);
+            delegate.writeString(buffer, 0, len);
+        } else {
+            delegate.writeRawValue(text, offset, len);
+        }
+    }
+
+    @Override
+    public void writeRawValue(SerializableString text) throws IOException {
+        if (isMasking()) {
+            writeMasked(text.getValue());
+        } else {
+            delegate.writeRawValue(text);
+        }
+    }
+
+    @Override
+    public void writeBinary(Base64Variant variant, byte[] data, int offset, int len) throws IOException {
+        if (isMasking()) {
+            byte[] bytes = data;
+            if (offset != 0 || len != data.length) {
+                bytes = new byte[len];
+                System.arraycopy(data, offset, bytes, 0, len);
+            }
+            writeMasked(variant.encode(bytes));
+        } else {
+            delegate.writeBinary(variant, data, offset, len);
+        }
+    }
+
+    @Override
+    public int writeBinary(Base64Variant variant, InputStream data, int dataLength) throws IOException {
+        if (!isMasking()) {
+            return delegate.writeBinary(variant, data, dataLength);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int remaining = dataLength < 0 ? Integer.MAX_VALUE : dataLength;
+        int n;
+        while (remaining > 0 && (n = data.read(buffer, 0, Math.min(buffer.length, remaining))) > 0) {
+            bytes.write(buffer, 0, n);
+            remaining -= n;
+        }
+        writeMasked(variant.encode(bytes.toByteArray()));
+        return bytes.size();
+    }
+
+    @Override
+    public void writeNumber(short v) throws IOException {
+        if (isMasking()) {
+            writeMasked(Short.toString(v));
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(int v) throws IOException {
+        if (isMasking()) {
+            writeMasked(Integer.toString(v));
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        if (isMasking()) {
+            writeMasked(Long.toString(v));
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        if (v != null && isMasking()) {
+            writeMasked(v.toString());
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        if (isMasking()) {
+            writeMasked(Double.toString(v));
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        if (isMasking()) {
+            writeMasked(Float.toString(v));
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        if (v != null && isMasking()) {
+            writeMasked(v.toString());
+        } else {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        if (encodedValue != null && isMasking()) {
+            writeMasked(encodedValue);
+        } else {
+            delegate.writeNumber(encodedValue);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        if (isMasking()) {
+            writeMasked(state ? "true" : "false");
+        } else {
+            delegate.writeBoolean(state);
+        }
+    }
+
+    @Override
+    public void writeArray(int[] array, int offset, int length) throws IOException {
+        writeStartArray();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(long[] array, int offset, int length) throws IOException {
+        writeStartArray();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    @Override
+    public void writeArray(double[] array, int offset, int length) throws IOException {
+        writeStartArray();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            writeNumber(array[i]);
+        }
+        writeEndArray();
+    }
+
+    /**
+     * A helper method that saves the setting of the key holding an object or array.
+     */
+    private void enter() {
+        if (snapshot != null) {
+            if (depth == enclosing.length) {
+                enclosing = Arrays.copyOf(enclosing, depth * 2);
+            }
+            enclosing[depth] = setting;
+        }
+        depth++;
+    }
+
+    /**
+     * A helper method that restores the setting of the key holding an object or array.
+     */
+    private void exit() {
+        depth--;
+        if (snapshot != null && depth >= 0) {
+            setting = enclosing[depth];
+        }
+    }
+
+    /**
+     * A helper method that switches to the setting of a key.
+     * @param name The key.
+     */
+    private void key(String name) {
+        if (snapshot != null) {
+            setting = snapshot.getMaskingSetting(name);
+        }
+    }
+
+    /**
+     * A helper method that checks whether the next scalar is masked.
+     * The scalar is counted in the Flight Recorder operation, if there is one.
+     * @return true if a non-empty setting applies.
+     */
+    private boolean isMasking() {
+        boolean masking = setting != null && !setting.isEmpty();
+        if (op != null) {
+            if (masking) {
+                op.countMaskedValue();
+            } else {
+                op.countField();
+            }
+        }
+        return masking;
+    }
+
+    /**
+     * A helper method that writes the text of a scalar masked, as a string.
+     * @param text Text of the scalar.
+     * @throws IOException If writing fails.
+     */
+    private void writeMasked(String text) throws IOException {
+        int length = text.length();
+        char[] buffer = JsonPayloadMasker.maskBuffer(length);
+        text.getChars(0, length, buffer, 0);
+        setting.apply(buffer, 0, length);
+        delegate.writeString(buffer, 0, length);
+    }
+}
@@ -0,0 +1,384 @@
+package com.jeetatl.datamasking.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.AnyGetterWriter;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerBuilder;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyFilter;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.type.MapType;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.metrics.MaskingOperation;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>{@code MaskingModule} is a Jackson {@code Module} that masks values while an
+ * {@code ObjectMapper} writes them, so services that already serialize with Jackson get masked
+ * output from the same pass, with no intermediate string to parse.</p>
+ *
+ * <pre>
+ * ObjectMapper mapper = new ObjectMapper().registerModule(new MaskingModule(config));
+ * String masked = mapper.writeValueAsString(order);
+ * </pre>
+ *
+ * <p>The value of a bean property is masked with the setting of the property's name, and the
+ * value of a map entry, of an any-getter entry or of a field of a {@code JsonNode} tree with the
+ * setting of its key, as given by
+ * {@link com.jeetatl.datamasking.config.CompiledMaskingConfiguration#getMaskingSetting(String)}.
+ * Masked scalars are written as strings, formatted as the mapper would have formatted them;
+ * the elements of masked collections and arrays are masked one by one.  Beans and maps nested
+ * in a masked value are masked by their own property names and keys.  Unmasked values are
+ * written exactly as without the module.</p>
+ *
+ * <p>Settings are looked up in the configuration's current snapshot on every write, so changes
+ * to the configuration apply to mappers the module is already registered with.  A snapshot
+ * given to a write as the attribute {@link #SNAPSHOT_ATTRIBUTE} takes precedence, so a single
+ * mapper, with a module constructed without a configuration, can mask with any number of
+ * configurations and share its serializers between them:</p>
+ *
+ * <pre>
+ * ObjectWriter writer = new ObjectMapper().registerModule(new MaskingModule()).writer();
+ * String masked = writer.withAttribute(MaskingModule.SNAPSHOT_ATTRIBUTE, config.snapshot())
+ *         .writeValueAsString(order);
+ * </pre>
+ *
+ * @since 0.4.0
+ */
+public class MaskingModule extends SimpleModule {
+    /**
+     * Key of the write attribute holding the {@link CompiledMaskingConfiguration} to mask a
+     * write with, in place of the module's configuration.
+     */
+    public static final String SNAPSHOT_ATTRIBUTE = MaskingModule.class.getName() + ".snapshot";
+
+    /**
+     * Key of the write attribute holding the {@link MaskingOperation} to count the values of a
+     * write in, if any.  With an operation, every non-null scalar written is counted, as a field
+     * or as a masked value.
+     */
+    public static final String OPERATION_ATTRIBUTE = MaskingModule.class.getName() + ".operation";
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MaskingConfiguration config;
+
+    /**
+     * Constructs a module masking only writes given a snapshot as the attribute
+     * {@link #SNAPSHOT_ATTRIBUTE}.
+     */
+    public MaskingModule() {
+        this(null);
+    }
+
+    /**
+     * Constructs a module masking with the provided configuration settings.
+     * @param config Configuration settings to apply, or null to mask only writes given a
+     *               snapshot as the attribute {@link #SNAPSHOT_ATTRIBUTE}.
+     */
+    public MaskingModule(MaskingConfiguration config) {
+        super("DataMaskingModule", Version.unknownVersion());
+        this.config = config;
+        setSerializerModifier(new Modifier(config));
+        addSerializer(JsonNode.class, new TreeSerializer(config));
+    }
+
+    /**
+     * @return The masking configuration, or null if the module masks only writes given a
+     *         snapshot.
+     */
+    public MaskingConfiguration getConfig() {
+        return config;
+    }
+
+    /**
+     * A helper method that returns the snapshot to mask a write with.
+     * @param config Configuration of the module, or null.
+     * @param prov Provider of the write.
+     * @return The snapshot given as {@link #SNAPSHOT_ATTRIBUTE}, otherwise the current snapshot
+     *         of {@code config}, or null if there is neither.
+     */
+    private static CompiledMaskingConfiguration snapshot(MaskingConfiguration config, SerializerProvider prov) {
+        Object snapshot = prov.getAttribute(SNAPSHOT_ATTRIBUTE);
+        if (snapshot instanceof CompiledMaskingConfiguration) {
+            return (CompiledMaskingConfiguration) snapshot;
+        }
+        return config == null ? null : config.snapshot();
+    }
+
+    /**
+     * A helper method that returns the Flight Recorder operation to count the values of a write
+     * in.
+     * @param prov Provider of the write.
+     * @return The operation given as {@link #OPERATION_ATTRIBUTE}, or null.
+     */
+    private static MaskingOperation operation(SerializerProvider prov) {
+        Object op = prov.getAttribute(OPERATION_ATTRIBUTE);
+        return op instanceof MaskingOperation ? (MaskingOperation) op : null;
+    }
+
+    /**
+     * Installs the masking property writers, any-getter writers and map serializers.
+     */
+    private static final class Modifier extends BeanSerializerModifier {
+        private final MaskingConfiguration config;
+
+        private Modifier(MaskingConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        public List<BeanPropertyWriter> changeProperties(SerializationConfig serialConfig, BeanDescription beanDesc,
+                                                         List<BeanPropertyWriter> beanProperties) {
+            for (int i = 0; i < beanProperties.size(); i++) {
+                beanProperties.set(i, new PropertyWriter(beanProperties.get(i), config));
+            }
+            return beanProperties;
+        }
+
+        @Override
+        public BeanSerializerBuilder updateBuilder(SerializationConfig serialConfig, BeanDescription beanDesc,
+                                                   BeanSerializerBuilder builder) {
+            if (builder.getAnyGetter() != null) {
+                builder.setAnyGetter(new AnyGetter(builder.getAnyGetter(), config));
+            }
+            return builder;
+        }
+
+        @Override
+        public JsonSerializer<?> modifyMapSerializer(SerializationConfig serialConfig, MapType valueType,
+                                                     BeanDescription beanDesc, JsonSerializer<?> serializer) {
+            return new MapSerializer(serializer, config);
+        }
+    }
+
+    /**
+     * Writes a bean property, masking its value with the setting of the property's name.
+     */
+    private static final class PropertyWriter extends BeanPropertyWriter {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MaskingConfiguration config;
+
+        private PropertyWriter(BeanPropertyWriter base, MaskingConfiguration config) {
+            super(base);
+            this.config = config;
+        }
+
+        @Override
+        public BeanPropertyWriter rename(NameTransformer transformer) {
+            return new PropertyWriter(super.rename(transformer), config);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            super.serializeAsField(bean, wrap(gen, prov), prov);
+        }
+
+        @Override
+        public void serializeAsElement(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            super.serializeAsElement(bean, wrap(gen, prov), prov);
+        }
+
+        /**
+         * A helper method that returns the generator to write the property with.
+         * @param gen Generator passed to the writer.
+         * @param prov Provider of the write.
+         * @return A masking generator if the property is masked or its values are counted,
+         *         otherwise the generator underneath {@code gen}.
+         */
+        private JsonGenerator wrap(JsonGenerator gen, SerializerProvider prov) {
+            JsonGenerator base = MaskingGenerator.unwrap(gen);
+            CompiledMaskingConfiguration snapshot = snapshot(config, prov);
+            if (snapshot == null) {
+                return base;
+            }
+            CompiledMaskingSetting ms = snapshot.getMaskingSetting(getName());
+            MaskingOperation op = operation(prov);
+            return ms.isEmpty() && op == null ? base : new MaskingGenerator(base, ms, op);
+        }
+    }
+
+    /**
+     * Writes the entries of an any-getter through the writer Jackson built, masking each value
+     * with the setting of its key.
+     */
+    private static final class AnyGetter extends AnyGetterWriter {
+        private final AnyGetterWriter delegate;
+        private final MaskingConfiguration config;
+
+        private AnyGetter(AnyGetterWriter delegate, MaskingConfiguration config) {
+            super(null, null, null);
+            this.delegate = delegate;
+            this.config = config;
+        }
+
+        @Override
+        public void fixAccess(SerializationConfig serialConfig) {
+            delegate.fixAccess(serialConfig);
+        }
+
+        @Override
+        public void getAndSerialize(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            delegate.getAndSerialize(bean, wrap(gen, prov), prov);
+        }
+
+        @Override
+        public void getAndFilter(Object bean, JsonGenerator gen, SerializerProvider prov, PropertyFilter filter)
+                throws Exception {
+            delegate.getAndFilter(bean, wrap(gen, prov), prov, filter);
+        }
+
+        @Override
+        public void resolve(SerializerProvider prov) throws JsonMappingException {
+            delegate.resolve(prov);
+        }
+
+        /**
+         * A helper method that returns the generator to write the entries with.
+         * @param gen Generator passed to the writer.
+         * @param prov Provider of the write.
+         * @return A generator masking the entries by key, or the generator underneath
+         *         {@code gen} if there is no configuration.
+         */
+        private JsonGenerator wrap(JsonGenerator gen, SerializerProvider prov) {
+            JsonGenerator base = MaskingGenerator.unwrap(gen);
+            CompiledMaskingConfiguration snapshot = snapshot(config, prov);
+            return snapshot == null ? base : new MaskingGenerator(base, snapshot, null, operation(prov));
+        }
+    }
+
+    /**
+     * Writes a {@code JsonNode} tree, masking the value of every field with the setting of its
+     * name.
+     */
+    private static final class TreeSerializer extends JsonSerializer<JsonNode> {
+        private final MaskingConfiguration config;
+
+        private TreeSerializer(MaskingConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        public void serialize(JsonNode value, JsonGenerator gen, SerializerProvider prov) throws IOException {
+            ((JsonSerializable) value).serialize(wrap(gen, prov), prov);
+        }
+
+        @Override
+        public void serializeWithType(JsonNode value, JsonGenerator gen, SerializerProvider prov,
+                                      TypeSerializer typeSer) throws IOException {
+            ((JsonSerializable) value).serializeWithType(wrap(gen, prov), prov, typeSer);
+        }
+
+        /**
+         * A helper method that returns the generator to write the tree with.
+         * @param gen Generator passed to the serializer.
+         * @param prov Provider of the write.
+         * @return A generator masking the fields by name, or {@code gen} if there is no
+         *         configuration.
+         */
+        private JsonGenerator wrap(JsonGenerator gen, SerializerProvider prov) {
+            CompiledMaskingConfiguration snapshot = snapshot(config, prov);
+            return snapshot == null ? gen : MaskingGenerator.byKey(gen, snapshot, operation(prov));
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider prov, JsonNode value) {
+            return value instanceof JsonSerializable.Base && ((JsonSerializable.Base) value).isEmpty(prov);
+        }
+
+        @Override
+        public Class<JsonNode> handledType() {
+            return JsonNode.class;
+        }
+    }
+
+    /**
+     * Writes a map through the serializer Jackson chose, masking each value with the setting of
+     * its key.
+     */
+    private static final class MapSerializer extends JsonSerializer<Object>
+            implements ContextualSerializer, ResolvableSerializer {
+        private final JsonSerializer<Object> delegate;
+        private final MaskingConfiguration config;
+
+        @SuppressWarnings("unchecked")
+        private MapSerializer(JsonSerializer<?> delegate, MaskingConfiguration config) {
+            this.delegate = (JsonSerializer<Object>) delegate;
+            this.config = config;
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider prov, BeanProperty property)
+                throws JsonMappingException {
+            if (delegate instanceof ContextualSerializer) {
+                JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(prov, property);
+                return contextual == delegate ? this : new MapSerializer(contextual, config);
+            }
+            return this;
+        }
+
+        @Override
+        public void resolve(SerializerProvider prov) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) delegate).resolve(prov);
+            }
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider prov) throws IOException {
+            delegate.serialize(value, wrap(gen, prov), prov);
+        }
+
+        @Override
+        public void serializeWithType(Object value, JsonGenerator gen, SerializerProvider prov,
+                                      TypeSerializer typeSer) throws IOException {
+            delegate.serializeWithType(value, wrap(gen, prov), prov, typeSer);
+        }
+
+        /**
+         * A helper method that returns the generator to write the map with.
+         * @param gen Generator passed to the serializer.
+         * @param prov Provider of the write.
+         * @return A generator masking the entries by key, or the generator underneath
+         *         {@code gen} if there is no configuration.
+         */
+        private JsonGenerator wrap(JsonGenerator gen, SerializerProvider prov) {
+            JsonGenerator base = MaskingGenerator.unwrap(gen);
+            CompiledMaskingConfiguration snapshot = snapshot(config, prov);
+            return snapshot == null ? base : new MaskingGenerator(base, snapshot, null, operation(prov));
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider prov, Object value) {
+            return delegate.isEmpty(prov, value);
+        }
+
+        @Override
+        public Class<Object> handledType() {
+            return delegate.handledType();
+        }
+
+        @Override
+        public JsonSerializer<?> getDelegatee() {
+            return delegate;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.jeetatl.datamasking.maskers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
 import com.jeetatl.datamasking.config.MaskingConfiguration;
-import com.jeetatl.datamasking.json.JsonPayloadMasker;
+import com.jeetatl.datamasking.json.MaskingModule;
+import com.jeetatl.datamasking.metrics.MaskerType;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+import com.jeetatl.datamasking.metrics.MaskingOperation;
 
 /**
  * <p>{@code JavaBeansMasker} is a concrete class used to apply {@link MaskingConfiguration} to
@@ -11,10 +15,28 @@ import com.jeetatl.datamasking.json.JsonPayloadMasker;
  *
  * The masking is applied to any JavaBean field value that is currently configured within the
  * {@link MaskingConfiguration}.
+ *
+ * <p>Beans are written as json by Jackson in a single pass, with a {@link MaskingModule} masking
+ * each value as it is written, so the bean is neither serialized twice nor parsed.  Properties,
+ * their names and their inclusion are exactly those of an {@link ObjectMapper}, annotations
+ * included, and values are masked by the name they are written with, including the entries of
+ * maps, any-getters and {@code JsonNode} trees, at any depth.  Masked values are written as
+ * strings; other numbers, booleans and nulls keep their json type.  All maskers share one mapper,
+ * and so its serializers, unless constructed with an {@link ObjectMapper} of their own; a copy
+ * of that mapper, with the module registered, is then used, so the mapper's own modules and
+ * features apply.</p>
+ *
+ * <p>Beans are reported to the configuration's metrics as {@link MaskerType#JAVA_BEANS}, with
+ * the length of the json as both input and output size.  A bean that cannot be written, because
+ * a getter throws or the beans form a cycle, is reported as a parse failure.  Flight Recorder
+ * events count every non-null scalar written as a field.</p>
  */
 public class JavaBeansMasker {
 
+    private static final ObjectWriter DEFAULT_WRITER = maskingWriter(new ObjectMapper());
+
     MaskingConfiguration config = null;
+    private final ObjectWriter writer;
 
     /**
      *  Constructs a {@code JavaBeansMasker} with the provided configuration settings.
@@ -22,26 +44,68 @@ public class JavaBeansMasker {
      */
     public JavaBeansMasker(MaskingConfiguration config) {
         this.config = config;
+        this.writer = DEFAULT_WRITER;
+    }
+
+    /**
+     *  Constructs a {@code JavaBeansMasker} that writes beans with a copy of {@code objectMapper},
+     *  masking them with a {@link MaskingModule}.
+     * @param config Configuration settings to use with this {@code JavaBeansMasker}.
+     * @param objectMapper Mapper whose settings to write beans with; not modified.
+     * @since 0.4.0
+     */
+    public JavaBeansMasker(MaskingConfiguration config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.writer = maskingWriter(objectMapper.copy());
     }
 
     /**
      * This method is used to apply the masking settings to the JavaBean fields.
      * @param bean The object who's fields will be masked.
-     * @return A string containing query parameter payload after the masking settings have been applied.
+     * @return A string containing the bean as json after the masking settings have been applied,
+     *         or null if the bean cannot be written.
      */
     public String getMasked(Object bean) {
         String masked = null;
+        CompiledMaskingConfiguration snapshot = getConfig().snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.JAVA_BEANS);
+        long start = sampled ? System.nanoTime() : 0;
+        MaskingOperation op = MaskingOperation.begin(MaskerType.JAVA_BEANS);
 
         try {
-            ObjectMapper om = new ObjectMapper();
-            String jsonPayload = om.writeValueAsString(bean);
-            JsonPayloadMasker masker = new JsonPayloadMasker(getConfig());
-            masked = masker.getMasked(jsonPayload);
-        } catch (JsonProcessingException e) { }
+            ObjectWriter w = writer.withAttribute(MaskingModule.SNAPSHOT_ATTRIBUTE, snapshot);
+            if (op != null) {
+                w = w.withAttribute(MaskingModule.OPERATION_ATTRIBUTE, op);
+            }
+            masked = w.writeValueAsString(bean);
+            if (sampled) {
+                metrics.recordMasked(MaskerType.JAVA_BEANS, System.nanoTime() - start, masked.length(),
+                        masked.length());
+            }
+        } catch (Exception e) {
+            if (metrics != null) {
+                metrics.recordParseFailure(MaskerType.JAVA_BEANS, e);
+            }
+        } finally {
+            if (op != null) {
+                op.commit("jackson", masked == null ? 0 : masked.length());
+            }
+        }
 
         return masked;
     }
 
+    /**
+     * A helper method that registers a {@link MaskingModule} masking with the snapshot given to
+     * each write.
+     * @param objectMapper Mapper to register the module with.
+     * @return A writer of the mapper.
+     */
+    private static ObjectWriter maskingWriter(ObjectMapper objectMapper) {
+        return objectMapper.registerModule(new MaskingModule()).writer();
+    }
+
 
     /**
      * @return The masking configuration
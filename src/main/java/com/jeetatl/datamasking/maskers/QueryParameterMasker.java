@@ -1,12 +1,13 @@
 package com.jeetatl.datamasking.maskers;
 
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
 import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.metrics.MaskerType;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+import com.jeetatl.datamasking.metrics.MaskingOperation;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
-import java.nio.charset.Charset;
-import java.util.Map;
+import java.io.IOException;
 
 /**
  * <p>{@code QueryParameterMasker} is a concrete class used to apply {@link MaskingConfiguration} to
@@ -14,9 +15,22 @@ import java.util.Map;
  *
  * The masking is applied to any query parameter value that is currently configured within the
  * {@link MaskingConfiguration}.
+ *
+ * <p>The query string is scanned once.  Parameters that are not masked are copied to the output
+ * exactly as they appear, including parameters without a value.  Only the values of masked
+ * parameters are URL-decoded, masked and encoded again.</p>
  */
 public class QueryParameterMasker {
 
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int MAX_CACHED_CAPACITY = 8192;
+    private static final ThreadLocal<StringBuilder> DECODE_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
     MaskingConfiguration config = null;
 
     /**
@@ -36,25 +50,322 @@ public class QueryParameterMasker {
         if (payload == null || payload.isEmpty()) {
             return payload;
         }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.QUERY_PARAMETERS);
+        long start = sampled ? System.nanoTime() : 0;
+        MaskingOperation op = MaskingOperation.begin(MaskerType.QUERY_PARAMETERS);
+        if (!snapshot.mayContainMaskedField(payload) && !hasEncodedName(payload)) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.QUERY_PARAMETERS, System.nanoTime() - start, payload.length());
+            }
+            if (op != null) {
+                op.commit(MaskingOperation.PREFILTER, payload.length());
+            }
+            return payload;
+        }
+
+        StringBuilder sb = new StringBuilder(payload.length());
+        try {
+            mask(snapshot, payload, sb, op);
+        } catch (IllegalArgumentException e) {
+            if (metrics != null) {
+                metrics.recordParseFailure(MaskerType.QUERY_PARAMETERS, e);
+            }
+            return payload;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (op != null) {
+                op.commit("scanner", payload.length());
+            }
+        }
 
-        StringBuilder sb = new StringBuilder();
+        String masked = sb.toString();
+        if (sampled) {
+            metrics.recordMasked(MaskerType.QUERY_PARAMETERS, System.nanoTime() - start, payload.length(),
+                    masked.length());
+        }
+        return masked;
+    }
 
+    /**
+     * This method appends the masked query parameters to a caller-supplied {@code StringBuilder}.
+     * @param payload Query parameters to mask.
+     * @param out Builder the masked query parameters are appended to.
+     * @throws IllegalArgumentException If a name, or the value of a masked parameter, is not
+     *                                  valid URL encoding.  Output appended before the error is
+     *                                  left in {@code out}.
+     */
+    public void getMasked(CharSequence payload, StringBuilder out) {
         try {
-            String[] tokens = payload.split("&");
-            for (int i = 0; i < tokens.length; i++) {
-                String[] paramAndValue = tokens[i].split("=");
-                if (paramAndValue.length == 2) {
-                    sb.append(paramAndValue[0] + "=" + URLEncoder.encode(config.apply(URLDecoder.decode(paramAndValue[0], "UTF-8"), URLDecoder.decode(paramAndValue[1], "UTF-8")), "UTF-8"));
+            getMasked(payload, (Appendable) out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * This method appends the masked query parameters to a caller-supplied {@code Appendable}.
+     * The payload is scanned once; untouched spans are appended directly from {@code payload}.
+     * @param payload Query parameters to mask.
+     * @param out Destination the masked query parameters are appended to.
+     * @throws IOException If appending to {@code out} fails.
+     * @throws IllegalArgumentException If a name, or the value of a masked parameter, is not
+     *                                  valid URL encoding.  Output appended before the error is
+     *                                  left in {@code out}.
+     */
+    public void getMasked(CharSequence payload, Appendable out) throws IOException {
+        if (payload == null || payload.length() == 0) {
+            return;
+        }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        if (!snapshot.mayContainMaskedField(payload) && !hasEncodedName(payload)) {
+            out.append(payload);
+            return;
+        }
+        mask(snapshot, payload, out, null);
+    }
+
+    /**
+     * A helper method that appends the masked query parameters to {@code out}, scanning the
+     * payload once.
+     * @param snapshot Configuration snapshot to apply.
+     * @param payload Query parameters to mask.
+     * @param out Destination the masked query parameters are appended to.
+     * @param op Flight Recorder operation counting the parameters, or null.
+     * @throws IOException If appending to {@code out} fails.
+     * @throws IllegalArgumentException If a name, or the value of a masked parameter, is not
+     *                                  valid URL encoding.
+     */
+    private void mask(CompiledMaskingConfiguration snapshot, CharSequence payload, Appendable out,
+                      MaskingOperation op) throws IOException {
+        int length = payload.length();
+        int start = 0;
+        while (start <= length) {
+            int separator = -1;
+            int end = start;
+            while (end < length) {
+                char c = payload.charAt(end);
+                if (c == '&') {
+                    break;
+                } else if (c == '=' && separator < 0) {
+                    separator = end;
+                }
+                end++;
+            }
+
+            CompiledMaskingSetting ms = separator < 0 ? null : findSetting(snapshot, payload, start, separator);
+            if (ms == null || ms.isEmpty()) {
+                if (op != null && separator >= 0) {
+                    op.countField();
                 }
-                if (i != tokens.length - 1) {
-                    sb.append("&");
+                out.append(payload, start, end);
+            } else {
+                if (op != null) {
+                    op.countMaskedValue();
                 }
+                out.append(payload, start, separator + 1);
+                appendMaskedValue(ms, payload, separator + 1, end, out);
             }
-        } catch (Exception e) {
-            return payload;
+
+            if (end < length) {
+                out.append('&');
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * A helper method that returns the setting for the name of a parameter.  Names that are not
+     * URL-encoded are looked up straight from the payload; others are decoded into a reused
+     * buffer first.
+     * @param snapshot Configuration snapshot to apply.
+     * @param payload Query parameters.
+     * @param start Index of the first character of the name.
+     * @param end Index of the '=' after the name.
+     * @return Setting of the parameter, or the default for unknown fields.
+     */
+    private static CompiledMaskingSetting findSetting(CompiledMaskingConfiguration snapshot, CharSequence payload,
+                                                      int start, int end) {
+        CompiledMaskingSetting ms;
+        boolean encoded = false;
+        for (int i = start; i < end && !encoded; i++) {
+            char c = payload.charAt(i);
+            encoded = c == '%' || c == '+';
+        }
+        if (encoded) {
+            StringBuilder sb = decodeBuffer();
+            decode(payload, start, end, sb);
+            ms = snapshot.findMaskingSetting(sb, 0, sb.length());
+        } else {
+            ms = snapshot.findMaskingSetting(payload, start, end);
         }
+        return ms == null ? snapshot.getUnknownFieldMasking() : ms;
+    }
+
+    /**
+     * A helper method that decodes a value, masks it in a reused buffer and appends it encoded.
+     * @param ms Setting to apply.
+     * @param payload Query parameters.
+     * @param start Index of the first character of the value.
+     * @param end Index after the last character of the value.
+     * @param out Destination of the masked value.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    private static void appendMaskedValue(CompiledMaskingSetting ms, CharSequence payload, int start, int end, Appendable out)
+            throws IOException {
+        StringBuilder sb = decodeBuffer();
+        decode(payload, start, end, sb);
+        ms.apply(sb);
+        encode(sb, out);
+    }
+
+    private static StringBuilder decodeBuffer() {
+        StringBuilder sb = DECODE_BUFFER.get();
+        if (sb.capacity() > MAX_CACHED_CAPACITY) {
+            sb = new StringBuilder();
+            DECODE_BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * A helper method that URL-decodes a range as UTF-8, the same way {@code URLDecoder} does.
+     * Malformed UTF-8 is replaced by U+FFFD.
+     * @param s Text holding the range.
+     * @param start Index of the first character of the range.
+     * @param end Index after the last character of the range.
+     * @param out Builder the decoded characters are appended to.
+     * @throws IllegalArgumentException If an escape sequence is incomplete or not hexadecimal.
+     */
+    static void decode(CharSequence s, int start, int end, StringBuilder out) {
+        int codePoint = 0;
+        int remaining = 0;
+        int i = start;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c != '%') {
+                if (remaining > 0) {
+                    out.append('\uFFFD');
+                    remaining = 0;
+                }
+                out.append(c == '+' ? ' ' : c);
+                i++;
+                continue;
+            }
+
+            if (i + 2 >= end) {
+                throw new IllegalArgumentException("Incomplete trailing escape (%) pattern");
+            }
+            int high = Character.digit(s.charAt(i + 1), 16);
+            int low = Character.digit(s.charAt(i + 2), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern");
+            }
+            int b = (high << 4) | low;
+            i += 3;
+
+            if (remaining > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    codePoint = (codePoint << 6) | (b & 0x3F);
+                    if (--remaining == 0) {
+                        out.appendCodePoint(Character.isValidCodePoint(codePoint) ? codePoint : 0xFFFD);
+                    }
+                    continue;
+                }
+                out.append('\uFFFD');
+                remaining = 0;
+            }
+
+            if (b < 0x80) {
+                out.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                codePoint = b & 0x1F;
+                remaining = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = b & 0x0F;
+                remaining = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                codePoint = b & 0x07;
+                remaining = 3;
+            } else {
+                out.append('\uFFFD');
+            }
+        }
+        if (remaining > 0) {
+            out.append('\uFFFD');
+        }
+    }
+
+    /**
+     * A helper method that URL-encodes text as UTF-8, the same way {@code URLEncoder} does.
+     * @param s Text to encode.
+     * @param out Destination of the encoded text.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    static void encode(CharSequence s, Appendable out) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, s.charAt(++i));
+                } else if (Character.isSurrogate(c)) {
+                    codePoint = '?';
+                }
+                appendEscaped(codePoint, out);
+            }
+        }
+    }
+
+    private static void appendEscaped(int codePoint, Appendable out) throws IOException {
+        if (codePoint < 0x80) {
+            appendByte(codePoint, out);
+        } else if (codePoint < 0x800) {
+            appendByte(0xC0 | (codePoint >> 6), out);
+            appendByte(0x80 | (codePoint & 0x3F), out);
+        } else if (codePoint < 0x10000) {
+            appendByte(0xE0 | (codePoint >> 12), out);
+            appendByte(0x80 | ((codePoint >> 6) & 0x3F), out);
+            appendByte(0x80 | (codePoint & 0x3F), out);
+        } else {
+            appendByte(0xF0 | (codePoint >> 18), out);
+            appendByte(0x80 | ((codePoint >> 12) & 0x3F), out);
+            appendByte(0x80 | ((codePoint >> 6) & 0x3F), out);
+            appendByte(0x80 | (codePoint & 0x3F), out);
+        }
+    }
+
+    private static void appendByte(int b, Appendable out) throws IOException {
+        out.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0x0F]);
+    }
 
-        return sb.toString();
+    /**
+     * A helper method that returns true if any parameter name is percent-encoded.  Such names
+     * are only matched after decoding, so the prefilter cannot rule them out.
+     * @param payload Query parameters.
+     * @return true if a parameter name contains a '%'.
+     */
+    private static boolean hasEncodedName(CharSequence payload) {
+        boolean inName = true;
+        for (int i = 0, n = payload.length(); i < n; i++) {
+            char c = payload.charAt(i);
+            if (c == '&') {
+                inName = true;
+            } else if (c == '=') {
+                inName = false;
+            } else if (c == '%' && inName) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -0,0 +1,641 @@
+package com.jeetatl.datamasking.maskers;
+
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.MaskingPlan;
+import com.jeetatl.datamasking.MaskingSetting;
+import com.jeetatl.datamasking.metrics.MaskerType;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+
+import java.io.IOException;
+
+/**
+ * <p>{@code TextContentMasker} finds sensitive values in unstructured text, such as log lines,
+ * by their content rather than by a field name, and applies a {@link MaskingSetting} to each
+ * value found.  The values detected are:</p>
+ *
+ * <ul>
+ *     <li>{@link Detector#CARD_NUMBER}: 13 to 19 digits starting with 2 to 6, optionally grouped
+ *     with single spaces or dashes, that pass the Luhn check.</li>
+ *     <li>{@link Detector#SSN}: US social security numbers written {@code ddd-dd-dddd}, excluding
+ *     area numbers 000, 666 and 900-999, group 00 and serial 0000.</li>
+ *     <li>{@link Detector#EMAIL}: a local part of up to 64 letters, digits and {@code ._%+-}, an
+ *     {@code @} and a domain of at least two labels ending in a top level domain of two or more
+ *     letters.</li>
+ *     <li>{@link Detector#IBAN}: two upper case letters, two check digits and 11 to 30 upper case
+ *     letters or digits, compact or in groups of four separated by single spaces, that pass the
+ *     ISO 7064 mod 97 check.</li>
+ * </ul>
+ *
+ * <p>Card numbers, social security numbers and IBANs must not be preceded or followed by a
+ * letter or digit.  The setting of a detector is applied to the letters and digits of the value
+ * only, so {@code ~7-12} masks the same digits of {@code 4111 1111 1111 1111} and
+ * {@code 4111111111111111}, and the separators are kept.  The setting of {@link Detector#EMAIL}
+ * is applied to the whole address.  By default every detector masks the whole value.</p>
+ *
+ * <p>The text is scanned once, without regular expressions: a character that cannot start a
+ * value costs a table lookup, and the candidates are checked as they are read, so no character
+ * is examined more than a few times.  Scanning does not allocate, and text without sensitive
+ * values is returned as is.</p>
+ *
+ * @since 0.4.0
+ */
+public class TextContentMasker {
+
+    /**
+     * The kinds of values {@code TextContentMasker} detects.
+     */
+    public enum Detector {
+        /**
+         * Payment card numbers.
+         */
+        CARD_NUMBER,
+        /**
+         * US social security numbers.
+         */
+        SSN,
+        /**
+         * Email addresses.
+         */
+        EMAIL,
+        /**
+         * International bank account numbers.
+         */
+        IBAN
+    }
+
+    private static final int DIGIT = 1;
+    private static final int UPPER = 2;
+    private static final int LOWER = 4;
+    private static final int LOCAL = 8;
+    private static final int DOMAIN = 16;
+    private static final int AT = 32;
+    private static final int ALNUM = DIGIT | UPPER | LOWER;
+    private static final int TRIGGER = DIGIT | UPPER | AT;
+    private static final byte[] CLASSES = new byte[128];
+    private static final Detector[] DETECTORS = Detector.values();
+    private static final long NOT_FOUND = -1;
+
+    private static final int MIN_CARD_DIGITS = 13;
+    private static final int MAX_CARD_DIGITS = 19;
+    private static final int SSN_LENGTH = 11;
+    private static final int MIN_IBAN_LENGTH = 15;
+    private static final int MAX_IBAN_LENGTH = 34;
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_DOMAIN_LENGTH = 253;
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT | LOCAL | DOMAIN;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASSES[c] = UPPER | LOCAL | DOMAIN;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CLASSES[c] = LOWER | LOCAL | DOMAIN;
+        }
+        CLASSES['.'] = LOCAL;
+        CLASSES['_'] = LOCAL;
+        CLASSES['%'] = LOCAL;
+        CLASSES['+'] = LOCAL;
+        CLASSES['-'] = LOCAL | DOMAIN;
+        CLASSES['@'] = AT;
+    }
+
+    private final MaskingSetting[] settings = new MaskingSetting[Detector.values().length];
+    private volatile MaskingMetrics metrics;
+
+    /**
+     * Constructs a {@code TextContentMasker} with every detector enabled, masking the whole
+     * value.
+     */
+    public TextContentMasker() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setPercentMaskLeft(100);
+        for (Detector detector : Detector.values()) {
+            settings[detector.ordinal()] = ms;
+        }
+    }
+
+    /**
+     * Constructs a {@code TextContentMasker} with every detector enabled, using the same setting.
+     * @param maskingSetting Setting applied to every value found.
+     */
+    public TextContentMasker(MaskingSetting maskingSetting) {
+        for (Detector detector : Detector.values()) {
+            settings[detector.ordinal()] = maskingSetting;
+        }
+    }
+
+    /**
+     * This method is used to mask the sensitive values in a text.
+     * @param payload Text to mask.
+     * @return The text with every value found masked; {@code payload} itself if nothing was
+     *         found.
+     */
+    public String getMasked(String payload) {
+        if (payload == null || payload.isEmpty()) {
+            return payload;
+        }
+        MaskingMetrics metrics = this.metrics;
+        boolean sampled = metrics != null && metrics.sample(MaskerType.TEXT_CONTENT);
+        long start = sampled ? System.nanoTime() : 0;
+        long match = find(payload, 0);
+        if (match == NOT_FOUND) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.TEXT_CONTENT, System.nanoTime() - start, payload.length());
+            }
+            return payload;
+        }
+        StringBuilder sb = new StringBuilder(payload.length());
+        try {
+            append(payload, match, sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        String masked = sb.toString();
+        if (sampled) {
+            metrics.recordMasked(MaskerType.TEXT_CONTENT, System.nanoTime() - start, payload.length(), masked.length());
+        }
+        return masked;
+    }
+
+    /**
+     * This method appends the masked text to a caller-supplied {@code StringBuilder}.
+     * @param payload Text to mask.
+     * @param out Builder the masked text is appended to.
+     */
+    public void getMasked(CharSequence payload, StringBuilder out) {
+        try {
+            getMasked(payload, (Appendable) out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * This method appends the masked text to a caller-supplied {@code Appendable}.  The text is
+     * scanned once; spans without sensitive values are appended directly from {@code payload}.
+     * @param payload Text to mask.
+     * @param out Destination the masked text is appended to.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    public void getMasked(CharSequence payload, Appendable out) throws IOException {
+        if (payload == null || payload.length() == 0) {
+            return;
+        }
+        long match = find(payload, 0);
+        if (match == NOT_FOUND) {
+            out.append(payload);
+            return;
+        }
+        append(payload, match, out);
+    }
+
+    /**
+     * Returns true if the text contains a value found by an enabled detector.
+     * @param payload Text to scan.
+     * @return true if {@link #getMasked(String)} would find something to mask.
+     */
+    public boolean containsSensitiveValue(CharSequence payload) {
+        return payload != null && find(payload, 0) != NOT_FOUND;
+    }
+
+    /**
+     * @param detector Detector to look up.
+     * @return The setting applied to the values found by {@code detector}, or null if it is
+     *         disabled.
+     */
+    public MaskingSetting getMaskingSetting(Detector detector) {
+        return settings[detector.ordinal()];
+    }
+
+    /**
+     * Sets the setting applied to the values found by a detector.
+     * @param detector Detector to configure.
+     * @param maskingSetting Setting to apply, or null to disable the detector.
+     */
+    public void setMaskingSetting(Detector detector, MaskingSetting maskingSetting) {
+        settings[detector.ordinal()] = maskingSetting;
+    }
+
+    /**
+     * @param detector Detector to look up.
+     * @return true if the detector is enabled.
+     */
+    public boolean isEnabled(Detector detector) {
+        return settings[detector.ordinal()] != null;
+    }
+
+    /**
+     * @return The metrics {@link #getMasked(String)} reports to, or null if metrics are disabled.
+     */
+    public MaskingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics {@link #getMasked(String)} reports to.  Texts without a sensitive value
+     * are reported as skipped.  Default: null (no metrics).
+     * @param metrics Metrics, or null to disable metrics.
+     */
+    public void setMetrics(MaskingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * A helper method that appends the text to {@code out}, masking the first value found and
+     * every value after it.
+     * @param payload Text to mask.
+     * @param match The first value found, as returned by {@link #find(CharSequence, int)}.
+     * @param out Destination of the masked text.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    private void append(CharSequence payload, long match, Appendable out) throws IOException {
+        int copied = 0;
+        do {
+            out.append(payload, copied, start(match));
+            mask(payload, match, out);
+            copied = end(match);
+        } while ((match = find(payload, copied)) != NOT_FOUND);
+        out.append(payload, copied, payload.length());
+    }
+
+    /**
+     * A helper method that finds the next value from {@code from}.
+     * @param s Text to scan.
+     * @param from Index to start scanning at.
+     * @return The detector, start and end of the value found, packed so that scanning does not
+     *         allocate, or {@code NOT_FOUND}.
+     */
+    private long find(CharSequence s, int from) {
+        MaskingSetting[] settings = this.settings;
+        boolean cards = settings[Detector.CARD_NUMBER.ordinal()] != null;
+        boolean ssns = settings[Detector.SSN.ordinal()] != null;
+        boolean emails = settings[Detector.EMAIL.ordinal()] != null;
+        boolean ibans = settings[Detector.IBAN.ordinal()] != null;
+        int length = s.length();
+        int previous = from > 0 ? classOf(s.charAt(from - 1)) : 0;
+        for (int i = from; i < length; i++) {
+            char c = s.charAt(i);
+            int cls = c < 128 ? CLASSES[c] : 0;
+            if ((cls & TRIGGER) == 0) {
+                previous = cls;
+                continue;
+            }
+            int end;
+            if (cls == AT) {
+                int start = localPartStart(s, from, i);
+                if (emails && start < i && (end = emailEnd(s, i + 1, length)) > 0) {
+                    return match(start, end, Detector.EMAIL);
+                }
+            } else if ((previous & ALNUM) == 0 && isStart(s, i)) {
+                if ((cls & DIGIT) != 0) {
+                    if (cards && c >= '2' && c <= '6' && (end = cardNumberEnd(s, i, length)) > 0) {
+                        return match(i, end, Detector.CARD_NUMBER);
+                    }
+                    if (ssns && (end = ssnEnd(s, i, length)) > 0) {
+                        return match(i, end, Detector.SSN);
+                    }
+                } else if (ibans && (end = ibanEnd(s, i, length)) > 0) {
+                    return match(i, end, Detector.IBAN);
+                }
+            }
+            previous = cls;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * A helper method that appends a value found to {@code out} with its setting applied to its
+     * letters and digits, or to every character of an email address.
+     * @param s Text being masked.
+     * @param match The value.
+     * @param out Destination of the masked value.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    private void mask(CharSequence s, long match, Appendable out) throws IOException {
+        int start = start(match);
+        int end = end(match);
+        Detector detector = detector(match);
+        MaskingSetting ms = settings[detector.ordinal()];
+        CompiledMaskingSetting cms = ms == null ? null : ms.compile();
+        if (cms == null || cms.isEmpty()) {
+            out.append(s, start, end);
+            return;
+        }
+        boolean all = detector == Detector.EMAIL;
+        int significant = end - start;
+        if (!all) {
+            significant = 0;
+            for (int i = start; i < end; i++) {
+                if (isAlnum(s.charAt(i))) {
+                    significant++;
+                }
+            }
+        }
+        MaskingPlan plan = cms.plan(significant);
+        char maskingCharacter = cms.getMaskingCharacter();
+        int ranges = plan.getRangeCount();
+        int r = 0;
+        int k = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!all && !isAlnum(c)) {
+                out.append(c);
+                continue;
+            }
+            while (r < ranges && plan.getRangeEnd(r) <= k) {
+                r++;
+            }
+            out.append(r < ranges && plan.getRangeStart(r) <= k ? maskingCharacter : c);
+            k++;
+        }
+    }
+
+    /**
+     * A helper method that returns the end of a card number starting at {@code start}.  The
+     * digits are read once, keeping the Luhn sums for both parities of the final length; each
+     * separator is also checked as a possible end, so a number following a card number does not
+     * hide it.
+     * @param s Text being scanned.
+     * @param start Index of the first digit.
+     * @param length Length of the text.
+     * @return Index after the longest valid card number, or -1 if there is none.
+     */
+    private static int cardNumberEnd(CharSequence s, int start, int length) {
+        int digits = 0;
+        int sumOdd = 0;
+        int sumEven = 0;
+        int best = -1;
+        char separator = 0;
+        int i = start;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_CARD_DIGITS) {
+                    return best;
+                }
+                int d = c - '0';
+                int doubled = d < 5 ? 2 * d : 2 * d - 9;
+                if ((digits & 1) != 0) {
+                    sumOdd += doubled;
+                    sumEven += d;
+                } else {
+                    sumOdd += d;
+                    sumEven += doubled;
+                }
+                i++;
+            } else if ((c == ' ' || c == '-') && (separator == 0 || separator == c)
+                    && i + 1 < length && isDigit(s.charAt(i + 1))) {
+                if (c == ' ' && isLuhnValid(digits, sumOdd, sumEven)) {
+                    best = i;
+                }
+                separator = c;
+                i++;
+            } else {
+                break;
+            }
+        }
+        return isEnd(s, i, length) && isLuhnValid(digits, sumOdd, sumEven) ? i : best;
+    }
+
+    /**
+     * A helper method that checks the length and Luhn checksum of the digits read so far.
+     * @param digits Number of digits.
+     * @param sumOdd Luhn sum doubling the digits at odd positions.
+     * @param sumEven Luhn sum doubling the digits at even positions.
+     * @return true if the digits form a valid card number.
+     */
+    private static boolean isLuhnValid(int digits, int sumOdd, int sumEven) {
+        if (digits < MIN_CARD_DIGITS) {
+            return false;
+        }
+        // The last digit is not doubled, so the doubled digits have the other parity.
+        int sum = (digits & 1) == 0 ? sumOdd : sumEven;
+        return sum % 10 == 0;
+    }
+
+    /**
+     * A helper method that returns the end of a social security number starting at
+     * {@code start}.
+     * @param s Text being scanned.
+     * @param start Index of the first digit.
+     * @param length Length of the text.
+     * @return Index after the number, or -1 if there is none.
+     */
+    private static int ssnEnd(CharSequence s, int start, int length) {
+        int end = start + SSN_LENGTH;
+        if (end > length || s.charAt(start + 3) != '-' || s.charAt(start + 6) != '-') {
+            return -1;
+        }
+        int area = digits(s, start, 3);
+        int group = digits(s, start + 4, 2);
+        int serial = digits(s, start + 7, 4);
+        if (area <= 0 || area == 666 || area >= 900 || group <= 0 || serial <= 0 || !isEnd(s, end, length)) {
+            return -1;
+        }
+        return end;
+    }
+
+    /**
+     * A helper method that returns the end of an IBAN starting at {@code start}.  The mod 97
+     * remainder of the account number is computed as it is read; in the grouped form, each
+     * group boundary is also checked as a possible end.
+     * @param s Text being scanned.
+     * @param start Index of the first letter of the country code.
+     * @param length Length of the text.
+     * @return Index after the longest valid IBAN, or -1 if there is none.
+     */
+    private static int ibanEnd(CharSequence s, int start, int length) {
+        if (start + MIN_IBAN_LENGTH > length || !isUpper(s.charAt(start + 1))
+                || !isDigit(s.charAt(start + 2)) || !isDigit(s.charAt(start + 3))) {
+            return -1;
+        }
+        int count = 4;
+        int remainder = 0;
+        int best = -1;
+        boolean grouped = false;
+        int i = start + 4;
+        while (i < length) {
+            char c = s.charAt(i);
+            int value = ibanValue(c);
+            if (value >= 0) {
+                if (count == MAX_IBAN_LENGTH || (grouped && (count & 3) == 0 && s.charAt(i - 1) != ' ')) {
+                    break;
+                }
+                remainder = mod97(remainder, value);
+                count++;
+                i++;
+            } else if (c == ' ' && (count & 3) == 0 && (grouped || count == 4)
+                    && i + 1 < length && ibanValue(s.charAt(i + 1)) >= 0) {
+                if (count >= MIN_IBAN_LENGTH && isValidIban(s, start, remainder)) {
+                    best = i;
+                }
+                grouped = true;
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (count >= MIN_IBAN_LENGTH && isEnd(s, i, length) && isValidIban(s, start, remainder)) {
+            return i;
+        }
+        return best;
+    }
+
+    /**
+     * A helper method that completes the mod 97 check of an IBAN by moving the country code and
+     * check digits after the account number.
+     * @param s Text being scanned.
+     * @param start Index of the IBAN.
+     * @param remainder Remainder of the account number.
+     * @return true if the IBAN is valid.
+     */
+    private static boolean isValidIban(CharSequence s, int start, int remainder) {
+        for (int i = start; i < start + 4; i++) {
+            remainder = mod97(remainder, ibanValue(s.charAt(i)));
+        }
+        return remainder == 1;
+    }
+
+    private static int mod97(int remainder, int value) {
+        return (value < 10 ? remainder * 10 + value : remainder * 100 + value) % 97;
+    }
+
+    private static int ibanValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * A helper method that returns the start of the local part of an email address, reading
+     * back from the {@code @} over at most {@link #MAX_LOCAL_PART_LENGTH} characters.
+     * @param s Text being scanned.
+     * @param from Index the local part may not start before.
+     * @param at Index of the {@code @}.
+     * @return Index of the first character of the local part; {@code at} if it is empty.
+     */
+    private static int localPartStart(CharSequence s, int from, int at) {
+        int limit = Math.max(from, at - MAX_LOCAL_PART_LENGTH);
+        int start = at;
+        while (start > limit && (classOf(s.charAt(start - 1)) & LOCAL) != 0) {
+            start--;
+        }
+        while (start < at && s.charAt(start) == '.') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * A helper method that returns the end of the domain of an email address.
+     * @param s Text being scanned.
+     * @param start Index after the {@code @}.
+     * @param length Length of the text.
+     * @return Index after the last valid label, or -1 if the domain is not valid.
+     */
+    private static int emailEnd(CharSequence s, int start, int length) {
+        int limit = Math.min(length, start + MAX_DOMAIN_LENGTH);
+        int end = -1;
+        int labels = 0;
+        int i = start;
+        while (true) {
+            int labelStart = i;
+            boolean letters = true;
+            while (i < limit) {
+                char c = s.charAt(i);
+                int cls = c < 128 ? CLASSES[c] : 0;
+                if ((cls & DOMAIN) == 0) {
+                    break;
+                }
+                letters &= (cls & (UPPER | LOWER)) != 0;
+                i++;
+            }
+            if (i == labelStart || s.charAt(labelStart) == '-' || s.charAt(i - 1) == '-') {
+                return end;
+            }
+            if (++labels >= 2 && letters && i - labelStart >= 2) {
+                end = i;
+            }
+            if (i + 1 >= limit || s.charAt(i) != '.') {
+                return end;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * A helper method that returns true if a card number, social security number or IBAN may
+     * start at {@code i}: it is not preceded by a letter, a digit, an {@code @}, or a dash after
+     * a digit.
+     */
+    private static boolean isStart(CharSequence s, int i) {
+        if (i == 0) {
+            return true;
+        }
+        char c = s.charAt(i - 1);
+        return !isAlnum(c) && c != '@' && !(c == '-' && i > 1 && isDigit(s.charAt(i - 2)));
+    }
+
+    /**
+     * A helper method that returns true if a card number, social security number or IBAN may
+     * end at {@code i}: it is not followed by a letter, a digit, an {@code @}, or a dash before
+     * a digit.
+     */
+    private static boolean isEnd(CharSequence s, int i, int length) {
+        if (i == length) {
+            return true;
+        }
+        char c = s.charAt(i);
+        return !isAlnum(c) && c != '@' && !(c == '-' && i + 1 < length && isDigit(s.charAt(i + 1)));
+    }
+
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int classOf(char c) {
+        return c < 128 ? CLASSES[c] : 0;
+    }
+
+    private static boolean isAlnum(char c) {
+        return c < 128 && (CLASSES[c] & ALNUM) != 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static long match(int start, int end, Detector detector) {
+        return (long) detector.ordinal() << 62 | (long) start << 31 | end;
+    }
+
+    private static int start(long match) {
+        return (int) (match >>> 31) & Integer.MAX_VALUE;
+    }
+
+    private static int end(long match) {
+        return (int) match & Integer.MAX_VALUE;
+    }
+
+    private static Detector detector(long match) {
+        return DETECTORS[(int) (match >>> 62)];
+    }
+}
@@ -0,0 +1,193 @@
+package com.jeetatl.datamasking.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>{@code DefaultMaskingMetrics} keeps the measurements in memory: per masker, a
+ * {@link LatencyHistogram}, the numbers of masked, skipped and unparseable payloads and the
+ * sizes of the payloads in and out; and the number of hits of each rule.  Every counter is a
+ * {@code LongAdder}, so recording never locks.</p>
+ *
+ * <p>With a sampling interval of {@code n}, about one payload in {@code n} is measured, chosen at
+ * random.  Payload counts, sizes and latencies then cover the sampled payloads only; parse
+ * failures and rule hits are always counted.</p>
+ *
+ * <pre>
+ * DefaultMaskingMetrics metrics = new DefaultMaskingMetrics(100);
+ * config.setMetrics(metrics);
+ * ...
+ * long p99 = metrics.getLatency(MaskerType.JSON).getPercentileNanos(99);
+ * </pre>
+ *
+ * @since 0.4.0
+ */
+public class DefaultMaskingMetrics implements MaskingMetrics {
+    private final int sampleInterval;
+    private final Stats[] stats = new Stats[MaskerType.values().length];
+    private final ConcurrentHashMap<String, LongAdder> fieldHits = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs metrics that measure every payload.
+     */
+    public DefaultMaskingMetrics() {
+        this(1);
+    }
+
+    /**
+     * Constructs metrics that measure about one payload in {@code sampleInterval}.
+     * @param sampleInterval Average number of payloads per sampled payload; 1 to measure all.
+     * @throws IllegalArgumentException If {@code sampleInterval} is less than 1.
+     */
+    public DefaultMaskingMetrics(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("sampleInterval must be at least 1: " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new Stats();
+        }
+    }
+
+    @Override
+    public boolean sample(MaskerType masker) {
+        return sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0;
+    }
+
+    @Override
+    public void recordMasked(MaskerType masker, long nanos, long inputSize, long outputSize) {
+        Stats s = stats[masker.ordinal()];
+        s.masked.increment();
+        s.inputSize.add(inputSize);
+        s.outputSize.add(outputSize);
+        s.latency.record(nanos);
+    }
+
+    @Override
+    public void recordSkipped(MaskerType masker, long nanos, long inputSize) {
+        Stats s = stats[masker.ordinal()];
+        s.skipped.increment();
+        s.inputSize.add(inputSize);
+        s.outputSize.add(inputSize);
+        s.latency.record(nanos);
+    }
+
+    @Override
+    public void recordParseFailure(MaskerType masker, Exception cause) {
+        stats[masker.ordinal()].parseFailures.increment();
+    }
+
+    @Override
+    public void recordFieldHit(String rule) {
+        LongAdder hits = fieldHits.get(rule);
+        if (hits == null) {
+            hits = fieldHits.computeIfAbsent(rule, k -> new LongAdder());
+        }
+        hits.increment();
+    }
+
+    /**
+     * @return The average number of payloads per sampled payload.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * @param masker Masker to look up.
+     * @return The latencies of the sampled payloads of {@code masker}.
+     */
+    public LatencyHistogram getLatency(MaskerType masker) {
+        return stats[masker.ordinal()].latency;
+    }
+
+    /**
+     * @param masker Masker to look up.
+     * @return The number of sampled payloads {@code masker} masked.
+     */
+    public long getMaskedCount(MaskerType masker) {
+        return stats[masker.ordinal()].masked.sum();
+    }
+
+    /**
+     * @param masker Masker to look up.
+     * @return The number of sampled payloads {@code masker} returned as is because they contain
+     *         no configured field.
+     */
+    public long getSkippedCount(MaskerType masker) {
+        return stats[masker.ordinal()].skipped.sum();
+    }
+
+    /**
+     * @param masker Masker to look up.
+     * @return The number of payloads {@code masker} could not parse.
+     */
+    public long getParseFailureCount(MaskerType masker) {
+        return stats[masker.ordinal()].parseFailures.sum();
+    }
+
+    /**
+     * @param masker Masker to look up.
+     * @return The total size of the sampled payloads {@code masker} received.
+     */
+    public long getInputSize(MaskerType masker) {
+        return stats[masker.ordinal()].inputSize.sum();
+    }
+
+    /**
+     * @param masker Masker to look up.
+     * @return The total size of the sampled payloads {@code masker} returned.
+     */
+    public long getOutputSize(MaskerType masker) {
+        return stats[masker.ordinal()].outputSize.sum();
+    }
+
+    /**
+     * @param rule Field name or field pattern of a rule, as written in the configuration.
+     * @return The number of fields the rule masked.
+     */
+    public long getFieldHits(String rule) {
+        LongAdder hits = fieldHits.get(rule);
+        return hits == null ? 0 : hits.sum();
+    }
+
+    /**
+     * @return The number of fields each rule masked, by rule, for the rules with at least one
+     *         hit; a sorted copy.
+     */
+    public Map<String, Long> getFieldHits() {
+        Map<String, Long> copy = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : fieldHits.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Clears every measurement.
+     */
+    public void reset() {
+        for (Stats s : stats) {
+            s.masked.reset();
+            s.skipped.reset();
+            s.parseFailures.reset();
+            s.inputSize.reset();
+            s.outputSize.reset();
+            s.latency.reset();
+        }
+        fieldHits.clear();
+    }
+
+    private static final class Stats {
+        private final LongAdder masked = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder parseFailures = new LongAdder();
+        private final LongAdder inputSize = new LongAdder();
+        private final LongAdder outputSize = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
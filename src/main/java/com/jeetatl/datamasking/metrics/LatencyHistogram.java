@@ -0,0 +1,141 @@
+package com.jeetatl.datamasking.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>{@code LatencyHistogram} counts durations in buckets that grow exponentially: each power of
+ * two is split into four buckets, so a bucket is at most 25% wider than its lower bound, from
+ * one nanosecond up to about half an hour.  Each bucket is a {@code LongAdder}, so recording never
+ * locks and threads recording at the same time rarely contend.</p>
+ *
+ * <p>Reads are not atomic with respect to concurrent recording: a percentile computed while
+ * durations are being recorded reflects some, but not necessarily all, of them.</p>
+ *
+ * @since 0.4.0
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.  Negative durations are recorded as zero, and durations above the
+     * range in the last bucket.
+     * @param nanos Duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[bucket(value)].increment();
+        totalNanos.add(value);
+    }
+
+    /**
+     * @return The number of durations recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return The sum of the durations recorded, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return The mean duration in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getTotalNanos() / count;
+    }
+
+    /**
+     * Returns an upper bound of a percentile: the upper bound of the bucket holding it.
+     * @param percentile Percentile between 0 and 100.
+     * @return Duration in nanoseconds, or 0 if nothing was recorded.
+     * @throws IllegalArgumentException If {@code percentile} is not between 0 and 100.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return lowerBound(i + 1) - 1;
+            }
+        }
+        return lowerBound(BUCKETS) - 1;
+    }
+
+    /**
+     * Clears the histogram.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+
+    /**
+     * A helper method that returns the bucket of a duration.
+     * @param value Non-negative duration.
+     * @return Index of the bucket.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * A helper method that returns the smallest duration counted in a bucket.
+     * @param bucket Index of the bucket; {@code BUCKETS} for the end of the last bucket.
+     * @return Duration in nanoseconds.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
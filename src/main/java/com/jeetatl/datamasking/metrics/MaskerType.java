@@ -0,0 +1,29 @@
+package com.jeetatl.datamasking.metrics;
+
+/**
+ * The maskers that report to {@link MaskingMetrics}.
+ *
+ * @since 0.4.0
+ */
+public enum MaskerType {
+    /**
+     * {@link com.jeetatl.datamasking.json.JsonPayloadMasker}.
+     */
+    JSON,
+    /**
+     * {@link com.jeetatl.datamasking.xml.XmlPayloadMasker}.
+     */
+    XML,
+    /**
+     * {@link com.jeetatl.datamasking.maskers.QueryParameterMasker}.
+     */
+    QUERY_PARAMETERS,
+    /**
+     * {@link com.jeetatl.datamasking.maskers.JavaBeansMasker}.
+     */
+    JAVA_BEANS,
+    /**
+     * {@link com.jeetatl.datamasking.maskers.TextContentMasker}.
+     */
+    TEXT_CONTENT
+}
@@ -0,0 +1,55 @@
+package com.jeetatl.datamasking.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder event committed by {@link MaskingOperation}.  Only that class refers
+ * to it, and only after checking that {@code jdk.jfr} is present, so the library still loads on
+ * JVMs without the Flight Recorder API.
+ *
+ * @since 0.4.0
+ */
+@Name(MaskingEvent.NAME)
+@Label("Payload Masking")
+@Category("Data Masking")
+@Description("A payload masked by a JSON, XML, query parameter or JavaBeans masker")
+@StackTrace(false)
+@Threshold(MaskingEvent.DEFAULT_THRESHOLD)
+final class MaskingEvent extends Event {
+    static final String NAME = "com.jeetatl.datamasking.Masking";
+    static final String DEFAULT_THRESHOLD = "1 ms";
+    private static final EventType TYPE = EventType.getEventType(MaskingEvent.class);
+
+    @Label("Masker")
+    String masker;
+
+    @Label("Engine")
+    @Description("The parser or scanner that masked the payload; prefilter if it was skipped")
+    String engine;
+
+    @Label("Payload Length")
+    @Description("Length of the payload, in characters")
+    long payloadLength;
+
+    @Label("Field Count")
+    @Description("Number of field values examined")
+    int fieldCount;
+
+    @Label("Masked Value Count")
+    @Description("Number of field values masked")
+    int maskedValueCount;
+
+    /**
+     * @return true if a recording is running with this event enabled.
+     */
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
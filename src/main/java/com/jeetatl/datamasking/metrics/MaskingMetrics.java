@@ -0,0 +1,62 @@
+package com.jeetatl.datamasking.metrics;
+
+/**
+ * <p>{@code MaskingMetrics} receives measurements from the maskers and from
+ * {@link com.jeetatl.datamasking.config.CompiledMaskingConfiguration}.  An implementation is
+ * installed with
+ * {@link com.jeetatl.datamasking.config.MaskingConfiguration#setMetrics(MaskingMetrics)}; when
+ * none is installed, nothing is measured and the maskers only pay for a null check per
+ * payload.  {@link DefaultMaskingMetrics} counts everything with {@code LongAdder}s; other
+ * implementations can forward the measurements to a monitoring system.</p>
+ *
+ * <p>For every payload, a masker first asks {@link #sample(MaskerType)} whether to measure it.
+ * A sampled payload is then reported once, by {@link #recordMasked} if it was masked or
+ * {@link #recordSkipped} if the prefilter showed it had nothing to mask.  A payload that cannot
+ * be parsed is returned unmasked, and is reported by {@link #recordParseFailure} only, whether it
+ * was sampled or not.  Sizes are in characters for text payloads and in bytes for byte payloads.</p>
+ *
+ * <p>Methods are called on the masking threads, so implementations must be thread-safe, must
+ * not block, and should not throw.</p>
+ *
+ * @since 0.4.0
+ */
+public interface MaskingMetrics {
+
+    /**
+     * Decides whether the payload a masker is about to process is measured.
+     * @param masker Masker processing the payload.
+     * @return true to measure the payload.
+     */
+    boolean sample(MaskerType masker);
+
+    /**
+     * Records a sampled payload that was masked.
+     * @param masker Masker that processed the payload.
+     * @param nanos Time taken, in nanoseconds.
+     * @param inputSize Size of the payload.
+     * @param outputSize Size of the masked payload.
+     */
+    void recordMasked(MaskerType masker, long nanos, long inputSize, long outputSize);
+
+    /**
+     * Records a sampled payload that was returned as is because it contains no configured field.
+     * @param masker Masker that processed the payload.
+     * @param nanos Time taken, in nanoseconds.
+     * @param inputSize Size of the payload.
+     */
+    void recordSkipped(MaskerType masker, long nanos, long inputSize);
+
+    /**
+     * Records a payload that could not be parsed and was returned unmasked.
+     * @param masker Masker that processed the payload.
+     * @param cause The parse error.
+     */
+    void recordParseFailure(MaskerType masker, Exception cause);
+
+    /**
+     * Records that a field was masked by a rule.  Called for every lookup that finds a
+     * configured rule, whether or not the payload is sampled.
+     * @param rule Field name or field pattern of the rule, as written in the configuration.
+     */
+    void recordFieldHit(String rule);
+}
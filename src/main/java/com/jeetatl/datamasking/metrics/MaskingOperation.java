@@ -0,0 +1,101 @@
+package com.jeetatl.datamasking.metrics;
+
+/**
+ * <p>{@code MaskingOperation} times one payload for the JDK Flight Recorder.  A masker calls
+ * {@link #begin(MaskerType)} before masking a payload, counts the fields it examines and masks,
+ * and calls {@link #commit(String, long)} when done.  The event,
+ * {@code com.jeetatl.datamasking.Masking}, carries the masker, the engine, the payload length,
+ * both counts and the duration.</p>
+ *
+ * <p>Events are only committed for payloads that take longer than the event's threshold, 1 ms
+ * by default; the threshold can be changed in the recording settings like for any other event:</p>
+ *
+ * <pre>
+ * recording.enable("com.jeetatl.datamasking.Masking").withThreshold(Duration.ofMillis(10));
+ * </pre>
+ *
+ * <p>{@link #begin(MaskerType)} returns null unless a recording with the event enabled is
+ * running, so when the Flight Recorder is off a masker only pays for a static check and a null
+ * check per field.  On JVMs without the {@code jdk.jfr} API, no event is ever recorded.</p>
+ *
+ * @since 0.4.0
+ */
+public final class MaskingOperation {
+    /**
+     * Engine reported for payloads the prefilter returned without parsing.
+     */
+    public static final String PREFILTER = "prefilter";
+
+    private static final boolean FLIGHT_RECORDER_AVAILABLE = isFlightRecorderAvailable();
+
+    private final MaskingEvent event;
+    private final MaskerType masker;
+    private int fieldCount;
+    private int maskedValueCount;
+
+    private MaskingOperation(MaskingEvent event, MaskerType masker) {
+        this.event = event;
+        this.masker = masker;
+    }
+
+    /**
+     * Starts timing a payload, if the Flight Recorder is recording masking events.
+     * @param masker Masker processing the payload.
+     * @return The operation to count fields in and commit, or null if no event is recorded.
+     */
+    public static MaskingOperation begin(MaskerType masker) {
+        if (!FLIGHT_RECORDER_AVAILABLE || !MaskingEvent.isTypeEnabled()) {
+            return null;
+        }
+        MaskingEvent event = new MaskingEvent();
+        event.begin();
+        return new MaskingOperation(event, masker);
+    }
+
+    /**
+     * Counts a field value that was examined.
+     */
+    public void countField() {
+        fieldCount++;
+    }
+
+    /**
+     * Counts a field value that was examined and masked.
+     */
+    public void countMaskedValue() {
+        fieldCount++;
+        maskedValueCount++;
+    }
+
+    /**
+     * Stops timing the payload and commits the event if it took longer than the threshold.
+     * @param engine Parser or scanner that masked the payload.
+     * @param payloadLength Length of the payload.
+     */
+    public void commit(String engine, long payloadLength) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.masker = masker.name();
+            event.engine = engine;
+            event.payloadLength = payloadLength;
+            event.fieldCount = fieldCount;
+            event.maskedValueCount = maskedValueCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * A helper method that checks whether the Flight Recorder API can be used.
+     * @return true if {@code jdk.jfr} is present and the event class loads.
+     */
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, MaskingOperation.class.getClassLoader());
+            Class.forName(MaskingOperation.class.getPackage().getName() + ".MaskingEvent", true,
+                    MaskingOperation.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.jeetatl.datamasking.xml;
+
+import com.jeetatl.datamasking.CompiledMaskingSetting;
+import com.jeetatl.datamasking.MaskingPlan;
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>{@code InPlaceXmlMasker} tokenizes a raw xml payload just enough to find the ranges of
+ * text and attribute values that belong to masked names, and overwrites the masked characters
+ * in those ranges.  Every other character is left as it is, so the output is identical to the
+ * input apart from the masked characters.</p>
+ *
+ * <p>Names are matched on their local part, so {@code ns:cardNumber} matches
+ * {@code cardNumber}.  The value of a masked element is the text of all of its descendants, as
+ * with the DOM path, but child elements are kept.  Positions count code points, and an entity or
+ * character reference counts as one character.  Every unit of a masked character is overwritten,
+ * so a masked reference such as {@code &amp;amp;} becomes several masking characters and the
+ * payload length never changes.</p>
+ *
+ * <p>The payload is not validated.  Scanning stops at the first structural error; values masked
+ * before that point stay masked.</p>
+ */
+abstract class InPlaceXmlMasker {
+    private static final int INITIAL_DEPTH = 16;
+
+    final CompiledMaskingConfiguration config;
+    final int limit;
+
+    private CompiledMaskingSetting[] settings = new CompiledMaskingSetting[INITIAL_DEPTH];
+    private int[] segmentMarks = new int[INITIAL_DEPTH];
+    private int depth = 0;
+    private int openMasked = 0;
+
+    // Text segments of the masked elements that are open, stored as (start, end, isCdata).
+    private int[] segments = new int[3 * INITIAL_DEPTH];
+    private int segmentCount = 0;
+    private int maskedValues = 0;
+
+    InPlaceXmlMasker(CompiledMaskingConfiguration config, int limit) {
+        this.config = config;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the unit (char or byte) at an index.
+     * @param i Index of the unit.
+     * @return The unit, as an unsigned value.
+     */
+    abstract int at(int i);
+
+    /**
+     * Overwrites the unit at an index with the masking character.
+     * @param i Index of the unit.
+     * @param c Masking character.
+     */
+    abstract void set(int i, char c);
+
+    /**
+     * Returns the number of units used by the character that starts at an index.
+     * @param i Index of the first unit of the character.
+     * @return Number of units in the character.
+     */
+    abstract int characterLength(int i);
+
+    /**
+     * Returns the setting configured for the name held between two indexes, without decoding it.
+     * @param start Index of the first unit of the name.
+     * @param end Index after the last unit of the name.
+     * @return Configured setting, or null if the name is not configured.
+     */
+    abstract CompiledMaskingSetting find(int start, int end);
+
+    /**
+     * Scans the payload from {@code start} and masks it in place.
+     * @param start Index of the first unit of the payload.
+     * @return Number of text and attribute values that were masked.
+     */
+    int mask(int start) {
+        int i = start;
+        while (i < limit) {
+            if (at(i) != '<') {
+                int end = indexOf('<', i);
+                if (end < 0) {
+                    end = limit;
+                }
+                if (openMasked > 0) {
+                    addSegment(i, end, false);
+                }
+                i = end;
+            } else if (startsWith(i, "<!--")) {
+                i = skipPast(i + 4, "-->");
+            } else if (startsWith(i, "<![CDATA[")) {
+                int end = indexOf("]]>", i + 9);
+                if (end < 0) {
+                    return maskedValues;
+                }
+                if (openMasked > 0) {
+                    addSegment(i + 9, end, true);
+                }
+                i = end + 3;
+            } else if (startsWith(i, "<?")) {
+                i = skipPast(i + 2, "?>");
+            } else if (startsWith(i, "<!")) {
+                i = skipDeclaration(i + 2);
+            } else if (i + 1 < limit && at(i + 1) == '/') {
+                i = skipPast(i + 2, ">");
+                if (i > 0) {
+                    endElement();
+                }
+            } else {
+                i = startElement(i + 1);
+            }
+            if (i < 0) {
+                return maskedValues;
+            }
+        }
+        return maskedValues;
+    }
+
+    /**
+     * A helper method that reads a start tag, masks its attributes and opens the element.
+     * @param start Index of the first unit of the element name.
+     * @return Index after the start tag, or -1 if the tag is not terminated.
+     */
+    private int startElement(int start) {
+        int i = start;
+        while (i < limit && !isNameEnd(at(i))) {
+            i++;
+        }
+        CompiledMaskingSetting elementSetting = find(localNameStart(start, i), i);
+
+        while (i < limit) {
+            int c = at(i);
+            if (isWhitespace(c)) {
+                i++;
+            } else if (c == '>') {
+                openElement(elementSetting);
+                return i + 1;
+            } else if (c == '/') {
+                return i + 2 <= limit ? i + 2 : -1;
+            } else {
+                i = attribute(i);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A helper method that reads one attribute and masks its value if configured.
+     * @param start Index of the first unit of the attribute name.
+     * @return Index after the closing quote, or -1 if the attribute is not terminated.
+     */
+    private int attribute(int start) {
+        int i = start;
+        while (i < limit && at(i) != '=' && !isWhitespace(at(i))) {
+            i++;
+        }
+        int nameEnd = i;
+        while (i < limit && (at(i) == '=' || isWhitespace(at(i)))) {
+            i++;
+        }
+        if (i >= limit || (at(i) != '"' && at(i) != '\'')) {
+            return -1;
+        }
+        int quote = at(i);
+        int valueStart = i + 1;
+        int valueEnd = indexOf((char) quote, valueStart);
+        if (valueEnd < 0) {
+            return -1;
+        }
+
+        if (config.isAttributesMaskEnabled() && !isNamespaceDeclaration(start, nameEnd)) {
+            CompiledMaskingSetting ms = find(localNameStart(start, nameEnd), nameEnd);
+            if (ms != null) {
+                int length = countCharacters(valueStart, valueEnd, false);
+                maskRange(ms, valueStart, valueEnd, false, 0, length);
+                maskedValues++;
+            }
+        }
+        return valueEnd + 1;
+    }
+
+    /**
+     * A helper method that pushes an element on the depth stack.
+     * @param ms Setting configured for the element, or null if it is not masked.
+     */
+    private void openElement(CompiledMaskingSetting ms) {
+        if (depth == settings.length) {
+            settings = Arrays.copyOf(settings, depth * 2);
+            segmentMarks = Arrays.copyOf(segmentMarks, depth * 2);
+        }
+        settings[depth] = ms;
+        segmentMarks[depth] = segmentCount;
+        depth++;
+        if (ms != null) {
+            openMasked++;
+        }
+    }
+
+    /**
+     * A helper method that pops an element and, if it is masked, masks the text collected for it.
+     */
+    private void endElement() {
+        if (depth == 0) {
+            return;
+        }
+        depth--;
+        CompiledMaskingSetting ms = settings[depth];
+        if (ms == null) {
+            return;
+        }
+
+        int first = segmentMarks[depth];
+        int length = 0;
+        for (int s = first; s < segmentCount; s++) {
+            length += countCharacters(segments[3 * s], segments[3 * s + 1], segments[3 * s + 2] != 0);
+        }
+        int index = 0;
+        for (int s = first; s < segmentCount; s++) {
+            index = maskRange(ms, segments[3 * s], segments[3 * s + 1], segments[3 * s + 2] != 0, index, length);
+        }
+        maskedValues++;
+
+        openMasked--;
+        if (openMasked == 0) {
+            segmentCount = 0;
+        }
+    }
+
+    /**
+     * A helper method that records a text segment for the masked elements that are open.
+     */
+    private void addSegment(int start, int end, boolean isCdata) {
+        if (3 * segmentCount + 3 > segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+        }
+        segments[3 * segmentCount] = start;
+        segments[3 * segmentCount + 1] = end;
+        segments[3 * segmentCount + 2] = isCdata ? 1 : 0;
+        segmentCount++;
+    }
+
+    /**
+     * A helper method that counts the characters in a range, counting a reference as one.
+     */
+    private int countCharacters(int start, int end, boolean isCdata) {
+        int count = 0;
+        for (int i = start; i < end; i += unitLength(i, end, isCdata)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * A helper method that masks the characters of a range that fall in the masked positions
+     * of a value.
+     * @param ms Setting to apply.
+     * @param start Index of the first unit of the range.
+     * @param end Index after the last unit of the range.
+     * @param isCdata true if references are not recognized in the range.
+     * @param index Position in the value of the first character of the range.
+     * @param length Number of characters in the whole value.
+     * @return Position in the value of the character after the range.
+     */
+    private int maskRange(CompiledMaskingSetting ms, int start, int end, boolean isCdata, int index, int length) {
+        char maskingCharacter = ms.getMaskingCharacter();
+        MaskingPlan plan = ms.plan(length);
+        for (int i = start; i < end; index++) {
+            int unitLength = unitLength(i, end, isCdata);
+            if (plan.isMasked(index)) {
+                for (int k = 0; k < unitLength; k++) {
+                    set(i + k, maskingCharacter);
+                }
+            }
+            i += unitLength;
+        }
+        return index;
+    }
+
+    /**
+     * A helper method that returns the number of units in the character at an index, treating
+     * an entity or character reference as one character.
+     */
+    private int unitLength(int i, int end, boolean isCdata) {
+        if (!isCdata && at(i) == '&') {
+            for (int k = i + 1; k < end; k++) {
+                if (at(k) == ';') {
+                    return k + 1 - i;
+                }
+            }
+        }
+        return Math.min(characterLength(i), end - i);
+    }
+
+    private int localNameStart(int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (at(i) == ':') {
+                return i + 1;
+            }
+        }
+        return start;
+    }
+
+    private boolean isNamespaceDeclaration(int start, int end) {
+        return startsWith(start, "xmlns") && (end == start + 5 || at(start + 5) == ':');
+    }
+
+    private int skipDeclaration(int start) {
+        int brackets = 0;
+        for (int i = start; i < limit; i++) {
+            int c = at(i);
+            if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '"' || c == '\'') {
+                i = indexOf((char) c, i + 1);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '>' && brackets <= 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int skipPast(int start, String terminator) {
+        int i = indexOf(terminator, start);
+        return i < 0 ? -1 : i + terminator.length();
+    }
+
+    private int indexOf(char c, int start) {
+        for (int i = start; i < limit; i++) {
+            if (at(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int start) {
+        for (int i = indexOf(s.charAt(0), start); i >= 0; i = indexOf(s.charAt(0), i + 1)) {
+            if (startsWith(i, s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int start, String s) {
+        if (start + s.length() > limit) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            if (at(start + k) != s.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isNameEnd(int c) {
+        return isWhitespace(c) || c == '>' || c == '/';
+    }
+
+    /**
+     * {@code InPlaceXmlMasker} over a {@code char[]}.
+     */
+    static class Chars extends InPlaceXmlMasker {
+        private final char[] chars;
+
+        Chars(CompiledMaskingConfiguration config, char[] chars, int offset, int length) {
+            super(config, offset + length);
+            this.chars = chars;
+        }
+
+        @Override
+        int at(int i) {
+            return chars[i];
+        }
+
+        @Override
+        void set(int i, char c) {
+            chars[i] = c;
+        }
+
+        @Override
+        int characterLength(int i) {
+            return Character.isHighSurrogate(chars[i]) && i + 1 < limit && Character.isLowSurrogate(chars[i + 1]) ? 2 : 1;
+        }
+
+        @Override
+        CompiledMaskingSetting find(int start, int end) {
+            return config.findMaskingSetting(chars, start, end - start);
+        }
+    }
+
+    /**
+     * {@code InPlaceXmlMasker} over UTF-8 bytes in a heap or direct {@code ByteBuffer}.
+     */
+    static class Bytes extends InPlaceXmlMasker {
+        private final ByteBuffer buffer;
+
+        Bytes(CompiledMaskingConfiguration config, ByteBuffer buffer) {
+            super(config, buffer.limit());
+            this.buffer = buffer;
+        }
+
+        @Override
+        int at(int i) {
+            return buffer.get(i) & 0xFF;
+        }
+
+        @Override
+        void set(int i, char c) {
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("In-place masking of bytes requires an ASCII masking character.");
+            }
+            buffer.put(i, (byte) c);
+        }
+
+        @Override
+        int characterLength(int i) {
+            int b = at(i);
+            if (b < 0xC0) {
+                return 1;
+            } else if (b < 0xE0) {
+                return 2;
+            } else if (b < 0xF0) {
+                return 3;
+            }
+            return 4;
+        }
+
+        @Override
+        CompiledMaskingSetting find(int start, int end) {
+            return config.findMaskingSetting(buffer, start, end);
+        }
+    }
+}
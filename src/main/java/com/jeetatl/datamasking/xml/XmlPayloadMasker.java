@@ -1,6 +1,10 @@
 package com.jeetatl.datamasking.xml;
 
+import com.jeetatl.datamasking.config.CompiledMaskingConfiguration;
 import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.metrics.MaskerType;
+import com.jeetatl.datamasking.metrics.MaskingMetrics;
+import com.jeetatl.datamasking.metrics.MaskingOperation;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -9,6 +13,12 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -16,8 +26,17 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * <p>{@code XmlPayloadMasker} is a concrete class used to apply {@link MaskingConfiguration} to
@@ -27,11 +46,31 @@ import java.nio.charset.StandardCharsets;
  * {@link MaskingConfiguration}.  Using default settings, the attributes are also masked.
  * This behavior can be changed by disabling attribute masking via the
  * {@link MaskingConfiguration#setAttributeMaskEnabled(boolean)} method.
+ *
+ * <p>By default the payload is parsed into a DOM and written back out with a {@code Transformer}.
+ * When streaming is enabled via {@link #setStreamingEnabled(boolean)}, events are copied from an
+ * {@link XMLStreamReader} to an {@link XMLStreamWriter} and masked as they pass through.  Memory
+ * use is then bounded by element depth plus the text of the masked element currently open.
+ * As with the DOM path, a masked element is written out with its text content masked and its
+ * child elements, comments and processing instructions removed.</p>
+ *
+ * <p>The {@code maskInPlace} methods overwrite only the masked characters of a raw payload, so
+ * whitespace, attribute quoting, the xml declaration and every other byte stay as they were.</p>
+ *
+ * <p>Payloads in which no configured field name occurs are returned untouched without being
+ * parsed; see {@link MaskingConfiguration#mayContainMaskedField(CharSequence)}.  For a field
+ * pattern, the prefilter looks for its longest literal part, such as {@code CardNumber} in
+ * {@code *CardNumber}; a pattern without one, such as a case-insensitive regular expression,
+ * makes every payload be parsed.</p>
  */
 public class XmlPayloadMasker {
 
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String OUTPUT_ENCODING = "UTF-8";
 
     MaskingConfiguration config = null;
+    boolean streamingEnabled = false;
 
     /**
      *  Constructs an {@code XmlPayloadMasker} with the provided configuration settings.
@@ -50,6 +89,44 @@ public class XmlPayloadMasker {
         if (input == null) {
             return input;
         }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.XML);
+        long start = sampled ? System.nanoTime() : 0;
+        MaskingOperation op = MaskingOperation.begin(MaskerType.XML);
+        if (!snapshot.mayContainMaskedField(input)) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.XML, System.nanoTime() - start, input.length());
+            }
+            if (op != null) {
+                op.commit(MaskingOperation.PREFILTER, input.length());
+            }
+            return input;
+        }
+
+        if (streamingEnabled) {
+            StringWriter sw = new StringWriter(input.length());
+            try {
+                XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(input));
+                XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(sw);
+                maskEvents(snapshot, reader, writer, null, op);
+            } catch (XMLStreamException e) {
+                if (metrics != null) {
+                    metrics.recordParseFailure(MaskerType.XML, e);
+                }
+                return input;
+            } finally {
+                if (op != null) {
+                    op.commit("stax", input.length());
+                }
+            }
+            String masked = sw.toString();
+            if (sampled) {
+                metrics.recordMasked(MaskerType.XML, System.nanoTime() - start, input.length(), masked.length());
+            }
+            return masked;
+        }
+
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware(true);
         Document document = null;
@@ -58,7 +135,7 @@ public class XmlPayloadMasker {
         try {
             document = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
 
-            maskNodeTree(document.getFirstChild());
+            maskNodeTree(snapshot, document.getFirstChild(), op);
 
             TransformerFactory tf = TransformerFactory.newInstance();
             Transformer t = tf.newTransformer();
@@ -66,39 +143,337 @@ public class XmlPayloadMasker {
             t.transform(new DOMSource(document), new StreamResult(sw));
 
         } catch (ParserConfigurationException | SAXException | IOException  | TransformerException e) {
+            if (metrics != null) {
+                metrics.recordParseFailure(MaskerType.XML, e);
+            }
             return input;
+        } finally {
+            if (op != null) {
+                op.commit("dom", input.length());
+            }
+        }
+
+        String masked = sw.toString();
+        if (sampled) {
+            metrics.recordMasked(MaskerType.XML, System.nanoTime() - start, input.length(), masked.length());
+        }
+        return masked;
+    }
+
+    /**
+     * This method streams an xml payload from {@code in} to {@code out}, applying the masking
+     * settings as events pass through.  It always streams, whether or not
+     * {@link #isStreamingEnabled()} is set.  Neither stream is closed.
+     * @param in Reader positioned at the start of an xml payload.
+     * @param out Writer the masked xml is written to.
+     * @throws XMLStreamException If the payload is not well-formed or cannot be read or written.
+     *                            Any output written before the error is left in {@code out}.
+     */
+    public void getMasked(Reader in, Writer out) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out);
+        maskEvents(config.snapshot(), reader, writer, null, null);
+    }
+
+    /**
+     * This method streams an xml payload from {@code in} to {@code out}, applying the masking
+     * settings as events pass through.  The input encoding is detected from the payload and
+     * the output is written as UTF-8.  Neither stream is closed.
+     * @param in InputStream positioned at the start of an xml payload.
+     * @param out OutputStream the masked xml is written to.
+     * @throws XMLStreamException If the payload is not well-formed or cannot be read or written.
+     *                            Any output written before the error is left in {@code out}.
+     */
+    public void getMasked(InputStream in, OutputStream out) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, OUTPUT_ENCODING);
+        maskEvents(config.snapshot(), reader, writer, OUTPUT_ENCODING, null);
+    }
+
+    /**
+     * This method masks an xml payload in place.  Only the masked characters of configured text
+     * and attribute values are overwritten, so the payload is otherwise unchanged and keeps its
+     * length.  Unlike {@link #getMasked(String)}, child elements of a masked element are kept;
+     * their text is masked as part of the masked element's value.
+     * @param payload Characters of an xml payload; modified in place.
+     * @return Number of text and attribute values that were masked.
+     */
+    public int maskInPlace(char[] payload) {
+        if (payload == null) {
+            return 0;
+        }
+        return maskInPlace(payload, 0, payload.length);
+    }
+
+    /**
+     * This method masks the xml payload held in part of a {@code char[]} in place.
+     * @param payload Array holding the payload; modified in place.
+     * @param offset Index of the first character of the payload.
+     * @param length Number of characters in the payload.
+     * @return Number of text and attribute values that were masked.
+     * @see #maskInPlace(char[])
+     */
+    public int maskInPlace(char[] payload, int offset, int length) {
+        if (payload == null || length == 0) {
+            return 0;
         }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.XML);
+        long start = sampled ? System.nanoTime() : 0;
+        if (!snapshot.mayContainMaskedField(CharBuffer.wrap(payload, offset, length))) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.XML, System.nanoTime() - start, length);
+            }
+            return 0;
+        }
+        int masked = new InPlaceXmlMasker.Chars(snapshot, payload, offset, length).mask(offset);
+        if (sampled) {
+            metrics.recordMasked(MaskerType.XML, System.nanoTime() - start, length, length);
+        }
+        return masked;
+    }
+
+    /**
+     * This method masks a UTF-8 xml payload in place.
+     * @param payload Bytes of a UTF-8 xml payload; modified in place.
+     * @return Number of text and attribute values that were masked.
+     * @throws IllegalArgumentException If a masking character that applies is not ASCII.
+     * @see #maskInPlace(char[])
+     */
+    public int maskInPlace(byte[] payload) {
+        if (payload == null) {
+            return 0;
+        }
+        return maskInPlace(payload, 0, payload.length);
+    }
 
-        return sw.toString();
+    /**
+     * This method masks the UTF-8 xml payload held in part of a {@code byte[]} in place.
+     * @param payload Array holding the payload; modified in place.
+     * @param offset Index of the first byte of the payload.
+     * @param length Number of bytes in the payload.
+     * @return Number of text and attribute values that were masked.
+     * @throws IllegalArgumentException If a masking character that applies is not ASCII.
+     * @see #maskInPlace(char[])
+     */
+    public int maskInPlace(byte[] payload, int offset, int length) {
+        if (payload == null || length == 0) {
+            return 0;
+        }
+        return maskInPlace(ByteBuffer.wrap(payload, offset, length));
+    }
+
+    /**
+     * This method masks the UTF-8 xml payload between the buffer's position and limit in place.
+     * Heap and direct buffers are both supported.  The buffer's position and limit are not changed.
+     * @param payload Buffer holding the payload; modified in place.
+     * @return Number of text and attribute values that were masked.
+     * @throws IllegalArgumentException If a masking character that applies is not ASCII.
+     * @see #maskInPlace(char[])
+     */
+    public int maskInPlace(ByteBuffer payload) {
+        if (payload == null || !payload.hasRemaining()) {
+            return 0;
+        }
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        MaskingMetrics metrics = snapshot.getMetrics();
+        boolean sampled = metrics != null && metrics.sample(MaskerType.XML);
+        long start = sampled ? System.nanoTime() : 0;
+        if (!snapshot.mayContainMaskedField(payload)) {
+            if (sampled) {
+                metrics.recordSkipped(MaskerType.XML, System.nanoTime() - start, payload.remaining());
+            }
+            return 0;
+        }
+        int masked = new InPlaceXmlMasker.Bytes(snapshot, payload).mask(payload.position());
+        if (sampled) {
+            metrics.recordMasked(MaskerType.XML, System.nanoTime() - start, payload.remaining(), payload.remaining());
+        }
+        return masked;
+    }
+
+    /**
+     * A helper method that copies events from {@code reader} to {@code writer}.  Attributes are
+     * masked as their element is written.  The text of a masked element, including the text of
+     * all of its descendants, is collected and written as a single masked text node when the
+     * element ends.  Masked elements nested inside it are masked first, as in the DOM path.
+     * @param snapshot Configuration snapshot to apply.
+     * @param reader Reader positioned before the first event.
+     * @param writer Writer receiving the masked events.
+     * @param encoding Encoding to declare if the payload has an xml declaration, or null to
+     *                 keep the encoding it declares.
+     * @param op Flight Recorder operation counting the elements and attributes, or null.
+     * @throws XMLStreamException If reading or writing fails.
+     */
+    private void maskEvents(CompiledMaskingConfiguration snapshot, XMLStreamReader reader, XMLStreamWriter writer,
+                            String encoding, MaskingOperation op) throws XMLStreamException {
+        Deque<StringBuilder> buffers = new ArrayDeque<>();
+        Deque<Boolean> masked = new ArrayDeque<>();
+
+        if (reader.getVersion() != null) {
+            String declaredEncoding = encoding == null ? reader.getCharacterEncodingScheme() : encoding;
+            if (declaredEncoding == null) {
+                writer.writeStartDocument(reader.getVersion());
+            } else {
+                writer.writeStartDocument(declaredEncoding, reader.getVersion());
+            }
+        }
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    boolean isMasked = snapshot.containsMaskingSettingForField(reader.getLocalName());
+                    count(op, isMasked);
+                    if (buffers.isEmpty()) {
+                        writeStartElement(snapshot, reader, writer, op);
+                    }
+                    if (isMasked) {
+                        buffers.push(new StringBuilder());
+                    }
+                    masked.push(isMasked);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (masked.pop()) {
+                        StringBuilder text = buffers.pop();
+                        snapshot.apply(reader.getLocalName(), text);
+                        if (buffers.isEmpty()) {
+                            writer.writeCharacters(text.toString());
+                        } else {
+                            buffers.peek().append(text);
+                        }
+                    }
+                    if (buffers.isEmpty()) {
+                        writer.writeEndElement();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    if (!buffers.isEmpty()) {
+                        buffers.peek().append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    } else if (event == XMLStreamConstants.CDATA) {
+                        writer.writeCData(reader.getText());
+                    } else {
+                        writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (buffers.isEmpty()) {
+                        writer.writeComment(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (buffers.isEmpty()) {
+                        writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                    }
+                    break;
+                case XMLStreamConstants.DTD:
+                    writer.writeDTD(reader.getText());
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    writer.writeEndDocument();
+                    break;
+                default:
+                    break;
+            }
+        }
+        writer.flush();
     }
 
     /**
      * A helper method to recursively search for all elements and
      * attributes and to apply masking settings.
+     * @param snapshot Configuration snapshot to apply.
      * @param node The root node of the document.
+     * @param op Flight Recorder operation counting the elements and attributes, or null.
      */
-    private void maskNodeTree(Node node) {
+    private void maskNodeTree(CompiledMaskingConfiguration snapshot, Node node, MaskingOperation op) {
         NodeList nodeList = node.getChildNodes();
         for (int i = 0; i < nodeList.getLength(); i++) {
             if (nodeList.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                maskNodeTree(nodeList.item(i));
+                maskNodeTree(snapshot, nodeList.item(i), op);
             }
         }
 
-        if (config.containsMaskingSettingForField(node.getLocalName())) {
-            node.setTextContent(config.apply(node.getLocalName(), node.getTextContent()));
+        boolean isMasked = snapshot.containsMaskingSettingForField(node.getLocalName());
+        count(op, isMasked);
+        if (isMasked) {
+            node.setTextContent(snapshot.apply(node.getLocalName(), node.getTextContent()));
         }
-        if (config.isAttributesMaskEnabled() && node.hasAttributes()){
+        if (snapshot.isAttributesMaskEnabled() && node.hasAttributes()){
             NamedNodeMap nodeMap = node.getAttributes();
             for (int i = 0; i < nodeMap.getLength(); i++) {
                 Node attrNode = nodeMap.item(i);
-                if (config.containsMaskingSettingForField(attrNode.getLocalName())) {
-                    attrNode.setTextContent(config.apply(attrNode.getLocalName(), attrNode.getTextContent()));
+                boolean isAttrMasked = snapshot.containsMaskingSettingForField(attrNode.getLocalName());
+                count(op, isAttrMasked);
+                if (isAttrMasked) {
+                    attrNode.setTextContent(snapshot.apply(attrNode.getLocalName(), attrNode.getTextContent()));
                 }
             }
         }
     }
 
+    /**
+     * A helper method that counts an element or attribute in a Flight Recorder operation.
+     * @param op Operation to count in, or null.
+     * @param masked true if the element or attribute is masked.
+     */
+    private static void count(MaskingOperation op, boolean masked) {
+        if (op == null) {
+            return;
+        }
+        if (masked) {
+            op.countMaskedValue();
+        } else {
+            op.countField();
+        }
+    }
+
+    /**
+     * A helper method that writes the start tag of the current element, with its namespace
+     * declarations and its attributes masked.
+     * @param snapshot Configuration snapshot to apply.
+     * @param reader Reader positioned on a {@code START_ELEMENT} event.
+     * @param writer Writer receiving the start tag.
+     * @param op Flight Recorder operation counting the attributes, or null.
+     * @throws XMLStreamException If writing fails.
+     */
+    private void writeStartElement(CompiledMaskingConfiguration snapshot, XMLStreamReader reader,
+                                   XMLStreamWriter writer, MaskingOperation op) throws XMLStreamException {
+        String prefix = reader.getPrefix();
+        String namespaceURI = reader.getNamespaceURI();
+        writer.writeStartElement(prefix == null ? "" : prefix, reader.getLocalName(), namespaceURI == null ? "" : namespaceURI);
+
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String nsPrefix = reader.getNamespacePrefix(i);
+            if (nsPrefix == null || nsPrefix.isEmpty()) {
+                writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+            } else {
+                writer.writeNamespace(nsPrefix, reader.getNamespaceURI(i));
+            }
+        }
+
+        boolean maskAttributes = snapshot.isAttributesMaskEnabled();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String localName = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i);
+            if (maskAttributes && snapshot.containsMaskingSettingForField(localName)) {
+                value = snapshot.apply(localName, value);
+                count(op, true);
+            } else {
+                count(op, false);
+            }
+            String attrPrefix = reader.getAttributePrefix(i);
+            if (attrPrefix == null || attrPrefix.isEmpty()) {
+                writer.writeAttribute(localName, value);
+            } else {
+                writer.writeAttribute(attrPrefix, reader.getAttributeNamespace(i), localName, value);
+            }
+        }
+    }
+
     /**
      * @return The masking configuration
      */
@@ -113,4 +488,34 @@ public class XmlPayloadMasker {
     public void setConfig(MaskingConfiguration config) {
         this.config = config;
     }
+
+    /**
+     * Return whether {@link #getMasked(String)} uses the streaming event copier.
+     * @return true if streaming is enabled.
+     */
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    /**
+     * Set whether {@link #getMasked(String)} uses the streaming event copier instead of the
+     * DOM and {@code Transformer} pipeline.  Default: false.
+     * @param streamingEnabled true to enable streaming.
+     */
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    /**
+     * A helper method that creates the shared {@code XMLInputFactory}.  External entities are
+     * not resolved and adjacent text is reported as one event.
+     * @return Configured input factory.
+     */
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
 }
@@ -0,0 +1,193 @@
+package com.jeetatl.datamasking;
+
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.json.JsonPayloadMasker;
+import com.jeetatl.datamasking.maskers.JavaBeansMasker;
+import com.jeetatl.datamasking.maskers.QueryParameterMasker;
+import com.jeetatl.datamasking.maskers.TextContentMasker;
+import com.jeetatl.datamasking.xml.XmlPayloadMasker;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Asserts how many bytes the masking hot paths allocate per operation, measured with
+ * {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes}, so that an allocation
+ * regression fails the build.  Each path is measured in rounds after a short warm-up and passes
+ * on the first round within its budget; code that is not compiled yet allocates at least as
+ * much as compiled code, so only paths that stay over budget until the JIT has compiled them
+ * run the full {@code MAX_OPERATIONS}.  Paths documented as allocation-free have a budget of
+ * zero; the others have a budget a little above their current allocation.  The tests are skipped
+ * on JVMs that cannot measure allocation per thread.
+ */
+public class AllocationBudgetTests {
+    private static final int WARMUP_OPERATIONS = 2000;
+    private static final int MEASURED_OPERATIONS = 1000;
+    private static final int MAX_OPERATIONS = 30000;
+    private static final String CONFIG = "cardNumber:~7-12|cvv:+100%|email:+3|ssn:-4";
+    private static final String JSON = "{\"id\":\"1842\",\"cardNumber\":\"4111111111111111\",\"cvv\":\"123\","
+            + "\"name\":\"Jane Doe\",\"email\":\"jane.doe@example.com\",\"amount\":\"42.00\",\"ssn\":\"123456789\"}";
+    private static final String XML = "<order><id>1842</id><cardNumber>4111111111111111</cardNumber><cvv>123</cvv>"
+            + "<name>Jane Doe</name><email>jane.doe@example.com</email><amount>42.00</amount><ssn>123456789</ssn></order>";
+    private static final String QUERY = "id=1842&cardNumber=4111111111111111&cvv=123&name=Jane+Doe"
+            + "&email=jane.doe%40example.com&amount=42.00&ssn=123456789";
+    private static final String LOG_LINE = "2016-10-11 14:03:28.004 INFO [exec-3] PaymentService - charged card "
+            + "4111 1111 1111 1111 for customer jane.doe@example.com";
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static volatile Object sink;
+
+    @BeforeClass
+    public static void setUpClass() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void testMaskingSetting() throws Exception {
+        MaskingSetting ms = new MaskingConfiguration(CONFIG).getMaskingSetting("cardNumber");
+        CompiledMaskingSetting cms = ms.compile();
+        String value = "4111111111111111";
+        char[] chars = new char[value.length()];
+        StringBuilder out = new StringBuilder(64);
+
+        assertBudget("MaskingSetting.apply(String)", 128, () -> sink = ms.apply(value));
+        assertBudget("CompiledMaskingSetting.apply(char[])", 0, () -> {
+            value.getChars(0, value.length(), chars, 0);
+            cms.apply(chars, 0, chars.length);
+        });
+        assertBudget("CompiledMaskingSetting.apply(CharSequence, Appendable)", 0, () -> {
+            out.setLength(0);
+            ms.compile().apply(value, out);
+        });
+    }
+
+    @Test
+    public void testMaskingConfiguration() throws Exception {
+        MaskingConfiguration config = new MaskingConfiguration(CONFIG);
+        StringBuilder out = new StringBuilder(64);
+
+        assertBudget("MaskingConfiguration.apply(String, String)", 128,
+                () -> sink = config.apply("cardNumber", "4111111111111111"));
+        assertBudget("MaskingConfiguration.apply(String, CharSequence, Appendable)", 0, () -> {
+            out.setLength(0);
+            config.apply("cardNumber", "4111111111111111", out);
+        });
+    }
+
+    @Test
+    public void testJsonPayloadMasker() throws Exception {
+        JsonPayloadMasker masker = new JsonPayloadMasker(new MaskingConfiguration(CONFIG));
+        byte[] source = JSON.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[source.length];
+
+        assertBudget("JsonPayloadMasker.getMasked(String)", 4096, () -> sink = masker.getMasked(JSON));
+        assertBudget("JsonPayloadMasker.maskInPlace(byte[])", 512, () -> {
+            System.arraycopy(source, 0, bytes, 0, source.length);
+            masker.maskInPlace(bytes);
+        });
+    }
+
+    @Test
+    public void testXmlPayloadMasker() throws Exception {
+        XmlPayloadMasker masker = new XmlPayloadMasker(new MaskingConfiguration(CONFIG));
+        byte[] source = XML.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[source.length];
+
+        assertBudget("XmlPayloadMasker.getMasked(String)", 65536, () -> sink = masker.getMasked(XML));
+        assertBudget("XmlPayloadMasker.maskInPlace(byte[])", 768, () -> {
+            System.arraycopy(source, 0, bytes, 0, source.length);
+            masker.maskInPlace(bytes);
+        });
+    }
+
+    @Test
+    public void testQueryParameterMasker() throws Exception {
+        QueryParameterMasker masker = new QueryParameterMasker(new MaskingConfiguration(CONFIG));
+        StringBuilder out = new StringBuilder(256);
+
+        assertBudget("QueryParameterMasker.getMasked(String)", 512, () -> sink = masker.getMasked(QUERY));
+        assertBudget("QueryParameterMasker.getMasked(CharSequence, StringBuilder)", 0, () -> {
+            out.setLength(0);
+            masker.getMasked(QUERY, out);
+        });
+    }
+
+    @Test
+    public void testJavaBeansMasker() throws Exception {
+        JavaBeansMasker masker = new JavaBeansMasker(new MaskingConfiguration(CONFIG));
+        Order order = new Order();
+
+        assertBudget("JavaBeansMasker.getMasked(Object)", 10000, () -> sink = masker.getMasked(order));
+    }
+
+    @Test
+    public void testTextContentMasker() throws Exception {
+        TextContentMasker masker = new TextContentMasker();
+        StringBuilder out = new StringBuilder(256);
+
+        assertBudget("TextContentMasker.getMasked(CharSequence, StringBuilder)", 0, () -> {
+            out.setLength(0);
+            masker.getMasked(LOG_LINE, out);
+        });
+    }
+
+    /**
+     * A helper method that warms an operation up, then measures it in rounds of
+     * {@code MEASURED_OPERATIONS} runs until a round allocates at most {@code budget} bytes per
+     * run on average, and fails if none has after {@code MAX_OPERATIONS} runs.
+     * @param name Name of the operation, for the failure message.
+     * @param budget Maximum number of bytes per run.
+     * @param operation Operation to measure.
+     */
+    private static void assertBudget(String name, long budget, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            operation.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long perOperation = Long.MAX_VALUE;
+        for (int runs = WARMUP_OPERATIONS; runs < MAX_OPERATIONS && perOperation > budget;
+             runs += MEASURED_OPERATIONS) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+                operation.run();
+            }
+            perOperation = (threads.getThreadAllocatedBytes(thread) - before) / MEASURED_OPERATIONS;
+        }
+        Assert.assertTrue(name + " allocated " + perOperation + " bytes per operation; the budget is " + budget,
+                perOperation <= budget);
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    public static class Order {
+        public String getId() {
+            return "1842";
+        }
+
+        public String getCardNumber() {
+            return "4111111111111111";
+        }
+
+        public String getCvv() {
+            return "123";
+        }
+
+        public String getName() {
+            return "Jane Doe";
+        }
+
+        public String getEmail() {
+            return "jane.doe@example.com";
+        }
+    }
+}
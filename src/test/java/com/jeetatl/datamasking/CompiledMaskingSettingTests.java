@@ -0,0 +1,228 @@
+package com.jeetatl.datamasking;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class CompiledMaskingSettingTests {
+
+    @Test
+    public void testCompileIsCached() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(2);
+        CompiledMaskingSetting cms = ms.compile();
+        Assert.assertSame(cms, ms.compile());
+
+        ms.setCharactersMaskLeft(3);
+        Assert.assertNotSame(cms, ms.compile());
+        Assert.assertEquals("XXX4", ms.compile().apply("1234"));
+        Assert.assertEquals("XX34", cms.apply("1234"));
+    }
+
+    @Test
+    public void testCompiledSettingsAreCanonical() {
+        MaskingSetting a = new MaskingSetting();
+        a.addInnerMasking(1, 3);
+        a.addInnerMasking(2, 5);
+        a.setCharactersMaskRight(2);
+        MaskingSetting b = new MaskingSetting(0, 2, 0, 0, 'X');
+        b.addInnerMasking(1, 5);
+
+        Assert.assertEquals(a.compile(), b.compile());
+        Assert.assertEquals(a.compile().hashCode(), b.compile().hashCode());
+        Assert.assertSame(a.compile(), b.compile());
+
+        b.setMaskingCharacter('*');
+        Assert.assertNotEquals(a.compile(), b.compile());
+        b.setMaskingCharacter('X');
+        b.setPercentMaskLeft(10);
+        Assert.assertNotEquals(a.compile(), b.compile());
+    }
+
+    @Test
+    public void testMergedPlan() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(2);
+        ms.setPercentMaskRight(20);
+        ms.addInnerMasking(7, 9);
+        ms.addInnerMasking(2, 4);
+        ms.addInnerMasking(5, 5);
+
+        MaskingPlan plan = ms.compile().plan(10);
+        Assert.assertEquals(10, plan.getLength());
+        Assert.assertEquals(2, plan.getRangeCount());
+        Assert.assertEquals(0, plan.getRangeStart(0));
+        Assert.assertEquals(5, plan.getRangeEnd(0));
+        Assert.assertEquals(6, plan.getRangeStart(1));
+        Assert.assertEquals(10, plan.getRangeEnd(1));
+        Assert.assertFalse(plan.isMasked(5));
+        Assert.assertTrue(plan.isMasked(6));
+        Assert.assertSame(plan, ms.compile().plan(10));
+    }
+
+    @Test
+    public void testInnerRangeBeyondLength() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.addInnerMasking(3, 20);
+        ms.addInnerMasking(0, 1);
+
+        Assert.assertEquals("X2XX", ms.apply("1234"));
+        Assert.assertEquals("X", ms.apply("1"));
+    }
+
+    @Test
+    public void testFullyMaskedStringIsShared() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setPercentMaskLeft(100);
+        ms.setMaskingCharacter('*');
+
+        String masked = ms.apply("abcd");
+        Assert.assertEquals("****", masked);
+        Assert.assertSame(masked, ms.apply("wxyz"));
+        Assert.assertTrue(ms.compile().plan(4).isFullyMasked());
+        Assert.assertEquals(100, ms.apply(new String(new char[100])).length());
+    }
+
+    @Test
+    public void testUnmaskedStringIsReturned() {
+        MaskingSetting ms = new MaskingSetting();
+        String value = "abcd";
+        Assert.assertSame(value, ms.apply(value));
+        Assert.assertTrue(ms.compile().isEmpty());
+
+        ms.addInnerMasking(10, 12);
+        Assert.assertSame(value, ms.apply(value));
+        Assert.assertFalse(ms.compile().isEmpty());
+    }
+
+    @Test
+    public void testCharArrayApply() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskRight(2);
+        ms.addInnerMasking(1, 1);
+
+        char[] chars = "--abcdef--".toCharArray();
+        ms.compile().apply(chars, 2, 6);
+        Assert.assertEquals("--XbcdXX--", new String(chars));
+    }
+
+    @Test
+    public void testLongValuePlan() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setPercentMaskLeft(50);
+
+        MaskingPlan plan = ms.compile().plan(101);
+        Assert.assertEquals(51, plan.getRangeEnd(0));
+        Assert.assertNotSame(plan, ms.compile().plan(101));
+    }
+
+    @Test
+    public void testCopyToArray() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(1);
+        ms.addInnerMasking(4, 5);
+
+        char[] src = "ab123456cd".toCharArray();
+        char[] dst = "..........".toCharArray();
+        ms.apply(src, 2, 6, dst, 1);
+        Assert.assertEquals(".X23XX6...", new String(dst));
+        Assert.assertEquals("ab123456cd", new String(src));
+
+        ms = new MaskingSetting();
+        ms.apply(src, 0, 2, dst, 8);
+        Assert.assertEquals(".X23XX6.ab", new String(dst));
+    }
+
+    @Test
+    public void testCharBuffer() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskRight(2);
+
+        CharBuffer buffer = CharBuffer.wrap("[1234]".toCharArray(), 1, 4);
+        ms.apply(buffer);
+        Assert.assertEquals(1, buffer.position());
+        Assert.assertEquals("[12XX]", new String(buffer.array()));
+
+        CharBuffer direct = ByteBuffer.allocateDirect(16).asCharBuffer();
+        direct.put("abcd").flip();
+        ms.apply(direct);
+        Assert.assertEquals("abXX", direct.toString());
+    }
+
+    @Test
+    public void testAppendable() throws IOException {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setPercentMaskLeft(100);
+        ms.setMaskingCharacter('*');
+
+        StringBuilder out = new StringBuilder("value=");
+        ms.apply(new String(new char[150]), (Appendable) out);
+        Assert.assertEquals(156, out.length());
+        Assert.assertEquals(-1, out.indexOf("\u0000"));
+
+        ms = new MaskingSetting();
+        ms.addInnerMasking(2, 3);
+        out.setLength(0);
+        ms.apply("abcde", (Appendable) out);
+        Assert.assertEquals("aXXde", out.toString());
+    }
+
+    @Test
+    public void testUtf8Ascii() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(2);
+        ms.addInnerMasking(5, 5);
+
+        byte[] bytes = "[123456]".getBytes(StandardCharsets.UTF_8);
+        ms.applyUtf8(bytes, 1, 6);
+        Assert.assertEquals("[XX34X6]", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUtf8CountsCodePoints() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setPercentMaskRight(50);
+
+        byte[] bytes = "a\u00e9\u20ac\ud83d\ude00".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(10, bytes.length);
+        ms.applyUtf8(bytes, 0, bytes.length);
+        Assert.assertEquals("a\u00e9XXXXXXX", new String(bytes, StandardCharsets.UTF_8));
+
+        ms = new MaskingSetting();
+        ms.addInnerMasking(2, 2);
+        bytes = "a\u00e9\u20ac".getBytes(StandardCharsets.UTF_8);
+        ms.applyUtf8(bytes, 0, bytes.length);
+        Assert.assertEquals("aXX\u20ac", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUtf8DirectBuffer() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(1);
+        ms.setCharactersMaskRight(1);
+
+        byte[] value = "\u00e9t\u00e9".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(value.length + 1);
+        buffer.put((byte) '"').put(value).flip();
+        buffer.position(1);
+        ms.applyUtf8(buffer);
+        Assert.assertEquals(1, buffer.position());
+
+        byte[] masked = new byte[value.length];
+        buffer.get(masked);
+        Assert.assertEquals("XXtXX", new String(masked, StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUtf8RequiresAsciiMaskingCharacter() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(1);
+        ms.setMaskingCharacter('\u2022');
+        ms.applyUtf8(new byte[]{'a'}, 0, 1);
+    }
+}
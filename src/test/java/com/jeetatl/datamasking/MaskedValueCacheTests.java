@@ -0,0 +1,81 @@
+package com.jeetatl.datamasking;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MaskedValueCacheTests {
+
+    @Test
+    public void testCanonicalInstance() {
+        MaskedValueCache cache = new MaskedValueCache(1 << 20);
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(4);
+
+        String masked = cache.apply(ms, new String("1234567890"));
+        Assert.assertEquals("XXXX567890", masked);
+        Assert.assertSame(masked, cache.apply(ms, new String("1234567890")));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.getEstimatedBytes() > 0);
+    }
+
+    @Test
+    public void testSettingChange() {
+        MaskedValueCache cache = new MaskedValueCache(1 << 20);
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(4);
+        Assert.assertEquals("XXXX56", cache.apply(ms, "123456"));
+
+        ms.setCharactersMaskLeft(2);
+        Assert.assertEquals("XX3456", cache.apply(ms, "123456"));
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testUnmaskedValuesAreNotCached() {
+        MaskedValueCache cache = new MaskedValueCache(1 << 20);
+        MaskingSetting ms = new MaskingSetting();
+
+        Assert.assertEquals("123456", cache.apply(ms, "123456"));
+        Assert.assertNull(cache.apply(ms, null));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() {
+        MaskedValueCache cache = new MaskedValueCache(4096, 1);
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskRight(1);
+
+        String first = cache.apply(ms, "value0");
+        for (int i = 1; i < 100; i++) {
+            String value = "value" + i;
+            Assert.assertEquals(value.substring(0, value.length() - 1) + "X", cache.apply(ms, value));
+        }
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        Assert.assertTrue(cache.getEstimatedBytes() <= 4096);
+        Assert.assertNotSame(first, cache.apply(ms, "value0"));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void testLargeValuesBypassCache() {
+        MaskedValueCache cache = new MaskedValueCache(1024, 1);
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(1);
+
+        Assert.assertEquals("X" + new String(new char[499]), cache.apply(ms, new String(new char[500])));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBudget() {
+        new MaskedValueCache(0);
+    }
+}
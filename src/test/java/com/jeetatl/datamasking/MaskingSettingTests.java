@@ -428,4 +428,32 @@ public class MaskingSettingTests {
         respStr = ms.apply(nullString);
         Assert.assertEquals(null, respStr);
     }
+
+    @Test
+    public void testIsEmpty() {
+        MaskingSetting ms = new MaskingSetting();
+        Assert.assertTrue(ms.isEmpty());
+
+        ms.setPercentMaskRight(10);
+        Assert.assertFalse(ms.isEmpty());
+
+        ms = new MaskingSetting();
+        ms.addInnerMasking(2, 3);
+        Assert.assertFalse(ms.isEmpty());
+    }
+
+    @Test
+    public void testIsMasked() {
+        MaskingSetting ms = new MaskingSetting();
+        ms.setCharactersMaskLeft(2);
+        ms.setPercentMaskRight(20);
+        ms.addInnerMasking(5, 5);
+
+        String expected = "XX34X678XX";
+        for (int i = 0; i < expected.length(); i++) {
+            Assert.assertEquals(expected.charAt(i) == 'X', ms.isMasked(i, expected.length()));
+        }
+        Assert.assertFalse(ms.isMasked(10, 10));
+        Assert.assertTrue(ms.isMasked(0, 1));
+    }
 }
@@ -0,0 +1,91 @@
+package com.jeetatl.datamasking.config;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CompiledConfigurationFileTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration(
+                "cardNumber:~7-12|cvv:+100%|pin:+100%|*AccountNumber:-4|/ssn|tax_?id/i:+5,~7,~9-10,-30%", "-1");
+        config.setAttributeMaskEnabled(false);
+        Path file = folder.getRoot().toPath().resolve("masking.bin");
+        CompiledConfigurationFile.write(config, file);
+
+        MaskingConfiguration loaded = CompiledConfigurationFile.read(file);
+        CompiledMaskingConfiguration snapshot = loaded.snapshot();
+        Assert.assertEquals(config.snapshot().getConfigString(), snapshot.getConfigString());
+        Assert.assertFalse(loaded.isAttributesMaskEnabled());
+        Assert.assertEquals(config.snapshot().getFieldNames(), snapshot.getFieldNames());
+        Assert.assertEquals(config.snapshot().getFieldPatterns(), snapshot.getFieldPatterns());
+        Assert.assertSame(loaded.getMaskingSetting("cvv").compile(), loaded.getMaskingSetting("pin").compile());
+
+        String[] names = {"cardNumber", "cvv", "savingsAccountNumber", "TAXID", "ssn", "other"};
+        for (String name : names) {
+            Assert.assertSame(name, config.snapshot().getMaskingSetting(name), snapshot.getMaskingSetting(name));
+            Assert.assertEquals(name, config.apply(name, "12345678901234567890"), loaded.apply(name, "12345678901234567890"));
+        }
+        Assert.assertTrue(snapshot.mayContainMaskedField("{\"x\":1}"));
+    }
+
+    @Test
+    public void testPrefilterIsRestored() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:-4|cvv:+100%");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledConfigurationFile.write(config, out);
+
+        MaskingConfiguration loaded = CompiledConfigurationFile.read(ByteBuffer.wrap(out.toByteArray()));
+        Assert.assertTrue(loaded.mayContainMaskedField("{\"cvv\":123}"));
+        Assert.assertFalse(loaded.mayContainMaskedField("{\"name\":\"x\"}"));
+        Assert.assertEquals("1234XXXX", loaded.apply("cardNumber", "12345678"));
+    }
+
+    @Test
+    public void testInvalidFilesAreRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledConfigurationFile.write(new MaskingConfiguration("cardNumber:-4"), out);
+        byte[] bytes = out.toByteArray();
+
+        assertRejected(bytes, 0, "Not a compiled masking configuration");
+        assertRejected(bytes, 5, "Unsupported compiled masking configuration version");
+        assertRejected(bytes, bytes.length - 3, "checksum mismatch");
+        try {
+            CompiledConfigurationFile.read(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Truncated"));
+        }
+
+        Path empty = folder.newFile("empty.bin").toPath();
+        Files.write(empty, new byte[3]);
+        try {
+            CompiledConfigurationFile.read(empty);
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("Not a compiled masking configuration"));
+        }
+    }
+
+    private static void assertRejected(byte[] bytes, int index, String message) {
+        byte[] corrupt = bytes.clone();
+        corrupt[index] ^= 0x40;
+        try {
+            CompiledConfigurationFile.read(ByteBuffer.wrap(corrupt));
+            Assert.fail("Expected IOException");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
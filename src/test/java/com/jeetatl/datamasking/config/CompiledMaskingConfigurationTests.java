@@ -0,0 +1,153 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.json.JsonPayloadMasker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CompiledMaskingConfigurationTests {
+
+    @Test
+    public void testSnapshotIsNotChangedByReload() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2");
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        Assert.assertSame(snapshot, config.snapshot());
+
+        config.setConfigString("other:+2");
+        Assert.assertNotSame(snapshot, config.snapshot());
+        Assert.assertEquals("XX345", snapshot.apply("field", "12345"));
+        Assert.assertEquals("12345", snapshot.apply("other", "12345"));
+        Assert.assertEquals("12345", config.apply("field", "12345"));
+        Assert.assertEquals("XX345", config.apply("other", "12345"));
+        Assert.assertEquals("field:+2", snapshot.getConfigString());
+        Assert.assertTrue(config.snapshot().getFieldNames().contains("other"));
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedBySettingMutation() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2");
+        config.getMaskingSetting("field").setCharactersMaskLeft(4);
+
+        Assert.assertEquals("XX345", config.apply("field", "12345"));
+        Assert.assertEquals(2, config.snapshot().getMaskingSetting("field").getNumCharactersToMaskLeft(5));
+    }
+
+    @Test
+    public void testFieldsDoNotShareMutableSettings() {
+        MaskingConfiguration config = new MaskingConfiguration("a:+2|b:+2");
+        config.getMaskingSetting("a").setCharactersMaskLeft(5);
+        config.setAttributeMaskEnabled(true);
+
+        Assert.assertNotSame(config.getMaskingSetting("a"), config.getMaskingSetting("b"));
+        Assert.assertEquals("XX3456", config.apply("a", "123456"));
+        Assert.assertEquals("XX3456", config.apply("b", "123456"));
+        Assert.assertEquals(2, config.getMaskingSetting("a").getCharactersMaskLeft());
+    }
+
+    @Test
+    public void testSnapshotLookups() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2", "-1");
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+
+        Assert.assertTrue(snapshot.containsMaskingSettingForField("field"));
+        Assert.assertFalse(snapshot.containsMaskingSettingForField("other"));
+        Assert.assertFalse(snapshot.containsMaskingSettingForField(null));
+        Assert.assertEquals("1234X", snapshot.apply(null, "12345"));
+        Assert.assertTrue(snapshot.mayContainMaskedField("anything"));
+
+        StringBuilder sb = new StringBuilder("12345");
+        snapshot.apply("field", sb);
+        Assert.assertEquals("XX345", sb.toString());
+    }
+
+    @Test
+    public void testAttributeMaskingRepublishes() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2");
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+
+        config.setAttributeMaskEnabled(false);
+        Assert.assertTrue(snapshot.isAttributesMaskEnabled());
+        Assert.assertFalse(config.snapshot().isAttributesMaskEnabled());
+        Assert.assertFalse(config.isAttributesMaskEnabled());
+    }
+
+    @Test
+    public void testReloadWhileMasking() throws Exception {
+        final MaskingConfiguration config = new MaskingConfiguration("a:+3|b:+3");
+        final JsonPayloadMasker masker = new JsonPayloadMasker(config);
+        masker.setStreamingEnabled(true);
+        final String payload = "{\"a\":\"12345\",\"b\":\"12345\"}";
+        final String allRules = "{\"a\":\"XXX45\",\"b\":\"XXX45\"}";
+        final String lessRules = "{\"a\":\"XX345\",\"b\":\"XX345\"}";
+        final AtomicBoolean done = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        while (!done.get()) {
+                            String masked = masker.getMasked(payload);
+                            if (!masked.equals(allRules) && !masked.equals(lessRules)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (int i = 0; i < 2000; i++) {
+                config.setConfigString(i % 2 == 0 ? "a:+2|b:+2" : "a:+3|b:+3");
+            }
+            done.set(true);
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFindMaskingSetting() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2", "-1");
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        byte[] bytes = "\"field\"".getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertSame(snapshot.getMaskingSetting("field"), snapshot.findMaskingSetting(bytes, 1, 5));
+        Assert.assertSame(snapshot.getMaskingSetting("field"), snapshot.findMaskingSetting("a=field", 2, 7));
+        Assert.assertNull(snapshot.findMaskingSetting("a=field", 0, 1));
+        Assert.assertSame(snapshot.getMaskingSetting("other"), snapshot.getUnknownFieldMasking());
+    }
+
+    @Test
+    public void testSharedSettings() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("field").append(i).append(i % 2 == 0 ? ":-4|" : ":+100%|");
+        }
+        MaskingConfiguration config = new MaskingConfiguration(sb.toString() + "other:+0,-4");
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+
+        Assert.assertNotSame(config.getMaskingSetting("field0"), config.getMaskingSetting("field998"));
+        Assert.assertSame(config.getMaskingSetting("field0").compile(),
+                config.getMaskingSetting("field998").compile());
+        Assert.assertNotSame(config.getMaskingSetting("field0").compile(),
+                config.getMaskingSetting("field1").compile());
+        Assert.assertSame(snapshot.getMaskingSetting("field0"), snapshot.getMaskingSetting("field2"));
+        Assert.assertSame(snapshot.getMaskingSetting("field1"), snapshot.getMaskingSetting("field999"));
+        Assert.assertSame(snapshot.getMaskingSetting("field0"), snapshot.getMaskingSetting("other"));
+        Assert.assertSame(snapshot.getMaskingSetting("field1"),
+                new MaskingConfiguration("x:+100%").snapshot().getMaskingSetting("x"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.jeetatl.datamasking.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class FieldIndexTests {
+
+    @Test
+    public void testLookups() {
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            entries.put("field" + i, i);
+        }
+        FieldIndex<Integer> index = new FieldIndex<>(entries);
+        Assert.assertEquals(2000, index.size());
+
+        for (int i = 0; i < 2000; i++) {
+            String name = "field" + i;
+            Assert.assertEquals(Integer.valueOf(i), index.get(name));
+            String text = "{\"" + name + "\":1}";
+            Assert.assertEquals(Integer.valueOf(i), index.get(text, 2, 2 + name.length()));
+            Assert.assertEquals(Integer.valueOf(i), index.get(text.toCharArray(), 2, name.length()));
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(Integer.valueOf(i), index.get(bytes, 2, name.length()));
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            Assert.assertEquals(Integer.valueOf(i), index.get(direct, 2, 2 + name.length()));
+        }
+
+        Assert.assertNull(index.get("field2000"));
+        Assert.assertNull(index.get("field1", 0, 4));
+        Assert.assertNull(index.get((String) null));
+        Assert.assertNull(index.get("caf\u00e9".getBytes(StandardCharsets.UTF_8), 0, 5));
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        FieldIndex<String> index = new FieldIndex<>(Collections.<String, String>emptyMap());
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.get("field"));
+        Assert.assertNull(index.get(new byte[0], 0, 0));
+    }
+
+    @Test
+    public void testNonAsciiNames() {
+        FieldIndex<String> index = new FieldIndex<>(Collections.singletonMap("caf\u00e9", "value"));
+        byte[] bytes = "caf\u00e9".getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertEquals("value", index.get(bytes, 0, bytes.length));
+        Assert.assertEquals("value", index.get(ByteBuffer.wrap(bytes), 0, bytes.length));
+        Assert.assertEquals("value", index.get("caf\u00e9", 0, 4));
+    }
+}
@@ -0,0 +1,60 @@
+package com.jeetatl.datamasking.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class FieldNameMatcherTests {
+
+    @Test
+    public void testEmptyMatcher() {
+        FieldNameMatcher matcher = FieldNameMatcher.compile(Collections.<String>emptyList());
+        Assert.assertFalse(matcher.matches("anything"));
+        Assert.assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void testAllMatcher() {
+        Assert.assertTrue(FieldNameMatcher.all().matches(""));
+        Assert.assertTrue(FieldNameMatcher.compile(Arrays.asList("café")).matches("tea"));
+    }
+
+    @Test
+    public void testMatches() {
+        FieldNameMatcher matcher = FieldNameMatcher.compile(Arrays.asList("he", "she", "hers", "cardNumber"));
+
+        Assert.assertTrue(matcher.matches("ushers"));
+        Assert.assertTrue(matcher.matches("{\"cardNumber\":1}"));
+        Assert.assertTrue(matcher.matches("xxshé she"));
+        Assert.assertFalse(matcher.matches("{\"cardNumbe\":1, \"séh\":2}"));
+        Assert.assertFalse(matcher.matches("ardNumber"));
+    }
+
+    @Test
+    public void testOverlappingPrefixMatches() {
+        FieldNameMatcher matcher = FieldNameMatcher.compile(Arrays.asList("abcd", "bcx"));
+
+        Assert.assertTrue(matcher.matches("abcx"));
+        Assert.assertFalse(matcher.matches("abcabc"));
+    }
+
+    @Test
+    public void testByteMatches() {
+        FieldNameMatcher matcher = FieldNameMatcher.compile(Arrays.asList("field1", "ssn"));
+        byte[] bytes = "<r>é<ssn>1</ssn></r>".getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertTrue(matcher.matches(bytes, 0, bytes.length));
+        Assert.assertFalse(matcher.matches(bytes, 0, 8));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertTrue(matcher.matches(direct));
+        direct.limit(8);
+        Assert.assertFalse(matcher.matches(direct));
+        Assert.assertTrue(matcher.matches(ByteBuffer.wrap(bytes)));
+    }
+}
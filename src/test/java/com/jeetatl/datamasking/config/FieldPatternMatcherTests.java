@@ -0,0 +1,110 @@
+package com.jeetatl.datamasking.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+public class FieldPatternMatcherTests {
+
+    @Test
+    public void testGlobs() {
+        FieldPatternMatcher matcher = FieldPatternMatcher.compile(Arrays.asList("*CardNumber", "pin?", "*"));
+
+        Assert.assertEquals(0, matcher.match("CardNumber"));
+        Assert.assertEquals(0, matcher.match("billingCardNumber"));
+        Assert.assertEquals(1, matcher.match("pin1"));
+        Assert.assertEquals(2, matcher.match("pin"));
+        Assert.assertEquals(2, matcher.match("cardnumber"));
+        Assert.assertEquals(2, matcher.match(""));
+    }
+
+    @Test
+    public void testRegularExpressions() {
+        FieldPatternMatcher matcher = FieldPatternMatcher.compile(Arrays.asList(
+                "/card_?(number|no)/i", "/^[A-Z]+$/", "/ssn|tax[^a-z]?id/", "/x\\/y\\.z+/"));
+
+        Assert.assertEquals(0, matcher.match("card_number"));
+        Assert.assertEquals(0, matcher.match("CARDNO"));
+        Assert.assertEquals(-1, matcher.match("cardnum"));
+        Assert.assertEquals(1, matcher.match("ABC"));
+        Assert.assertEquals(2, matcher.match("tax-id"));
+        Assert.assertEquals(2, matcher.match("taxid"));
+        Assert.assertEquals(-1, matcher.match("taxId"));
+        Assert.assertEquals(2, matcher.match("ssn"));
+        Assert.assertEquals(-1, matcher.match("ssn1"));
+        Assert.assertEquals(3, matcher.match("x/y.zzz"));
+        Assert.assertEquals(-1, matcher.match("x/yazzz"));
+    }
+
+    @Test
+    public void testMatchesLikeJavaRegex() {
+        String[] expressions = {"a(b|c)*d", "[\\w.]+@\\w+", "(?:ab)+c?", "\\s*\\S+", "[^0-9]+[0-9]"};
+        String[] names = {"", "ad", "abcbd", "abx", "user.name@host", "@host", "ababc", "abab",
+                " x", "xyz", "abc1", "12"};
+        for (String expression : expressions) {
+            FieldPatternMatcher matcher = FieldPatternMatcher.compile(Collections.singletonList("/" + expression + "/"));
+            Pattern pattern = Pattern.compile(expression);
+            for (String name : names) {
+                Assert.assertEquals(expression + " " + name, pattern.matcher(name).matches(), matcher.match(name) == 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSlicesAndBytes() {
+        FieldPatternMatcher matcher = FieldPatternMatcher.compile(Arrays.asList("*Number", "/caf./"));
+        String text = "{\"cardNumber\":1}";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+
+        Assert.assertEquals(0, matcher.match(text, 2, 12));
+        Assert.assertEquals(0, matcher.match(text.toCharArray(), 2, 10));
+        Assert.assertEquals(0, matcher.match(bytes, 2, 10));
+        Assert.assertEquals(0, matcher.match(direct, 2, 12));
+        Assert.assertEquals(-1, matcher.match(text, 2, 11));
+
+        byte[] cafe = "caf\u00e9".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer directCafe = ByteBuffer.allocateDirect(cafe.length);
+        directCafe.put(cafe);
+        Assert.assertEquals(1, matcher.match("caf\u00e9"));
+        Assert.assertEquals(1, matcher.match(cafe, 0, cafe.length));
+        Assert.assertEquals(1, matcher.match(directCafe, 0, cafe.length));
+    }
+
+    @Test
+    public void testInvalidPatterns() {
+        String[] invalid = {"/a{2}/", "/(a/", "/a)/", "/[a-/", "/\\p/", "/a/x", "/*a/", "/(?=a)/"};
+        for (String spec : invalid) {
+            try {
+                FieldPatternMatcher.validate(spec);
+                Assert.fail(spec);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage().contains(spec));
+            }
+        }
+        FieldPatternMatcher.validate("/[a-]/");
+        Assert.assertTrue(FieldPatternMatcher.isPattern("a*"));
+        Assert.assertTrue(FieldPatternMatcher.isPattern("/a/"));
+        Assert.assertFalse(FieldPatternMatcher.isPattern("cardNumber"));
+    }
+
+    @Test
+    public void testRequiredLiterals() {
+        Assert.assertEquals("CardNumber", FieldPatternMatcher.requiredLiteral("*CardNumber"));
+        Assert.assertEquals("pin", FieldPatternMatcher.requiredLiteral("pin?"));
+        Assert.assertEquals("", FieldPatternMatcher.requiredLiteral("*"));
+        Assert.assertEquals("Number", FieldPatternMatcher.requiredLiteral("/^(card|account)Number$/"));
+        Assert.assertEquals("card", FieldPatternMatcher.requiredLiteral("/card_?no/"));
+        Assert.assertEquals("ab", FieldPatternMatcher.requiredLiteral("/ab+c/"));
+        Assert.assertEquals("tax", FieldPatternMatcher.requiredLiteral("/tax[^a-z]?id/"));
+        Assert.assertEquals("x", FieldPatternMatcher.requiredLiteral("/x\\/y\\.z+/"));
+        Assert.assertEquals("", FieldPatternMatcher.requiredLiteral("/ssn|tax/"));
+        Assert.assertEquals("", FieldPatternMatcher.requiredLiteral("/card/i"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.jeetatl.datamasking.config;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class MaskingConfigurationLoaderTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoad() throws IOException {
+        Path file = write(folder.newFile("masking.conf").toPath(), "# card data\ncardNumber:~7-12\n\ncvv:+100%|pin:+4\n");
+        MaskingConfiguration config = new MaskingConfiguration();
+        MaskingConfigurationLoader loader = new MaskingConfigurationLoader(file, config);
+
+        loader.load();
+        Assert.assertEquals("cardNumber:~7-12|cvv:+100%|pin:+4", config.snapshot().getConfigString());
+        Assert.assertEquals("123456XXXXXX3456", config.apply("cardNumber", "1234567890123456"));
+        Assert.assertEquals("XXX", config.apply("cvv", "123"));
+        Assert.assertEquals(1, loader.getReloadCount());
+        Assert.assertTrue(loader.getLastCompileNanos() > 0);
+    }
+
+    @Test
+    public void testInvalidFileKeepsRules() throws IOException {
+        Path file = write(folder.newFile("masking.conf").toPath(), "field:+2");
+        MaskingConfiguration config = new MaskingConfiguration();
+        MaskingConfigurationLoader loader = new MaskingConfigurationLoader(file, config);
+        loader.load();
+
+        write(file, "field:+2\nother:2");
+        try {
+            loader.load();
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("position 9"));
+        }
+        Assert.assertEquals("field:+2", config.snapshot().getConfigString());
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        Path file = write(folder.newFile("masking.conf").toPath(), "field:+2");
+        MaskingConfiguration config = new MaskingConfiguration();
+        try (MaskingConfigurationLoader loader = new MaskingConfigurationLoader(file, config)) {
+            loader.setDebounceMillis(20);
+            loader.start();
+            Assert.assertEquals("XX345", config.apply("field", "12345"));
+
+            replace(file, "field:bad");
+            awaitCount(loader, 1, 1);
+            Assert.assertNotNull(loader.getLastError());
+            Assert.assertEquals("XX345", config.apply("field", "12345"));
+
+            replace(file, "field:+3");
+            awaitCount(loader, 1, 2);
+            Assert.assertEquals("XXX45", config.apply("field", "12345"));
+            Assert.assertNull(loader.getLastError());
+            Assert.assertTrue(loader.getLastReloadLatencyNanos() > 0);
+        }
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path replace(Path file, String content) throws IOException {
+        Path temp = write(folder.newFile().toPath(), content);
+        return Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void awaitCount(MaskingConfigurationLoader loader, long failed, long reloaded) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (loader.getFailedReloadCount() < failed || loader.getReloadCount() < reloaded) {
+            Assert.assertTrue("Timed out waiting for reload", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
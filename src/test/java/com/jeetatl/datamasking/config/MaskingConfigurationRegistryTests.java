@@ -0,0 +1,134 @@
+package com.jeetatl.datamasking.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MaskingConfigurationRegistryTests {
+
+    @Test
+    public void testLazyCompile() {
+        MaskingConfigurationRegistry registry = new MaskingConfigurationRegistry(1 << 20);
+        registry.register("tenant1", "cardNumber:~7-12");
+        Assert.assertTrue(registry.isRegistered("tenant1"));
+        Assert.assertFalse(registry.isResident("tenant1"));
+        Assert.assertEquals(0, registry.getCompileCount());
+
+        MaskingConfiguration config = registry.get("tenant1");
+        Assert.assertEquals("123456XXXXXX3456", config.apply("cardNumber", "1234567890123456"));
+        Assert.assertSame(config, registry.get("tenant1"));
+        Assert.assertEquals(1, registry.getCompileCount());
+        Assert.assertTrue(registry.isResident("tenant1"));
+        Assert.assertTrue(registry.getEstimatedBytes("tenant1") > 0);
+        Assert.assertTrue(registry.getCompileNanos("tenant1") > 0);
+        Assert.assertEquals(registry.getEstimatedBytes("tenant1"), registry.getEstimatedBytes());
+
+        Assert.assertNull(registry.get("unknown"));
+        Assert.assertEquals(0, registry.getEstimatedBytes("unknown"));
+    }
+
+    @Test
+    public void testTenantsShareIdenticalRules() {
+        MaskingConfigurationRegistry registry = new MaskingConfigurationRegistry(1 << 20);
+        registry.register("tenant1", "cardNumber:-4");
+        registry.register("tenant2", "cardNumber:-4");
+        registry.register("tenant3", "cardNumber:-4", "+1");
+        registry.register("tenant4", "accountNumber:-4");
+
+        Assert.assertSame(registry.get("tenant1"), registry.get("tenant2"));
+        Assert.assertNotSame(registry.get("tenant1"), registry.get("tenant3"));
+        Assert.assertEquals("X234", registry.get("tenant3").apply("other", "1234"));
+        Assert.assertSame(registry.get("tenant1").snapshot().getMaskingSetting("cardNumber"),
+                registry.get("tenant4").snapshot().getMaskingSetting("accountNumber"));
+        Assert.assertEquals(3, registry.getCompileCount());
+        Assert.assertEquals(3, registry.getResidentCount());
+    }
+
+    @Test
+    public void testSharedConfigurationsAreReadOnly() {
+        MaskingConfigurationRegistry registry = new MaskingConfigurationRegistry(1 << 20);
+        registry.register("tenant1", "cardNumber:-4");
+        registry.register("tenant2", "cardNumber:-4");
+        MaskingConfiguration config = registry.get("tenant1");
+
+        try {
+            config.setConfigString("cardNumber:+0");
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            Assert.assertTrue(e.getMessage().contains("cannot be modified"));
+        }
+        try {
+            config.setAttributeMaskEnabled(false);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            Assert.assertTrue(e.getMessage().contains("cannot be modified"));
+        }
+        try {
+            config.setValueCache(null);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            Assert.assertTrue(e.getMessage().contains("cannot be modified"));
+        }
+        try {
+            config.setMetrics(null);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            Assert.assertTrue(e.getMessage().contains("cannot be modified"));
+        }
+        config.getMaskingSetting("cardNumber").setCharactersMaskRight(0);
+        Assert.assertEquals("1234XXXX", registry.get("tenant2").apply("cardNumber", "12345678"));
+        Assert.assertTrue(registry.get("tenant2").isAttributesMaskEnabled());
+    }
+
+    @Test
+    public void testReplaceAndUnregister() {
+        MaskingConfigurationRegistry registry = new MaskingConfigurationRegistry(1 << 20);
+        registry.register("tenant1", "field:+2");
+        Assert.assertEquals("XX34", registry.get("tenant1").apply("field", "1234"));
+
+        try {
+            registry.register("tenant1", "field:+2|other:2");
+            Assert.fail("Expected MaskingRuleException");
+        } catch (MaskingRuleException e) {
+            Assert.assertEquals(9, e.getRuleIndex());
+        }
+        Assert.assertEquals("XX34", registry.get("tenant1").apply("field", "1234"));
+
+        registry.register("tenant1", "field:-2");
+        Assert.assertEquals("12XX", registry.get("tenant1").apply("field", "1234"));
+        Assert.assertTrue(registry.unregister("tenant1"));
+        Assert.assertNull(registry.get("tenant1"));
+        Assert.assertEquals(0, registry.getTenantCount());
+    }
+
+    @Test
+    public void testEviction() {
+        long tenantBytes = new MaskingConfiguration(rules(0)).getEstimatedBytes();
+        MaskingConfigurationRegistry registry = new MaskingConfigurationRegistry(3 * tenantBytes + tenantBytes / 2);
+        for (int i = 0; i < 10; i++) {
+            registry.register("tenant" + i, rules(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("XX34", registry.get("tenant" + i).apply("tenant" + i + "Field5", "1234"));
+            Assert.assertTrue(registry.getEstimatedBytes() <= registry.getMaxBytes());
+        }
+        Assert.assertEquals(10, registry.getCompileCount());
+        Assert.assertEquals(7, registry.getEvictionCount());
+        Assert.assertEquals(3, registry.getResidentCount());
+
+        Assert.assertEquals("XX34", registry.get("tenant0").apply("tenant0Field5", "1234"));
+        Assert.assertEquals(11, registry.getCompileCount());
+
+        registry.clear();
+        Assert.assertEquals(0, registry.getResidentCount());
+        Assert.assertEquals(0, registry.getEstimatedBytes());
+        Assert.assertEquals(10, registry.getTenantCount());
+    }
+
+    private static String rules(int tenant) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("tenant").append(tenant).append("Field").append(i).append(":+2|");
+        }
+        return sb.toString();
+    }
+}
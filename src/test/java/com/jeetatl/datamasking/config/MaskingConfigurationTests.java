@@ -1,8 +1,13 @@
 package com.jeetatl.datamasking.config;
 
+import com.jeetatl.datamasking.MaskedValueCache;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Created by mkhokhar on 11/4/16.
  */
@@ -288,4 +293,161 @@ public class MaskingConfigurationTests {
 
 
 
+
+    @Test
+    public void testGetMaskingSetting() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+5", "-1");
+
+        Assert.assertEquals(5, config.getMaskingSetting("field").getCharactersMaskLeft());
+        Assert.assertEquals(1, config.getMaskingSetting("unknownField").getCharactersMaskRight());
+        Assert.assertEquals(1, config.getMaskingSetting(null).getCharactersMaskRight());
+    }
+
+    @Test
+    public void testMayContainMaskedField() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+5|cardNumber:-4");
+
+        Assert.assertTrue(config.mayContainMaskedField("{\"cardNumber\":\"1234\"}"));
+        Assert.assertFalse(config.mayContainMaskedField("{\"name\":\"abc\"}"));
+        byte[] bytes = "a=fiel&b=field".getBytes(StandardCharsets.UTF_8);
+        Assert.assertFalse(config.mayContainMaskedField(bytes, 0, 8));
+        Assert.assertTrue(config.mayContainMaskedField(ByteBuffer.wrap(bytes)));
+
+        config = new MaskingConfiguration("field:+5", "+1");
+        Assert.assertTrue(config.mayContainMaskedField("{\"name\":\"abc\"}"));
+    }
+
+    @Test
+    public void testApplyToAppendable() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2", "-1");
+
+        StringBuilder out = new StringBuilder();
+        config.apply("field", "12345", out);
+        out.append('|');
+        config.apply("other", "12345", out);
+        config.apply("other", "", out);
+        Assert.assertEquals("XX345|1234X", out.toString());
+        Assert.assertEquals("XX345", config.apply("field", "12345"));
+    }
+
+    @Test
+    public void testApplyUtf8() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2");
+
+        byte[] bytes = "12345".getBytes(StandardCharsets.UTF_8);
+        config.applyUtf8("field", bytes, 0, bytes.length);
+        Assert.assertEquals("XX345", new String(bytes, StandardCharsets.UTF_8));
+        config.applyUtf8("other", ByteBuffer.wrap(bytes));
+        Assert.assertEquals("XX345", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testValueCache() {
+        MaskingConfiguration config = new MaskingConfiguration("field:+2|other:+2");
+        Assert.assertNull(config.getValueCache());
+
+        MaskedValueCache cache = new MaskedValueCache(1 << 16);
+        config.setValueCache(cache);
+        String masked = config.apply("field", "12345");
+        Assert.assertEquals("XX345", masked);
+        Assert.assertSame(masked, config.apply("field", "12345"));
+        Assert.assertSame(masked, config.apply("other", "12345"));
+        Assert.assertEquals("12345", config.apply("unknown", "12345"));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testPrefilterWithFieldPatterns() {
+        MaskingConfiguration config = new MaskingConfiguration("cvv:+100%|*CardNumber:-4|/pin_?code\\d+/:+2");
+        Assert.assertTrue(config.mayContainMaskedField("{\"billingCardNumber\":\"1234\"}"));
+        Assert.assertTrue(config.mayContainMaskedField("{\"pin_code1\":\"1234\"}"));
+        Assert.assertTrue(config.mayContainMaskedField("{\"cvv\":\"123\"}"));
+        Assert.assertFalse(config.mayContainMaskedField("{\"name\":\"abc\"}"));
+
+        config.setConfigString("cvv:+100%|/card_?no/i:+100%");
+        Assert.assertTrue(config.mayContainMaskedField("{\"name\":\"abc\"}"));
+    }
+
+    @Test
+    public void testFieldPatterns() {
+        MaskingConfiguration config = new MaskingConfiguration(
+                "cardNumber:-4|*CardNumber:~7-12|/card_?(number|no)/i:+100%|/(ssn|/:+1|pin?:+2");
+
+        Assert.assertEquals("123456789012XXXX", config.apply("cardNumber", "1234567890123456"));
+        Assert.assertEquals("123456XXXXXX3456", config.apply("billingCardNumber", "1234567890123456"));
+        Assert.assertEquals("XXXX", config.apply("CARD_NO", "1234"));
+        Assert.assertEquals("XX34", config.apply("pin1", "1234"));
+        Assert.assertEquals("1234", config.apply("ssn", "1234"));
+        Assert.assertTrue(config.containsMaskingSettingForField("CardNo"));
+        Assert.assertFalse(config.containsMaskingSettingForField("cardholder"));
+        Assert.assertSame(config.getMaskingSetting("card_number").compile(),
+                config.getMaskingSetting("cardNo").compile());
+        Assert.assertTrue(config.mayContainMaskedField("{\"anything\":1}"));
+
+        CompiledMaskingConfiguration snapshot = config.snapshot();
+        Assert.assertEquals(1, snapshot.getFieldNames().size());
+        Assert.assertEquals(3, snapshot.getFieldPatterns().size());
+        String payload = "{\"homeCardNumber\":1}";
+        Assert.assertSame(snapshot.getMaskingSetting("xCardNumber"), snapshot.findMaskingSetting(payload, 2, 16));
+        Assert.assertNull(snapshot.findMaskingSetting(payload.toCharArray(), 2, 13));
+    }
+
+    @Test
+    public void testMalformedRulesKeepValidFragments() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%,field2:-2");
+        Assert.assertEquals("XXXX", config.apply("field1", "1234"));
+        Assert.assertEquals("12XX", config.apply("field2", "1234"));
+
+        config.setConfigString("f:+2;g:-2");
+        Assert.assertEquals("XX34", config.apply("f", "1234"));
+        Assert.assertEquals("12XX", config.apply("g", "1234"));
+
+        config.setConfigString("f:+2, -2");
+        Assert.assertEquals("XX34", config.apply("f", "1234"));
+
+        config.setConfigString("a:+5x|b:-2");
+        Assert.assertEquals("XXXXX6", config.apply("a", "123456"));
+        Assert.assertEquals("12XX", config.apply("b", "1234"));
+
+        config = new MaskingConfiguration("x a:~2-3 y", "+1");
+        Assert.assertEquals("1XX4", config.apply("a", "1234"));
+        Assert.assertEquals("X234", config.apply("x", "1234"));
+    }
+
+    @Test
+    public void testMalformedRulesMaskAsMuchAsEarlierVersions() {
+        MaskingConfiguration config = new MaskingConfiguration("a:+1~10");
+        Assert.assertEquals("XbcdefghiX", config.apply("a", "abcdefghij"));
+
+        config.setConfigString("f1:~5-");
+        Assert.assertEquals("abcdX", config.apply("f1", "abcde"));
+
+        config.setConfigString("a:~2~1f1:-2");
+        Assert.assertEquals("XXcd", config.apply("a", "abcd"));
+        Assert.assertEquals("abXX", config.apply("f1", "abcd"));
+
+        config.setConfigString("f2:-2~10-251");
+        Assert.assertEquals("abcdefghiXXX", config.apply("f2", "abcdefghijkl"));
+
+        config = new MaskingConfiguration("x:+1", "+5x");
+        Assert.assertEquals("XXXXXfgh", config.apply("unknown", "abcdefgh"));
+    }
+
+    @Test
+    public void testValidate() {
+        MaskingConfiguration.validate("a:+1 | *b:-2|/c|d/i:~1-2");
+        try {
+            MaskingConfiguration.validate("a:+1|/c{2}/:+1");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("position 5"));
+        }
+        try {
+            MaskingConfiguration.validate("a:+1|b:+1 c");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("position 5"));
+        }
+    }
 }
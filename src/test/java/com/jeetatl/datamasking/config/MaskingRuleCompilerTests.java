@@ -0,0 +1,67 @@
+package com.jeetatl.datamasking.config;
+
+import com.jeetatl.datamasking.MaskingSetting;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+public class MaskingRuleCompilerTests {
+
+    @Test
+    public void testCompile() {
+        Map<String, MaskingSetting> fields = MaskingRuleCompiler.compile(
+                " b:+5,~7,~9-10,-30% | a:+50%,| /x|y/i:~1 |c*:-2", true);
+
+        Assert.assertEquals(Arrays.asList("b", "a", "/x|y/i", "c*"), new ArrayList<>(fields.keySet()));
+        Assert.assertEquals("XXXXX6X8XX1234XXXXXX", fields.get("b").apply("12345678901234567890"));
+        Assert.assertEquals("XXXXX67890", fields.get("a").apply("1234567890"));
+        Assert.assertEquals("X23", fields.get("/x|y/i").apply("123"));
+        Assert.assertEquals("12XX", fields.get("c*").apply("1234"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertError("field:+2|other:2", 9, 15, "expected '+', '-' or '~'");
+        assertError("field+2", 0, 5, "expected ':'");
+        assertError(":+2", 0, 0, "expected a field name");
+        assertError("field:+", 0, 7, "expected a digit");
+        assertError("field:+3-5", 0, 8, "unexpected '-'");
+        assertError("field:~5%", 0, 8, "unexpected '%'");
+        assertError("field:~5-", 0, 8, "unexpected '-'");
+        assertError("field:+99999999999", 0, 7, "number too large");
+        assertError("a:+1|/abc:+1", 5, 12, "unterminated regular expression");
+        assertError("a:+1|/a{2}/:+1", 5, 5, "counted repetition is not supported");
+    }
+
+    @Test
+    public void testLenientKeepsValidFragments() {
+        Map<String, MaskingSetting> fields = MaskingRuleCompiler.compile(
+                "a:+1|bad rule|b:+3-5|/(c|d/:+1|e:-1|f:", false);
+
+        Assert.assertEquals(Arrays.asList("a", "b", "e"), new ArrayList<>(fields.keySet()));
+        Assert.assertEquals("XXX45", fields.get("b").apply("12345"));
+    }
+
+    @Test
+    public void testCompileSetting() {
+        Assert.assertEquals("X2XX", MaskingRuleCompiler.compileSetting("+1,-2").apply("1234"));
+        Assert.assertEquals("X234", MaskingRuleCompiler.compileSetting("+1,x").apply("1234"));
+        Assert.assertEquals("XXXXX678", MaskingRuleCompiler.compileSetting("+5x").apply("12345678"));
+        Assert.assertTrue(MaskingRuleCompiler.compileSetting("x+1").isEmpty());
+        Assert.assertTrue(MaskingRuleCompiler.compileSetting(null).isEmpty());
+    }
+
+    private static void assertError(String configString, int ruleIndex, int index, String description) {
+        try {
+            MaskingRuleCompiler.compile(configString, true);
+            Assert.fail(configString);
+        } catch (MaskingRuleException e) {
+            Assert.assertEquals(configString, ruleIndex, e.getRuleIndex());
+            Assert.assertEquals(configString, index, e.getIndex());
+            Assert.assertTrue(e.getDescription(), e.getDescription().contains(description));
+        }
+    }
+}
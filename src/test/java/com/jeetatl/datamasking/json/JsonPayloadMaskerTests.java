@@ -5,6 +5,13 @@ import com.jeetatl.datamasking.config.MaskingConfiguration;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class JsonPayloadMaskerTests {
@@ -187,4 +194,142 @@ public class JsonPayloadMaskerTests {
 
         Assert.assertEquals(badJson, response);
     }
+
+    @Test
+    public void testStreamingSetter() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+        Assert.assertFalse(masker.isStreamingEnabled());
+
+        masker.setStreamingEnabled(true);
+        Assert.assertTrue(masker.isStreamingEnabled());
+    }
+
+    @Test
+    public void testStreamingMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%|field2:+100%|field5:-2");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+        masker.setStreamingEnabled(true);
+
+        String jsonPayload = "{\"field1\":\"asdf\",\"field2\":323.234,\"c\":1.50,\"d\":true,\"e\":null," +
+                "\"sub\":{\"field5\":\"abcdef\",\"f\":[1,2]},\"field5\":[\"1234\",{\"field1\":\"z\"},null]}";
+        String expected = "{\"field1\":\"XXXX\",\"field2\":\"XXXXXXX\",\"c\":1.50,\"d\":true,\"e\":null," +
+                "\"sub\":{\"field5\":\"abcdXX\",\"f\":[1,2]},\"field5\":[\"12XX\",{\"field1\":\"X\"},null]}";
+
+        Assert.assertEquals(expected, masker.getMasked(jsonPayload));
+    }
+
+    @Test
+    public void testStreamingDefaultMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%", "+1");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+        masker.setStreamingEnabled(true);
+
+        String jsonPayload = "{\"field1\":\"asdf\",\"b\":23}";
+        String expected = "{\"field1\":\"XXXX\",\"b\":\"X3\"}";
+
+        Assert.assertEquals(expected, masker.getMasked(jsonPayload));
+    }
+
+    @Test
+    public void testStreamingBadJson() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+        masker.setStreamingEnabled(true);
+        String badJson = "{\"field1\": true";   // no closing curly brace
+
+        Assert.assertEquals(badJson, masker.getMasked(badJson));
+    }
+
+    @Test
+    public void testReaderWriterMasking() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration("field1:-2");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        StringWriter sw = new StringWriter();
+        masker.getMasked(new StringReader("{\"field1\":\"asdf\",\"b\":[true]}"), sw);
+
+        Assert.assertEquals("{\"field1\":\"asXX\",\"b\":[true]}", sw.toString());
+    }
+
+    @Test
+    public void testStreamMasking() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+1");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        masker.getMasked(new ByteArrayInputStream("{\"field1\":\"\u00e9t\u00e9\"}".getBytes(StandardCharsets.UTF_8)), out);
+
+        Assert.assertEquals("{\"field1\":\"Xt\u00e9\"}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%|field2:-2|field5:~2");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        String jsonPayload = "{ \"field1\" : \"asdf\",\n  \"field2\": 323.234, \"c\": \"abc\",\n" +
+                "  \"sub\": {\"field2\": \"abcdef\"}, \"field5\": [\"1234\", {\"field1\": \"z\"}, null] }";
+        String expected = "{ \"field1\" : \"XXXX\",\n  \"field2\": 323.234, \"c\": \"abc\",\n" +
+                "  \"sub\": {\"field2\": \"abcdXX\"}, \"field5\": [\"1X34\", {\"field1\": \"X\"}, null] }";
+        byte[] bytes = jsonPayload.getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertEquals(4, masker.maskInPlace(bytes));
+        Assert.assertEquals(expected, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceMultiByteMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field2:-2|field1:+1");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        byte[] bytes = "{\"fi\\u0065ld2\":\"d\u00e9j\u00e0\",\"field1\":\"\\\"ab\"}".getBytes(StandardCharsets.UTF_8);
+        masker.maskInPlace(bytes);
+
+        Assert.assertEquals("{\"fi\\u0065ld2\":\"d\u00e9XXX\",\"field1\":\"XXab\"}", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceByteBufferMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+2");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        byte[] bytes = "xx{\"field1\":\"asdf\"}yy".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        direct.position(2).limit(bytes.length - 2);
+
+        Assert.assertEquals(1, masker.maskInPlace(direct));
+        Assert.assertEquals(2, direct.position());
+        direct.clear();
+        direct.get(bytes);
+        Assert.assertEquals("xx{\"field1\":\"XXdf\"}yy", new String(bytes, StandardCharsets.UTF_8));
+
+        bytes = "xx{\"field1\":\"asdf\"}yy".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(1, masker.maskInPlace(bytes, 2, bytes.length - 4));
+        Assert.assertEquals("xx{\"field1\":\"XXdf\"}yy", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceBadJson() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        byte[] bytes = "{\"field1\": \"ab\", \"field1\": \"cd".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(1, masker.maskInPlace(bytes));
+        Assert.assertEquals("{\"field1\": \"XX\", \"field1\": \"cd", new String(bytes, StandardCharsets.UTF_8));
+        Assert.assertEquals(0, masker.maskInPlace((byte[]) null));
+    }
+
+    @Test
+    public void testPrefilterSkipsPayload() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%");
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        String jsonPayload = "{ \"b\": 323.234,\n  \"c\": 23 }";
+        Assert.assertSame(jsonPayload, masker.getMasked(jsonPayload));
+
+        String escapedPayload = "{\"fi\\u0065ld1\":\"ab\"}";
+        Assert.assertEquals("{\"field1\":\"XX\"}", masker.getMasked(escapedPayload));
+    }
 }
@@ -0,0 +1,204 @@
+package com.jeetatl.datamasking.json;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.maskers.JavaBeansMasker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MaskingModuleTests {
+
+    @Test
+    public void testConstructor() {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        MaskingModule module = new MaskingModule(config);
+        Assert.assertEquals(config, module.getConfig());
+    }
+
+    @Test
+    public void testBeanProperties() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("cardNumber:+4|pin:+100%|active:+100%");
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"XXXX111111111111\",\"pin\":\"XXXX\",\"active\":\"XXXX\","
+                + "\"amount\":42.5,\"note\":null}", mapper.writeValueAsString(new Card()));
+    }
+
+    @Test
+    public void testUnmaskedOutputIsUnchanged() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("orange:~5");
+        Card card = new Card();
+        Assert.assertEquals(new ObjectMapper().writeValueAsString(card), mapper.writeValueAsString(card));
+    }
+
+    @Test
+    public void testRenamedProperty() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("secret:+100%");
+        Assert.assertEquals("{\"secret\":\"XXXXXX\"}", mapper.writeValueAsString(new Renamed()));
+    }
+
+    @Test
+    public void testRawValues() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("ssn:+100%");
+        Assert.assertEquals("{\"ssn\":\"XXXXXXXXX\",\"raw\":{\"a\":1}}", mapper.writeValueAsString(new Raw()));
+    }
+
+    @Test
+    public void testCollections() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("cards:+2|pins:+100%");
+        Assert.assertEquals("{\"cards\":[\"XX34\",\"XX78\"],\"pins\":[\"XXXX\",\"XXXX\"],\"tags\":[\"a\",\"b\"]}",
+                mapper.writeValueAsString(new Wallet()));
+    }
+
+    @Test
+    public void testMaps() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("cardNumber:+4|pin:+100%");
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("pin", 1234);
+        nested.put("name", "Jane");
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("cardNumber", "4111111111111111");
+        map.put("name", "John");
+        map.put("nested", nested);
+        map.put("pin", Arrays.asList(1234, 5678));
+        Assert.assertEquals("{\"cardNumber\":\"XXXX111111111111\",\"name\":\"John\","
+                + "\"nested\":{\"pin\":\"XXXX\",\"name\":\"Jane\"},\"pin\":[\"XXXX\",\"XXXX\"]}",
+                mapper.writeValueAsString(map));
+    }
+
+    @Test
+    public void testNestedValuesUseTheirOwnNames() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("card:+100%|cardNumber:+4");
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("card", new Card());
+        Assert.assertEquals("{\"card\":{\"id\":1842,\"cardNumber\":\"XXXX111111111111\",\"pin\":1234,"
+                + "\"active\":true,\"amount\":42.5,\"note\":null}}", mapper.writeValueAsString(map));
+        Assert.assertEquals("[{\"card\":{\"id\":1842,\"cardNumber\":\"XXXX111111111111\",\"pin\":1234,"
+                + "\"active\":true,\"amount\":42.5,\"note\":null}}]",
+                mapper.writeValueAsString(Collections.singletonList(map)));
+    }
+
+    @Test
+    public void testAnyGetter() throws JsonProcessingException {
+        ObjectMapper mapper = mapper("cardNumber:+4|pin:+100%");
+        Assert.assertEquals("{\"name\":\"John\",\"cardNumber\":\"XXXX111111111111\",\"pins\":[1234],"
+                + "\"nested\":{\"pin\":\"XXXX\"}}", mapper.writeValueAsString(new Extensible()));
+    }
+
+    @Test
+    public void testJsonNodes() throws IOException {
+        ObjectMapper mapper = mapper("cardNumber:+4|pin:+100%|details:+100%");
+        String json = "{\"cardNumber\":\"4111111111111111\",\"name\":\"John\",\"pin\":[1234,{\"a\":1},5678],"
+                + "\"nested\":{\"cardNumber\":4111111111111111,\"x\":[{\"pin\":true}]}}";
+        Assert.assertEquals("{\"cardNumber\":\"XXXX111111111111\",\"name\":\"John\","
+                + "\"pin\":[\"XXXX\",{\"a\":1},\"XXXX\"],\"nested\":{\"cardNumber\":\"XXXX111111111111\","
+                + "\"x\":[{\"pin\":\"XXXX\"}]}}", mapper.writeValueAsString(mapper.readTree(json)));
+
+        Tree tree = new Tree();
+        tree.node = mapper.readTree("{\"cardNumber\":\"4111111111111111\",\"name\":\"John\"}");
+        tree.details = new TextNode("secret");
+        Assert.assertEquals("{\"node\":{\"cardNumber\":\"XXXX111111111111\",\"name\":\"John\"},"
+                + "\"details\":\"XXXXXX\"}", mapper.writeValueAsString(tree));
+    }
+
+    @Test
+    public void testConfigurationChanges() throws JsonProcessingException {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        ObjectMapper mapper = new ObjectMapper().registerModule(new MaskingModule(config));
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"XXXX111111111111\",\"pin\":1234,\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", mapper.writeValueAsString(new Card()));
+
+        config.setConfigString("id:+100%");
+        Assert.assertEquals("{\"id\":\"XXXX\",\"cardNumber\":\"4111111111111111\",\"pin\":1234,\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", mapper.writeValueAsString(new Card()));
+    }
+
+    @Test
+    public void testSnapshotAttribute() throws JsonProcessingException {
+        ObjectWriter writer = new ObjectMapper().registerModule(new MaskingModule()).writer();
+        Card card = new Card();
+        Assert.assertEquals(new ObjectMapper().writeValueAsString(card), writer.writeValueAsString(card));
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"XXXX111111111111\",\"pin\":1234,\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", writer.withAttribute(MaskingModule.SNAPSHOT_ATTRIBUTE,
+                new MaskingConfiguration("cardNumber:+4").snapshot()).writeValueAsString(card));
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"4111111111111111\",\"pin\":\"XXXX\",\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", writer.withAttribute(MaskingModule.SNAPSHOT_ATTRIBUTE,
+                new MaskingConfiguration("pin:+100%").snapshot()).writeValueAsString(card));
+    }
+
+    @Test
+    public void testJavaBeansMasker() throws JsonProcessingException {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        ObjectMapper objectMapper = new ObjectMapper();
+        JavaBeansMasker masker = new JavaBeansMasker(config, objectMapper);
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"XXXX111111111111\",\"pin\":1234,\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", masker.getMasked(new Card()));
+
+        masker.setConfig(new MaskingConfiguration("pin:+100%"));
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"4111111111111111\",\"pin\":\"XXXX\",\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", masker.getMasked(new Card()));
+        Assert.assertEquals("{\"id\":1842,\"cardNumber\":\"4111111111111111\",\"pin\":1234,\"active\":true,"
+                + "\"amount\":42.5,\"note\":null}", objectMapper.writeValueAsString(new Card()));
+    }
+
+    private static ObjectMapper mapper(String configString) {
+        return new ObjectMapper().registerModule(new MaskingModule(new MaskingConfiguration(configString)));
+    }
+
+    public static class Card {
+        public long id = 1842;
+        public String cardNumber = "4111111111111111";
+        public int pin = 1234;
+        public boolean active = true;
+        public double amount = 42.5;
+        public String note = null;
+    }
+
+    public static class Renamed {
+        @JsonProperty("secret")
+        public String value = "abcdef";
+    }
+
+    public static class Raw {
+        @JsonRawValue
+        public String ssn = "123456789";
+        @JsonRawValue
+        public String raw = "{\"a\":1}";
+    }
+
+    public static class Extensible {
+        public String name = "John";
+
+        @JsonAnyGetter
+        public Map<String, Object> getOther() {
+            Map<String, Object> other = new LinkedHashMap<>();
+            other.put("cardNumber", "4111111111111111");
+            other.put("pins", Collections.singletonList(1234));
+            other.put("nested", Collections.singletonMap("pin", 1234));
+            return other;
+        }
+    }
+
+    public static class Tree {
+        public JsonNode node;
+        public Object details;
+    }
+
+    public static class Wallet {
+        public List<String> cards = Arrays.asList("1234", "5678");
+        public int[] pins = {1234, 5678};
+        public String[] tags = {"a", "b"};
+    }
+}
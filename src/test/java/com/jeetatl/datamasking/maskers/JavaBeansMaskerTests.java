@@ -1,11 +1,25 @@
 package com.jeetatl.datamasking.maskers;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jeetatl.datamasking.config.MaskingConfiguration;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class JavaBeansMaskerTests {
 
     @Test
@@ -56,4 +70,196 @@ public class JavaBeansMaskerTests {
         Assert.assertEquals(expectedMasked, masker.getMasked(bean));
     }
 
+    @Test
+    public void testUnmaskedValuesKeepTheirType() {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        JavaBeansMasker masker = new JavaBeansMasker(config);
+        Assert.assertEquals("{\"active\":true,\"amount\":42.5,\"cardNumber\":\"XXXX111111111111\",\"id\":1842,"
+                + "\"note\":null,\"status\":\"OPEN\",\"url\":\"http://example.com\"}",
+                masker.getMasked(new Order()));
+        Assert.assertEquals("null", masker.getMasked(null));
+    }
+
+    @Test
+    public void testNestedBeans() {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4|cvv:+100%|secret:+100%");
+        JavaBeansMasker masker = new JavaBeansMasker(config);
+        Customer customer = new Customer();
+        Assert.assertEquals("{\"name\":\"Jane\",\"cards\":[{\"cardNumber\":\"XXXX1111\",\"cvv\":\"XXX\"},"
+                + "{\"cardNumber\":\"XXXX2222\",\"cvv\":\"XXX\"}],\"cvv\":[\"XXX\",\"XXX\"],"
+                + "\"attributes\":{\"secret\":\"XXX\",\"plain\":\"abc\"},\"renamed\":\"x\"}",
+                masker.getMasked(customer));
+    }
+
+    @Test
+    public void testJacksonAnnotations() {
+        JavaBeansMasker masker = new JavaBeansMasker(new MaskingConfiguration("card_number:+100%|secret:+100%"));
+        Assert.assertEquals("{\"card_number\":\"XXXXXXXXXXXXXXXX\"}", masker.getMasked(new RenamedField()));
+        Assert.assertEquals("{\"name\":\"Jane\"}", masker.getMasked(new IgnoredProperties()));
+        Assert.assertEquals("{\"name\":\"Jane\"}", masker.getMasked(new NonNull()));
+    }
+
+    @Test
+    public void testValuesWrittenWithoutBeanProperties() throws IOException {
+        JavaBeansMasker masker = new JavaBeansMasker(new MaskingConfiguration("cardNumber:+4|cvv:+100%"));
+        ObjectMapper mapper = new ObjectMapper();
+
+        Payment payment = new Payment();
+        payment.details = mapper.readTree("{\"cardNumber\":\"4111111111111111\",\"cvv\":123}");
+        Assert.assertEquals("{\"id\":7,\"details\":{\"cardNumber\":\"XXXX111111111111\",\"cvv\":\"XXX\"},"
+                + "\"cardNumber\":\"XXXX222222222222\"}", masker.getMasked(payment));
+
+        Assert.assertEquals("{\"cardNumber\":\"XXXX111111111111\",\"name\":\"Jane\"}",
+                masker.getMasked(mapper.readTree("{\"cardNumber\":\"4111111111111111\",\"name\":\"Jane\"}")));
+    }
+
+    @Test
+    public void testFailures() {
+        JavaBeansMasker masker = new JavaBeansMasker(new MaskingConfiguration("a:+1"));
+        Assert.assertNull(masker.getMasked(new Throwing()));
+        Node node = new Node();
+        node.next = node;
+        Assert.assertNull(masker.getMasked(node));
+    }
+
+    @Test
+    public void testSameAsJackson() throws JsonProcessingException {
+        MaskingConfiguration config = new MaskingConfiguration("unused:+4");
+        JavaBeansMasker masker = new JavaBeansMasker(config);
+        Customer customer = new Customer();
+        Assert.assertEquals(new ObjectMapper().writeValueAsString(customer), masker.getMasked(customer));
+    }
+
+    public enum Status { OPEN }
+
+    @JsonPropertyOrder(alphabetic = true)
+    public static class Order {
+        public int getId() {
+            return 1842;
+        }
+
+        public String getCardNumber() {
+            return "4111111111111111";
+        }
+
+        public double getAmount() {
+            return 42.5;
+        }
+
+        public String getNote() {
+            return null;
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+
+        public Status getStatus() {
+            return Status.OPEN;
+        }
+
+        public String getURL() {
+            return "http://example.com";
+        }
+    }
+
+    public static class Card {
+        private final String cardNumber;
+
+        Card(String cardNumber) {
+            this.cardNumber = cardNumber;
+        }
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+
+        public String getCvv() {
+            return "123";
+        }
+    }
+
+    public static class Customer {
+        private String name = "Jane";
+        private List<Card> cards = Arrays.asList(new Card("41111111"), new Card("42222222"));
+        public int[] cvv = {123, 456};
+        @JsonIgnore
+        private String password = "hunter2";
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Card> getCards() {
+            return cards;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public Map<String, String> getAttributes() {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            attributes.put("secret", "abc");
+            attributes.put("plain", "abc");
+            return attributes;
+        }
+
+        @JsonProperty("renamed")
+        public String getOriginal() {
+            return "x";
+        }
+    }
+
+    public static class Payment {
+        public int id = 7;
+        public JsonNode details;
+
+        @JsonAnyGetter
+        public Map<String, String> getOther() {
+            return Collections.singletonMap("cardNumber", "4222222222222222");
+        }
+    }
+
+    public static class Throwing {
+        public String getA() {
+            throw new IllegalStateException("unavailable");
+        }
+    }
+
+    public static class Node {
+        public Node next;
+        public List<String> values = Collections.singletonList("v");
+    }
+
+    public static class RenamedField {
+        @JsonProperty("card_number")
+        private String cardNumber = "4111111111111111";
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+    }
+
+    @JsonIgnoreProperties({"secret"})
+    public static class IgnoredProperties {
+        public String getName() {
+            return "Jane";
+        }
+
+        public String getSecret() {
+            return "s3cr3t";
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class NonNull {
+        public String getName() {
+            return "Jane";
+        }
+
+        public String getNote() {
+            return null;
+        }
+    }
 }
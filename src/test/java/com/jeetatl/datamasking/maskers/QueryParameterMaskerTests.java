@@ -4,6 +4,10 @@ import com.jeetatl.datamasking.config.MaskingConfiguration;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+
 public class QueryParameterMaskerTests {
 
     @Test
@@ -100,4 +104,71 @@ public class QueryParameterMaskerTests {
 
         Assert.assertEquals(maskedField, masker.getMasked(stringToMask));
     }
+
+    @Test
+    public void testPrefilterSkipsPayload() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+3|field2:-2");
+        QueryParameterMasker masker = new QueryParameterMasker(config);
+
+        String stringToMask = "flag&field3=a%20b";
+        Assert.assertSame(stringToMask, masker.getMasked(stringToMask));
+
+        stringToMask = "fiel%64%31=abcd";
+        Assert.assertEquals("fiel%64%31=XXXd", masker.getMasked(stringToMask));
+    }
+
+    @Test
+    public void testUnmaskedParametersCopied() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:-2");
+        QueryParameterMasker masker = new QueryParameterMasker(config);
+
+        String stringToMask = "flag&field3=a%20b~&field1=a=b&field1=&";
+        String maskedField = "flag&field3=a%20b~&field1=aXX&field1=&";
+
+        Assert.assertEquals(maskedField, masker.getMasked(stringToMask));
+    }
+
+    @Test
+    public void testMultiByteQueryMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+1");
+        QueryParameterMasker masker = new QueryParameterMasker(config);
+
+        String stringToMask = "field1=%C3%A9t%C3%A9%F0%9F%98%80&fi%65ld1=%E2%82";
+        String maskedField = "field1=Xt%C3%A9%F0%9F%98%80&fi%65ld1=X";
+
+        Assert.assertEquals(maskedField, masker.getMasked(stringToMask));
+    }
+
+    @Test
+    public void testStringBuilderQueryMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+100%|field2:-2");
+        QueryParameterMasker masker = new QueryParameterMasker(config);
+
+        StringBuilder sb = new StringBuilder("GET /path?");
+        masker.getMasked("field1=abc&field2=field2value", sb);
+
+        Assert.assertEquals("GET /path?field1=XXX&field2=field2valXX", sb.toString());
+    }
+
+    @Test
+    public void testAppendableQueryMasking() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+3");
+        QueryParameterMasker masker = new QueryParameterMasker(config);
+
+        StringWriter sw = new StringWriter();
+        masker.getMasked(CharBuffer.wrap("a=1&field1=queryparam".toCharArray()), sw);
+        Assert.assertEquals("a=1&field1=XXXryparam", sw.toString());
+
+        sw = new StringWriter();
+        masker.getMasked("a=1&b=2", sw);
+        Assert.assertEquals("a=1&b=2", sw.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppendableBadQueryMasking() throws IOException {
+        MaskingConfiguration config = new MaskingConfiguration("field1:+3");
+        QueryParameterMasker masker = new QueryParameterMasker(config);
+
+        masker.getMasked("field1=%z9", new StringWriter());
+    }
 }
@@ -0,0 +1,122 @@
+package com.jeetatl.datamasking.maskers;
+
+import com.jeetatl.datamasking.MaskingSetting;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class TextContentMaskerTests {
+
+    @Test
+    public void testCardNumbers() {
+        TextContentMasker masker = new TextContentMasker();
+
+        Assert.assertEquals("card XXXXXXXXXXXXXXXX charged", masker.getMasked("card 4111111111111111 charged"));
+        Assert.assertEquals("XXXX XXXX XXXX XXXX", masker.getMasked("5555 5555 5555 4444"));
+        Assert.assertEquals("amex=XXXX-XXXXXX-XXXXX.", masker.getMasked("amex=3782-822463-10005."));
+
+        // Card numbers followed by other numbers.
+        Assert.assertEquals("paid XXXXXXXXXXXXXXXX 20 USD", masker.getMasked("paid 4111111111111111 20 USD"));
+        Assert.assertEquals("XXXXXXXXXXXXXXXX XXXXXXXXXXXXXXXX",
+                masker.getMasked("4111111111111111 5555555555554444"));
+        Assert.assertEquals("txn XXXX XXXX XXXX XXXX 3 items", masker.getMasked("txn 5555 5555 5555 4444 3 items"));
+
+        // Luhn failures, wrong lengths, mixed separators and numbers inside longer tokens.
+        String[] unchanged = {
+            "card 4111111111111112 charged",
+            "id 411111111111",
+            "id 41111111111111111111",
+            "4111 1111-1111 1111",
+            "order A4111111111111111",
+            "order 4111111111111111B",
+            "ts 1476220000000",
+        };
+        for (String text : unchanged) {
+            Assert.assertSame(text, masker.getMasked(text));
+        }
+
+        MaskingSetting ms = new MaskingSetting();
+        ms.addInnerMasking(7, 12);
+        masker.setMaskingSetting(TextContentMasker.Detector.CARD_NUMBER, ms);
+        Assert.assertEquals("4111 11XX XXXX 1111 and 411111XXXXXX1111",
+                masker.getMasked("4111 1111 1111 1111 and 4111111111111111"));
+    }
+
+    @Test
+    public void testSocialSecurityNumbers() {
+        TextContentMasker masker = new TextContentMasker(new MaskingSetting(0, 4, 0, 0, '*'));
+
+        Assert.assertEquals("ssn: 123-45-****", masker.getMasked("ssn: 123-45-6789"));
+
+        String[] unchanged = {
+            "000-12-3456", "666-12-3456", "912-34-5678", "123-00-4567", "123-45-0000",
+            "123456789", "555-123-45-6789", "123-45-6789-1",
+        };
+        for (String text : unchanged) {
+            Assert.assertSame(text, masker.getMasked(text));
+        }
+    }
+
+    @Test
+    public void testEmails() {
+        TextContentMasker masker = new TextContentMasker();
+        masker.setMaskingSetting(TextContentMasker.Detector.EMAIL, new MaskingSetting(3, 0, 0, 0, 'X'));
+
+        Assert.assertEquals("mail XXXn.doe+tag@example.com.", masker.getMasked("mail john.doe+tag@example.com."));
+        Assert.assertEquals("<XXXe@mail.example.co.uk>", masker.getMasked("<jane@mail.example.co.uk>"));
+        Assert.assertEquals("to=XXX@b.io,XXX@d.io", masker.getMasked("to=a.b@b.io,c_d@d.io"));
+
+        String[] unchanged = {"user@localhost", "@example.com", "a@-b.com", "a@b.c", "a@b.123", "a @ b.com"};
+        for (String text : unchanged) {
+            Assert.assertSame(text, masker.getMasked(text));
+        }
+
+        // A card number as the local part is masked as an email address.
+        Assert.assertEquals("XXX1111111111111@example.com", masker.getMasked("4111111111111111@example.com"));
+    }
+
+    @Test
+    public void testIbans() {
+        TextContentMasker masker = new TextContentMasker(new MaskingSetting(4, 4, 0, 0, 'X'));
+
+        Assert.assertEquals("iban XXXX37040044053201XXXX", masker.getMasked("iban DE89370400440532013000"));
+        Assert.assertEquals("XXXX WEST 1234 5698 76XX XX", masker.getMasked("GB82 WEST 1234 5698 7654 32"));
+        Assert.assertEquals("XXXX WEST 1234 5698 76XX XX TEXT", masker.getMasked("GB82 WEST 1234 5698 7654 32 TEXT"));
+
+        String[] unchanged = {"DE89370400440532013001", "de89370400440532013000", "XDE89370400440532013000", "DE89 3704"};
+        for (String text : unchanged) {
+            Assert.assertSame(text, masker.getMasked(text));
+        }
+    }
+
+    @Test
+    public void testDetectors() throws IOException {
+        TextContentMasker masker = new TextContentMasker();
+        String text = "user=john@example.com card=4111111111111111 ssn=123-45-6789 iban=DE89370400440532013000";
+
+        Assert.assertTrue(masker.containsSensitiveValue(text));
+        Assert.assertEquals("user=XXXXXXXXXXXXXXXX card=XXXXXXXXXXXXXXXX ssn=XXX-XX-XXXX iban=XXXXXXXXXXXXXXXXXXXXXX",
+                masker.getMasked(text));
+
+        masker.setMaskingSetting(TextContentMasker.Detector.EMAIL, null);
+        masker.setMaskingSetting(TextContentMasker.Detector.IBAN, null);
+        Assert.assertFalse(masker.isEnabled(TextContentMasker.Detector.EMAIL));
+        Assert.assertTrue(masker.isEnabled(TextContentMasker.Detector.SSN));
+        String expected = "user=john@example.com card=XXXXXXXXXXXXXXXX ssn=XXX-XX-XXXX iban=DE89370400440532013000";
+        Assert.assertEquals(expected, masker.getMasked(text));
+
+        StringWriter writer = new StringWriter();
+        masker.getMasked(text, writer);
+        Assert.assertEquals(expected, writer.toString());
+
+        StringBuilder sb = new StringBuilder("> ");
+        masker.getMasked("no sensitive values", sb);
+        Assert.assertEquals("> no sensitive values", sb.toString());
+
+        Assert.assertFalse(masker.containsSensitiveValue("café 4111 1111"));
+        Assert.assertNull(masker.getMasked(null));
+        Assert.assertEquals("", masker.getMasked(""));
+    }
+}
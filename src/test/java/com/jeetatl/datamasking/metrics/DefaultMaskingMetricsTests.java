@@ -0,0 +1,121 @@
+package com.jeetatl.datamasking.metrics;
+
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.json.JsonPayloadMasker;
+import com.jeetatl.datamasking.maskers.JavaBeansMasker;
+import com.jeetatl.datamasking.maskers.QueryParameterMasker;
+import com.jeetatl.datamasking.maskers.TextContentMasker;
+import com.jeetatl.datamasking.xml.XmlPayloadMasker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class DefaultMaskingMetricsTests {
+
+    @Test
+    public void testJsonPayloadMasker() {
+        DefaultMaskingMetrics metrics = new DefaultMaskingMetrics();
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4|*Token:+100%");
+        config.setMetrics(metrics);
+        Assert.assertSame(metrics, config.getMetrics());
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+
+        String payload = "{\"cardNumber\":\"4111111111111111\",\"authToken\":\"abc\",\"name\":\"Jane\"}";
+        String masked = masker.getMasked(payload);
+        Assert.assertEquals(1, metrics.getMaskedCount(MaskerType.JSON));
+        Assert.assertEquals(payload.length(), metrics.getInputSize(MaskerType.JSON));
+        Assert.assertEquals(masked.length(), metrics.getOutputSize(MaskerType.JSON));
+        Assert.assertEquals(1, metrics.getLatency(MaskerType.JSON).getCount());
+        Assert.assertEquals(1, metrics.getFieldHits("cardNumber"));
+        Assert.assertEquals(1, metrics.getFieldHits("*Token"));
+        Assert.assertEquals(0, metrics.getFieldHits("name"));
+
+        MaskingConfiguration exactConfig = new MaskingConfiguration("cardNumber:+4");
+        exactConfig.setMetrics(metrics);
+        new JsonPayloadMasker(exactConfig).getMasked("{\"name\":\"Jane\"}");
+        Assert.assertEquals(1, metrics.getSkippedCount(MaskerType.JSON));
+
+        masker.getMasked("{\"cardNumber\":");
+        Assert.assertEquals(1, metrics.getParseFailureCount(MaskerType.JSON));
+        Assert.assertEquals(1, metrics.getMaskedCount(MaskerType.JSON));
+
+        masker.maskInPlace(payload.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(2, metrics.getMaskedCount(MaskerType.JSON));
+        Assert.assertEquals(2, metrics.getFieldHits("cardNumber"));
+    }
+
+    @Test
+    public void testOtherMaskers() {
+        DefaultMaskingMetrics metrics = new DefaultMaskingMetrics();
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        config.setMetrics(metrics);
+
+        new XmlPayloadMasker(config).getMasked("<a><cardNumber>4111111111111111</cardNumber></a>");
+        new XmlPayloadMasker(config).getMasked("<a><cardNumber>4111</a>");
+        Assert.assertEquals(1, metrics.getMaskedCount(MaskerType.XML));
+        Assert.assertEquals(1, metrics.getParseFailureCount(MaskerType.XML));
+
+        new QueryParameterMasker(config).getMasked("cardNumber=4111111111111111&a=b");
+        new QueryParameterMasker(config).getMasked("a=b");
+        Assert.assertEquals(1, metrics.getMaskedCount(MaskerType.QUERY_PARAMETERS));
+        Assert.assertEquals(1, metrics.getSkippedCount(MaskerType.QUERY_PARAMETERS));
+
+        new JavaBeansMasker(config).getMasked(new Card());
+        Assert.assertEquals(1, metrics.getMaskedCount(MaskerType.JAVA_BEANS));
+        Assert.assertEquals(3, metrics.getFieldHits("cardNumber"));
+
+        TextContentMasker textMasker = new TextContentMasker();
+        textMasker.setMetrics(metrics);
+        textMasker.getMasked("card 4111 1111 1111 1111");
+        textMasker.getMasked("nothing here");
+        Assert.assertEquals(1, metrics.getMaskedCount(MaskerType.TEXT_CONTENT));
+        Assert.assertEquals(1, metrics.getSkippedCount(MaskerType.TEXT_CONTENT));
+
+        Map<String, Long> hits = metrics.getFieldHits();
+        Assert.assertEquals(Long.valueOf(3), hits.get("cardNumber"));
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getMaskedCount(MaskerType.XML));
+        Assert.assertEquals(0, metrics.getLatency(MaskerType.XML).getCount());
+        Assert.assertTrue(metrics.getFieldHits().isEmpty());
+    }
+
+    @Test
+    public void testSampling() {
+        DefaultMaskingMetrics metrics = new DefaultMaskingMetrics(10);
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        config.setMetrics(metrics);
+        JsonPayloadMasker masker = new JsonPayloadMasker(config);
+        for (int i = 0; i < 10000; i++) {
+            masker.getMasked("{\"cardNumber\":\"4111111111111111\"}");
+        }
+        long sampled = metrics.getMaskedCount(MaskerType.JSON);
+        Assert.assertTrue(sampled > 500 && sampled < 1500);
+        Assert.assertEquals(10000, metrics.getFieldHits("cardNumber"));
+    }
+
+    @Test
+    public void testDisabled() {
+        DefaultMaskingMetrics metrics = new DefaultMaskingMetrics();
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        config.setMetrics(metrics);
+        config.setMetrics(null);
+        Assert.assertNull(config.getMetrics());
+        new JsonPayloadMasker(config).getMasked("{\"cardNumber\":\"4111111111111111\"}");
+        Assert.assertEquals(0, metrics.getMaskedCount(MaskerType.JSON));
+        Assert.assertEquals(0, metrics.getFieldHits("cardNumber"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleInterval() {
+        new DefaultMaskingMetrics(0);
+    }
+
+    public static class Card {
+        public String getCardNumber() {
+            return "4111111111111111";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jeetatl.datamasking.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            Assert.assertTrue(LatencyHistogram.lowerBound(bucket) <= value);
+            Assert.assertTrue(value < LatencyHistogram.lowerBound(bucket + 1));
+        }
+        Assert.assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.bucket(1L << 41));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500000L, histogram.getTotalNanos());
+        Assert.assertEquals(500500.0, histogram.getMeanNanos(), 0.001);
+
+        long p50 = histogram.getPercentileNanos(50);
+        Assert.assertTrue(p50 >= 500000 && p50 <= 500000 * 5 / 4);
+        long p99 = histogram.getPercentileNanos(99);
+        Assert.assertTrue(p99 >= 990000 && p99 <= 990000 * 5 / 4);
+        Assert.assertTrue(histogram.getPercentileNanos(100) >= 1000000);
+        Assert.assertTrue(histogram.getPercentileNanos(0) >= 1000);
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getTotalNanos());
+    }
+
+    @Test
+    public void testNegativeDuration() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        Assert.assertEquals(1, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentileNanos(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LatencyHistogram().getPercentileNanos(101);
+    }
+}
@@ -0,0 +1,70 @@
+package com.jeetatl.datamasking.metrics;
+
+import com.jeetatl.datamasking.config.MaskingConfiguration;
+import com.jeetatl.datamasking.json.JsonPayloadMasker;
+import com.jeetatl.datamasking.maskers.JavaBeansMasker;
+import com.jeetatl.datamasking.maskers.QueryParameterMasker;
+import com.jeetatl.datamasking.xml.XmlPayloadMasker;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+
+public class MaskingOperationTests {
+
+    @Test
+    public void testDisabledWithoutRecording() {
+        Assert.assertNull(MaskingOperation.begin(MaskerType.JSON));
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        MaskingConfiguration config = new MaskingConfiguration("cardNumber:+4");
+        String json = "{\"cardNumber\":\"4111111111111111\",\"name\":\"Jane\"}";
+        List<RecordedEvent> events;
+        File file = File.createTempFile("masking", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(MaskingEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            new JsonPayloadMasker(config).getMasked(json);
+            new JsonPayloadMasker(config).getMasked("{\"name\":\"Jane\"}");
+            new XmlPayloadMasker(config).getMasked("<a cardNumber=\"4111\"><cardNumber>4111111111111111</cardNumber></a>");
+            new QueryParameterMasker(config).getMasked("cardNumber=4111111111111111&a=b&c");
+            new JavaBeansMasker(config).getMasked(new Account());
+            recording.stop();
+            recording.dump(file.toPath());
+            events = RecordingFile.readAllEvents(file.toPath());
+        } finally {
+            file.delete();
+        }
+
+        Assert.assertEquals(5, events.size());
+        assertEvent(events.get(0), "JSON", "tree", 2, 1);
+        assertEvent(events.get(1), "JSON", MaskingOperation.PREFILTER, 0, 0);
+        assertEvent(events.get(2), "XML", "dom", 3, 2);
+        assertEvent(events.get(3), "QUERY_PARAMETERS", "scanner", 2, 1);
+        assertEvent(events.get(4), "JAVA_BEANS", "jackson", 3, 1);
+        Assert.assertEquals(json.length(), events.get(0).getLong("payloadLength"));
+        Assert.assertFalse(events.get(0).getDuration().isNegative());
+    }
+
+    public static class Account {
+        public String cardNumber = "4111111111111111";
+        public String name = "Jane";
+        public String note = null;
+        public int[] pins = {1234};
+    }
+
+    private static void assertEvent(RecordedEvent event, String masker, String engine, int fieldCount,
+                                    int maskedValueCount) {
+        Assert.assertEquals(masker, event.getString("masker"));
+        Assert.assertEquals(engine, event.getString("engine"));
+        Assert.assertEquals(fieldCount, event.getInt("fieldCount"));
+        Assert.assertEquals(maskedValueCount, event.getInt("maskedValueCount"));
+    }
+}
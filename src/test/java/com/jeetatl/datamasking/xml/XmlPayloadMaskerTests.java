@@ -9,8 +9,13 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -191,6 +196,168 @@ public class XmlPayloadMaskerTests {
         Assert.assertNull(maskedXml);
     }
 
+    @Test
+    public void testPrefilterSkipsPayload() {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+100%");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        String xml = "<root   a='1'><element2>value</element2></root>";
+        Assert.assertSame(xml, xmlPayloadMasker.getMasked(xml));
+    }
+
+    @Test
+    public void testStreamingSetter() {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+100%");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+        Assert.assertFalse(xmlPayloadMasker.isStreamingEnabled());
+
+        xmlPayloadMasker.setStreamingEnabled(true);
+        Assert.assertTrue(xmlPayloadMasker.isStreamingEnabled());
+    }
+
+    @Test
+    public void testStreamingElementMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+100%|attribute1:-2");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+        xmlPayloadMasker.setStreamingEnabled(true);
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><root xmlns=\"http://example.com/D\" xmlns:test=\"http://example.com/X\">" +
+                "<!-- c --><test:element1 test:attribute1=\"VALUE\" attribute1=\"abc\">value</test:element1>" +
+                "<element2 a=\"&amp;\">x &lt; <![CDATA[y]]></element2><element1/></root>";
+        String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><root xmlns=\"http://example.com/D\" xmlns:test=\"http://example.com/X\">" +
+                "<!-- c --><test:element1 test:attribute1=\"VALXX\" attribute1=\"aXX\">XXXXX</test:element1>" +
+                "<element2 a=\"&amp;\">x &lt; y</element2><element1></element1></root>";
+
+        Assert.assertEquals(expected, xmlPayloadMasker.getMasked(xml));
+    }
+
+    @Test
+    public void testStreamingParentChildElementMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("root:-3|element1:+1");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+        xmlPayloadMasker.setStreamingEnabled(true);
+
+        String xml = "<root a=\"1\">ab<element1 b=\"2\">value<!-- c --></element1><element2>cd<element1>ef</element1></element2></root>";
+        String expected = "<root a=\"1\">abXaluecXXX</root>";
+
+        Assert.assertEquals(expected, xmlPayloadMasker.getMasked(xml));
+
+        xmlPayloadMasker.setStreamingEnabled(false);
+        Document maskedDoc = getDocument(xmlPayloadMasker.getMasked(xml));
+        Assert.assertEquals("abXaluecXXX", maskedDoc.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    public void testStreamingAttributeDisabledMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("attribute1:+100%");
+        config.setAttributeMaskEnabled(false);
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+        xmlPayloadMasker.setStreamingEnabled(true);
+
+        String xml = "<root><element1 attribute1=\"VALUE\">value</element1></root>";
+
+        Assert.assertEquals(xml, xmlPayloadMasker.getMasked(xml));
+    }
+
+    @Test
+    public void testStreamingBadXml() {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+100%");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+        xmlPayloadMasker.setStreamingEnabled(true);
+
+        String xml = "<element1></xml>";
+        Assert.assertEquals(xml, xmlPayloadMasker.getMasked(xml));
+    }
+
+    @Test
+    public void testReaderWriterMasking() throws XMLStreamException {
+        MaskingConfiguration config = new MaskingConfiguration("element1:-2");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        StringWriter sw = new StringWriter();
+        xmlPayloadMasker.getMasked(new StringReader("<root><element1>value</element1></root>"), sw);
+
+        Assert.assertEquals("<root><element1>valXX</element1></root>", sw.toString());
+    }
+
+    @Test
+    public void testStreamMasking() throws XMLStreamException {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+1");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root><element1>\u00e9t\u00e9</element1></root>";
+        xmlPayloadMasker.getMasked(new ByteArrayInputStream(xml.getBytes(StandardCharsets.ISO_8859_1)), out);
+
+        Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root><element1>Xt\u00e9</element1></root>",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+100%|attribute1:-2|root:~2");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        String xml = "<?xml version='1.0'?>\n<!DOCTYPE root [<!ENTITY e \"v>\">]>\n" +
+                "<root xmlns:test=\"http://example.com/X\">\n  <!-- <element1>c</element1> -->" +
+                "<test:element1   test:attribute1='VALUE' attribute2=\"abc\" >va&amp;ue</test:element1>" +
+                "<element2 attribute1=\"x&lt;y\"><![CDATA[<z>]]></element2><element1/></root>";
+        String expected = "<?xml version='1.0'?>\n<!DOCTYPE root [<!ENTITY e \"v>\">]>\n" +
+                "<root xmlns:test=\"http://example.com/X\">\nX <!-- <element1>c</element1> -->" +
+                "<test:element1   test:attribute1='VALXX' attribute2=\"abc\" >XXXXXXXXX</test:element1>" +
+                "<element2 attribute1=\"xXXXXX\"><![CDATA[<z>]]></element2><element1/></root>";
+
+        char[] chars = xml.toCharArray();
+        Assert.assertEquals(4, xmlPayloadMasker.maskInPlace(chars));
+        Assert.assertEquals(expected, new String(chars));
+
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(4, xmlPayloadMasker.maskInPlace(bytes));
+        Assert.assertEquals(expected, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceNestedElementMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("root:-3|element1:+1");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        String xml = "<root>ab<element1>v\u00e9lue</element1><element2>c<![CDATA[d]]><element1>ef</element1></element2></root>";
+        String expected = "<root>ab<element1>X\u00e9lue</element1><element2>c<![CDATA[X]]><element1>XX</element1></element2></root>";
+
+        char[] chars = xml.toCharArray();
+        xmlPayloadMasker.maskInPlace(chars);
+        Assert.assertEquals(expected, new String(chars));
+
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        xmlPayloadMasker.maskInPlace(direct);
+        direct.get(bytes);
+        Assert.assertEquals(expected, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInPlaceAttributeDisabledMasking() {
+        MaskingConfiguration config = new MaskingConfiguration("attribute1:+100%");
+        config.setAttributeMaskEnabled(false);
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        char[] chars = "<root attribute1=\"VALUE\"/>".toCharArray();
+        Assert.assertEquals(0, xmlPayloadMasker.maskInPlace(chars));
+        Assert.assertEquals("<root attribute1=\"VALUE\"/>", new String(chars));
+    }
+
+    @Test
+    public void testInPlaceBadXml() {
+        MaskingConfiguration config = new MaskingConfiguration("element1:+100%");
+        XmlPayloadMasker xmlPayloadMasker = new XmlPayloadMasker(config);
+
+        char[] chars = "<r><element1>ab</element1><element1 a=\"x".toCharArray();
+        Assert.assertEquals(1, xmlPayloadMasker.maskInPlace(chars));
+        Assert.assertEquals("<r><element1>XX</element1><element1 a=\"x", new String(chars));
+        Assert.assertEquals(0, xmlPayloadMasker.maskInPlace((char[]) null));
+    }
+
     private Document getDocument(String input) {
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware(true);